@@ -33,6 +33,7 @@ import com.owncloud.android.lib.resources.files.UploadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.operations.RefreshFolderOperation;
 import com.owncloud.android.utils.FileStorageUtils;
+import com.owncloud.android.utils.MimeType;
 
 import junit.framework.TestCase;
 
@@ -43,6 +44,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.owncloud.android.lib.resources.files.SearchRemoteOperation.SearchType.PHOTO_SEARCH;
@@ -205,6 +207,98 @@ abstract public class FileDataStorageManagerTest extends AbstractOnServerIT {
                      sut.getFolderContent(sut.getFileByPath("/"), false).get(0));
     }
 
+    @Test
+    public void testSaveSearchResults() throws IOException {
+        VirtualFolderType virtualType = VirtualFolderType.PHOTOS;
+
+        assertTrue(new CreateFolderRemoteOperation("/1/", true).execute(client).isSuccess());
+
+        File imageFile = getFile("imageFile.png");
+        for (String remotePath : new String[]{"/1/imageFile.png", "/1/imageFile2.png"}) {
+            assertTrue(new UploadFileRemoteOperation(imageFile.getAbsolutePath(),
+                                                     remotePath,
+                                                     "image/png",
+                                                     String.valueOf(System.currentTimeMillis() / 1000))
+                           .execute(client).isSuccess());
+        }
+
+        RemoteOperationResult searchResult = new SearchRemoteOperation("image/%", PHOTO_SEARCH, false)
+            .execute(client);
+        assertTrue(searchResult.isSuccess());
+        assertEquals(2, searchResult.getData().size());
+
+        // parent is not known yet, it is fetched from server
+        List<OCFile> files = new ArrayList<>();
+        for (Object remoteFile : searchResult.getData()) {
+            files.add(FileStorageUtils.fillOCFile((RemoteFile) remoteFile));
+        }
+        List<OCFile> savedFiles = sut.saveSearchResults(files, virtualType, true, targetContext);
+
+        assertEquals(2, savedFiles.size());
+        for (OCFile file : savedFiles) {
+            assertTrue(file.getFileId() > 0);
+        }
+        assertEquals(2, sut.getVirtualFolderContent(virtualType, false).size());
+        assertEquals(2, sut.getFolderContent(sut.getFileByPath("/1/"), false).size());
+        assertEquals(4, sut.getAllFiles().size());
+
+        // saving again updates the stored files
+        sut.deleteVirtuals(virtualType);
+        files.clear();
+        for (Object remoteFile : searchResult.getData()) {
+            files.add(FileStorageUtils.fillOCFile((RemoteFile) remoteFile));
+        }
+        List<OCFile> updatedFiles = sut.saveSearchResults(files, virtualType, true, targetContext);
+
+        assertEquals(savedFiles.get(0).getFileId(), updatedFiles.get(0).getFileId());
+        assertEquals(savedFiles.get(1).getFileId(), updatedFiles.get(1).getFileId());
+        assertEquals(2, sut.getVirtualFolderContent(virtualType, false).size());
+        assertEquals(4, sut.getAllFiles().size());
+    }
+
+    @Test
+    public void testSearchFilesByName() {
+        sut.getFileByPath(OCFile.ROOT_PATH); // creates root
+        OCFile root = sut.getFileByPath(OCFile.ROOT_PATH);
+
+        for (String name : new String[]{"Holiday photo.jpg", "photo", "photos 2020.zip", "IMG_2020.JPG",
+            "notes.txt", "100%_done.txt", "photo folder"}) {
+            OCFile file = new OCFile(OCFile.ROOT_PATH + name);
+            file.setParentId(root.getFileId());
+            file.setRemoteId(name);
+            file.setMimeType(name.endsWith("folder") ? MimeType.DIRECTORY : "application/octet-stream");
+            sut.saveFile(file);
+        }
+
+        // exact name, then name starting with query, then by name; folders are not found
+        assertEquals(Arrays.asList("photo", "photos 2020.zip", "Holiday photo.jpg"),
+                     getNames(sut.searchFilesByName("Photo", 10, null)));
+        assertEquals(Arrays.asList("IMG_2020.JPG", "photos 2020.zip"),
+                     getNames(sut.searchFilesByName("2020", 10, null)));
+        assertEquals(Arrays.asList("Holiday photo.jpg"), getNames(sut.searchFilesByName("hol pho", 10, null)));
+        assertEquals(1, sut.searchFilesByName("photo", 1, null).size());
+
+        // no words to look up in the index
+        assertEquals(Arrays.asList("100%_done.txt"), getNames(sut.searchFilesByName("%", 10, null)));
+
+        // index follows renames
+        OCFile notes = sut.getFileByPath("/notes.txt");
+        notes.setFileName("minutes.txt");
+        notes.setRemotePath("/minutes.txt");
+        sut.saveFile(notes);
+
+        assertEquals(0, sut.searchFilesByName("notes", 10, null).size());
+        assertEquals(Arrays.asList("minutes.txt"), getNames(sut.searchFilesByName("minutes", 10, null)));
+    }
+
+    private List<String> getNames(List<OCFile> files) {
+        List<String> names = new ArrayList<>();
+        for (OCFile file : files) {
+            names.add(file.getFileName());
+        }
+        return names;
+    }
+
     @Test
     public void testSaveNewFile() {
         assertTrue(new CreateFolderRemoteOperation("/1/1/", true).execute(client).isSuccess());
@@ -247,4 +341,40 @@ abstract public class FileDataStorageManagerTest extends AbstractOnServerIT {
 
         sut.saveNewFile(newFile);
     }
+
+    @Test
+    public void testRemoveFolder() {
+        assertEquals(1, sut.getAllFiles().size()); // root
+
+        saveNewFolder("/1/");
+        saveNewFolder("/1/1/");
+        saveNewFolder("/1/1/1/");
+        saveNewFolder("/10/");
+        saveNewFolder("/1-2/");
+
+        for (int i = 0; i < 10; i++) {
+            sut.saveNewFile(new OCFile("/1/1/file" + i + ".txt"));
+            sut.saveNewFile(new OCFile("/1/1/1/file" + i + ".txt"));
+            sut.saveNewFile(new OCFile("/10/file" + i + ".txt"));
+        }
+        sut.saveNewFile(new OCFile("/1.txt"));
+
+        assertEquals(37, sut.getAllFiles().size());
+
+        assertTrue(sut.removeFolder(sut.getFileByPath("/1/"), true, false));
+
+        // root, "/10/" with its files, "/1-2/" and "/1.txt" remain
+        assertEquals(14, sut.getAllFiles().size());
+        assertNull(sut.getFileByPath("/1/"));
+        assertNull(sut.getFileByPath("/1/1/1/file0.txt"));
+        assertEquals(10, sut.getFolderContent(sut.getFileByPath("/10/"), false).size());
+        assertTrue(sut.getFileByPath("/1-2/").fileExists());
+        assertTrue(sut.getFileByPath("/1.txt").fileExists());
+    }
+
+    private void saveNewFolder(String remotePath) {
+        OCFile folder = new OCFile(remotePath);
+        folder.setMimeType(MimeType.DIRECTORY);
+        sut.saveNewFile(folder);
+    }
 }
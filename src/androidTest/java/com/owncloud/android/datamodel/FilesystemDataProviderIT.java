@@ -0,0 +1,141 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.files.services.FileUploader;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilesystemDataProviderIT extends AbstractIT {
+    private static final long SYNCED_FOLDER_ID = 987654;
+    private static final int FILES = 1200;
+
+    private FilesystemDataProvider sut;
+    private SyncedFolder syncedFolder;
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        sut = new FilesystemDataProvider(targetContext.getContentResolver());
+
+        folder = new File(targetContext.getCacheDir(), "bulkIndexer");
+        assertTrue(folder.mkdirs() || folder.isDirectory());
+
+        syncedFolder = new SyncedFolder(folder.getAbsolutePath(),
+                                        "/bulkIndexer",
+                                        false,
+                                        false,
+                                        true,
+                                        false,
+                                        account.name,
+                                        FileUploader.LOCAL_BEHAVIOUR_FORGET,
+                                        FileUploader.NameCollisionPolicy.ASK_USER.serialize(),
+                                        true,
+                                        System.currentTimeMillis(),
+                                        MediaFolderType.CUSTOM,
+                                        false);
+        syncedFolder.setId(SYNCED_FOLDER_ID);
+
+        for (int i = 0; i < FILES; i++) {
+            write(new File(folder, "file" + i + ".txt"), "content" + i);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.deleteAllEntriesForSyncedFolder(String.valueOf(SYNCED_FOLDER_ID));
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void bulkIndex() throws IOException {
+        index();
+
+        Set<String> filesForUpload = sut.getFilesForUpload(folder.getAbsolutePath(),
+                                                           String.valueOf(SYNCED_FOLDER_ID));
+        assertEquals(FILES, filesForUpload.size());
+
+        for (String path : filesForUpload) {
+            sut.updateFilesystemFileAsSentForUpload(path, String.valueOf(SYNCED_FOLDER_ID));
+        }
+        assertTrue(sut.getFilesForUpload(folder.getAbsolutePath(), String.valueOf(SYNCED_FOLDER_ID)).isEmpty());
+
+        // unchanged files are not uploaded again, changed ones are
+        File changedFile = new File(folder, "file42.txt");
+        write(changedFile, "changed content");
+        index();
+
+        assertEquals(Collections.singleton(changedFile.getAbsolutePath()),
+                     sut.getFilesForUpload(folder.getAbsolutePath(), String.valueOf(SYNCED_FOLDER_ID)));
+    }
+
+    @Test
+    public void sameResultAsSingleUpdates() throws IOException {
+        index();
+        Set<String> bulk = new HashSet<>(sut.getFilesForUpload(folder.getAbsolutePath(),
+                                                               String.valueOf(SYNCED_FOLDER_ID)));
+
+        sut.deleteAllEntriesForSyncedFolder(String.valueOf(SYNCED_FOLDER_ID));
+
+        File[] files = folder.listFiles();
+        assertTrue(files != null);
+        for (File file : files) {
+            sut.storeOrUpdateFileValue(file.getAbsolutePath(),
+                                       file.lastModified(),
+                                       file.length(),
+                                       file.isDirectory(),
+                                       syncedFolder);
+        }
+
+        assertEquals(bulk, sut.getFilesForUpload(folder.getAbsolutePath(), String.valueOf(SYNCED_FOLDER_ID)));
+    }
+
+    private void index() {
+        FilesystemDataProvider.BulkIndexer indexer = sut.createBulkIndexer(syncedFolder);
+
+        File[] files = folder.listFiles();
+        assertTrue(files != null);
+        for (File file : files) {
+            indexer.add(file.getAbsolutePath(), file.lastModified(), file.length(), file.isDirectory());
+        }
+        indexer.flush();
+    }
+
+    private void write(File file, String content) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.google.gson.Gson;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.network.WebdavEntry;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+import com.owncloud.android.utils.MimeType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares materialising rows with one mapper per cursor against resolving columns and sharees for every row.
+ */
+public class OCFileCursorMapperTest {
+    private static final String TAG = OCFileCursorMapperTest.class.getSimpleName();
+    private static final String ACCOUNT_NAME = "test@https://server.com";
+    private static final int ROWS = 10000;
+    private static final String SHAREES = "[{\"userId\":\"admin\",\"displayName\":\"Admin\",\"shareType\":\"USER\"}," +
+        "{\"userId\":\"group\",\"displayName\":\"Group\",\"shareType\":\"GROUP\"}]";
+
+    private final String[] columns = new String[]{
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_STORAGE_PATH,
+        ProviderTableMeta.FILE_CONTENT_LENGTH,
+        ProviderTableMeta.FILE_MODIFIED,
+        ProviderTableMeta.FILE_ETAG,
+        ProviderTableMeta.FILE_FAVORITE,
+        ProviderTableMeta.FILE_MOUNT_TYPE,
+        ProviderTableMeta.FILE_SHAREES,
+    };
+
+    private MatrixCursor cursor;
+
+    @Before
+    public void setUp() {
+        cursor = new MatrixCursor(columns, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{
+                i,
+                "/folder/file" + i + ".txt",
+                1,
+                MimeType.TEXT_PLAIN,
+                "/storage/file" + i + ".txt",
+                i * 10L,
+                1000L + i,
+                "etag" + i,
+                i % 2,
+                0,
+                SHAREES
+            });
+        }
+    }
+
+    @Test
+    public void sameResult() {
+        OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, ACCOUNT_NAME);
+        List<OCFile> files = mapper.mapAll(cursor);
+
+        assertEquals(ROWS, files.size());
+
+        OCFile file = files.get(42);
+        assertEquals(42, file.getFileId());
+        assertEquals("/folder/file42.txt", file.getRemotePath());
+        assertEquals(1, file.getParentId());
+        assertEquals(420, file.getFileLength());
+        assertEquals(1042, file.getModificationTimestamp());
+        assertEquals("etag42", file.getEtag());
+        assertTrue(!file.isFavorite());
+        assertNotNull(file.getSharees());
+        assertEquals(2, file.getSharees().size());
+        assertEquals("admin", file.getSharees().get(0).getUserId());
+    }
+
+    @Test
+    public void basicProjection() {
+        MatrixCursor basicCursor = new MatrixCursor(new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH});
+        basicCursor.addRow(new Object[]{1, "/file.txt"});
+
+        List<OCFile> files = new OCFileCursorMapper(basicCursor, ACCOUNT_NAME).mapAll(basicCursor);
+
+        assertEquals(1, files.size());
+        assertEquals(1, files.get(0).getFileId());
+        assertEquals("/file.txt", files.get(0).getRemotePath());
+    }
+
+    @Test
+    public void sameFieldsAsMappingPerRow() {
+        List<OCFile> perRow = mapPerRow();
+        List<OCFile> perCursor = mapPerCursor();
+
+        assertEquals(perRow.size(), perCursor.size());
+        for (int i = 0; i < perRow.size(); i++) {
+            assertSameFields(perRow.get(i), perCursor.get(i));
+        }
+    }
+
+    /**
+     * Benchmark of materialising all rows both ways; timings are only logged, as they depend on the device.
+     */
+    @Test
+    public void benchmarkMaterialisingRows() {
+        // warm up
+        mapPerRow();
+        mapPerCursor();
+
+        long start = System.nanoTime();
+        List<OCFile> perRow = mapPerRow();
+        long perRowTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<OCFile> perCursor = mapPerCursor();
+        for (OCFile file : perCursor) {
+            // parsed lazily, include it to compare the same work
+            file.getSharees();
+        }
+        long perCursorTime = System.nanoTime() - start;
+
+        Log_OC.d(TAG, "Materialising " + ROWS + " rows: per row " + perRowTime / 1000000 + "ms, per cursor " +
+            perCursorTime / 1000000 + "ms");
+
+        assertEquals(ROWS, perRow.size());
+        assertEquals(ROWS, perCursor.size());
+    }
+
+    private static void assertSameFields(OCFile expected, OCFile actual) {
+        assertEquals(expected.getFileId(), actual.getFileId());
+        assertEquals(expected.getRemotePath(), actual.getRemotePath());
+        assertEquals(expected.getParentId(), actual.getParentId());
+        assertEquals(expected.getMimeType(), actual.getMimeType());
+        assertEquals(expected.getStoragePath(), actual.getStoragePath());
+        assertEquals(expected.getFileLength(), actual.getFileLength());
+        assertEquals(expected.getModificationTimestamp(), actual.getModificationTimestamp());
+        assertEquals(expected.getEtag(), actual.getEtag());
+        assertEquals(expected.isFavorite(), actual.isFavorite());
+        assertEquals(expected.getMountType(), actual.getMountType());
+        assertEquals(expected.getSharees().size(), actual.getSharees().size());
+        for (int j = 0; j < expected.getSharees().size(); j++) {
+            assertEquals(expected.getSharees().get(j).getUserId(), actual.getSharees().get(j).getUserId());
+            assertEquals(expected.getSharees().get(j).getShareType(), actual.getSharees().get(j).getShareType());
+        }
+    }
+
+    /**
+     * Mapping as done before {@link OCFileCursorMapper}: columns are resolved and sharees are parsed with a new Gson
+     * for every row.
+     */
+    private List<OCFile> mapPerRow() {
+        List<OCFile> files = new ArrayList<>(ROWS);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            files.add(mapRow(cursor));
+        }
+        return files;
+    }
+
+    private static OCFile mapRow(Cursor cursor) {
+        OCFile ocFile = new OCFile(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PATH)));
+        ocFile.setFileId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta._ID)));
+        ocFile.setParentId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT)));
+        ocFile.setMimeType(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
+        ocFile.setStoragePath(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
+        ocFile.setFileLength(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
+        ocFile.setModificationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
+        ocFile.setEtag(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
+        ocFile.setFavorite(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE)) == 1);
+        ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(
+            cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE))]);
+
+        String sharees = cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES));
+        ShareeUser[] shareesArray = new Gson().fromJson(sharees, ShareeUser[].class);
+        ocFile.setSharees(new ArrayList<>(Arrays.asList(shareesArray)));
+
+        return ocFile;
+    }
+
+    private List<OCFile> mapPerCursor() {
+        return new OCFileCursorMapper(cursor, ACCOUNT_NAME).mapAll(cursor);
+    }
+}
@@ -7,6 +7,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
+import com.nextcloud.client.account.User;
 import com.nextcloud.client.account.UserAccountManager;
 import com.nextcloud.client.account.UserAccountManagerImpl;
 import com.owncloud.android.AbstractIT;
@@ -26,7 +27,9 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -34,6 +37,8 @@ import androidx.test.filters.SmallTest;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -112,6 +117,79 @@ public class UploadStorageManagerTest extends AbstractIT {
         }
     }
 
+    @Test
+    public void testUploadsPage() {
+        UploadsStorageManager sut = new UploadsStorageManager(new CurrentAccountProvider() {
+            @Override
+            public Account getCurrentAccount() {
+                return account;
+            }
+
+            @Override
+            public User getUser() {
+                return user;
+            }
+        }, targetContext.getContentResolver());
+
+        deleteAllUploads();
+
+        int finished = 250;
+        for (int i = 0; i < finished; i++) {
+            OCUpload upload = createUpload(account);
+            upload.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_SUCCEEDED);
+            // some uploads share the same timestamp
+            upload.setUploadEndTimestamp(1000 + i / 3);
+            sut.storeUpload(upload);
+        }
+        OCUpload pending = createUpload(account);
+        sut.storeUpload(pending);
+        // current uploads are sorted by status before the timestamp
+        OCUpload delayed = createUpload(account);
+        delayed.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_FAILED);
+        delayed.setUploadEndTimestamp(pending.getUploadEndTimestamp() + 1000);
+        sut.storeUpload(delayed);
+        insertUploads(account2, 5);
+
+        assertEquals(finished, sut.countUploads(UploadsStorageManager.UploadsFilter.FINISHED));
+        assertEquals(2, sut.countUploads(UploadsStorageManager.UploadsFilter.CURRENT_AND_PENDING));
+        assertEquals(0, sut.countUploads(UploadsStorageManager.UploadsFilter.FAILED_BUT_NOT_DELAYED));
+
+        Set<Long> ids = new HashSet<>();
+        long lastTimestamp = Long.MAX_VALUE;
+        OCUpload after = null;
+        OCUpload[] page;
+        do {
+            page = sut.getUploadsPage(UploadsStorageManager.UploadsFilter.FINISHED, after, 100);
+            for (OCUpload upload : page) {
+                assertTrue(upload.getUploadEndTimestamp() <= lastTimestamp);
+                assertTrue(sut.isInGroup(UploadsStorageManager.UploadsFilter.FINISHED, upload));
+                assertTrue(ids.add(upload.getUploadId()));
+                lastTimestamp = upload.getUploadEndTimestamp();
+            }
+            if (page.length > 0) {
+                after = page[page.length - 1];
+            }
+        } while (page.length == 100);
+
+        assertEquals(finished, ids.size());
+
+        page = sut.getUploadsPage(UploadsStorageManager.UploadsFilter.CURRENT_AND_PENDING, null, 1);
+        assertEquals(1, page.length);
+        assertEquals(pending.getUploadId(), page[0].getUploadId());
+        page = sut.getUploadsPage(UploadsStorageManager.UploadsFilter.CURRENT_AND_PENDING, page[0], 1);
+        assertEquals(1, page.length);
+        assertEquals(delayed.getUploadId(), page[0].getUploadId());
+        assertEquals(0, sut.getUploadsPage(UploadsStorageManager.UploadsFilter.CURRENT_AND_PENDING, page[0], 1).length);
+
+        OCUpload stored = sut.getUploadById(pending.getUploadId());
+        assertNotNull(stored);
+        assertTrue(sut.isInGroup(UploadsStorageManager.UploadsFilter.CURRENT_AND_PENDING, stored));
+        assertFalse(sut.isInGroup(UploadsStorageManager.UploadsFilter.FINISHED, stored));
+
+        sut.removeUpload(stored);
+        assertNull(sut.getUploadById(pending.getUploadId()));
+    }
+
     @Test
     public void testIsSame() {
         OCUpload upload1 = new OCUpload("/test", "/test", account.name);
@@ -0,0 +1,170 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that lookups on filelist are served by the secondary indexes, using the query plans on a copy of the schema.
+ */
+public class FileContentProviderIndexIT extends AbstractIT {
+    private static final String OWNER = "test@https://server.com";
+    private static final int ROWS = 20000;
+
+    private SQLiteDatabase copy;
+
+    @Before
+    public void setUp() {
+        // make sure the provider has created / upgraded the database
+        fileDataStorageManager.getFileByPath("/");
+
+        SQLiteDatabase original = SQLiteDatabase.openDatabase(targetContext.getDatabasePath(ProviderMeta.DB_NAME)
+                                                                   .getAbsolutePath(),
+                                                               null,
+                                                               SQLiteDatabase.OPEN_READONLY);
+        copy = SQLiteDatabase.create(null);
+
+        // replicate schema (tables, indexes and triggers) into an in-memory database, to not pollute the app
+        // database; shadow tables of the full text index are created together with the index itself, triggers need
+        // their tables to exist
+        List<String> schema = new ArrayList<>();
+        try (Cursor cursor = original.rawQuery("SELECT sql FROM sqlite_master WHERE sql IS NOT NULL AND " +
+                                                   "name NOT LIKE 'sqlite_%' AND name != 'android_metadata' AND " +
+                                                   "NOT (type = 'table' AND name LIKE '" +
+                                                   ProviderTableMeta.FILE_SEARCH_TABLE_NAME + "\\_%' ESCAPE '\\') " +
+                                                   "ORDER BY CASE type WHEN 'table' THEN 0 WHEN 'index' THEN 1 " +
+                                                   "ELSE 2 END", null)) {
+            while (cursor.moveToNext()) {
+                schema.add(cursor.getString(0));
+            }
+        }
+        original.close();
+
+        for (String statement : schema) {
+            copy.execSQL(statement);
+        }
+
+        copy.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                ContentValues values = new ContentValues();
+                values.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, OWNER);
+                values.put(ProviderTableMeta.FILE_PATH, "/folder" + (i % 100) + "/file" + i);
+                values.put(ProviderTableMeta.FILE_PARENT, i % 100);
+                values.put(ProviderTableMeta.FILE_REMOTE_ID, "remoteId" + i);
+                values.put(ProviderTableMeta.FILE_NAME, "file" + i);
+                copy.insert(ProviderTableMeta.FILE_TABLE_NAME, null, values);
+            }
+            copy.setTransactionSuccessful();
+        } finally {
+            copy.endTransaction();
+        }
+        copy.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        copy.close();
+    }
+
+    @Test
+    public void testQueryPlanUsesIndex() {
+        assertUsesIndex(ProviderTableMeta.FILE_PATH + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_PATH);
+        assertUsesIndex(ProviderTableMeta.FILE_PARENT + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        ProviderTableMeta.FILE_PARENT, ProviderTableMeta.FILE_ACCOUNT_OWNER);
+        assertUsesIndex(ProviderTableMeta.FILE_PARENT + "=?",
+                        ProviderTableMeta.FILE_PARENT, ProviderTableMeta.FILE_ACCOUNT_OWNER);
+        assertUsesIndex(ProviderTableMeta.FILE_REMOTE_ID + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_REMOTE_ID);
+        assertUsesIndex(ProviderTableMeta.FILE_STORAGE_PATH + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                        ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_STORAGE_PATH);
+    }
+
+    @Test
+    public void testLookupByPathWithoutIndexScansTable() {
+        String selection = ProviderTableMeta.FILE_PATH + "=? AND " + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?";
+        assertFound(selection);
+
+        copy.execSQL("DROP INDEX " + FileContentProvider.getIndexName(ProviderTableMeta.FILE_TABLE_NAME,
+                                                                      ProviderTableMeta.FILE_ACCOUNT_OWNER,
+                                                                      ProviderTableMeta.FILE_PATH));
+
+        String plan = queryPlan(selection);
+        assertFalse(plan, plan.contains("USING INDEX"));
+        assertFound(selection);
+    }
+
+    private void assertUsesIndex(String selection, String... indexColumns) {
+        String plan = queryPlan(selection);
+        String index = FileContentProvider.getIndexName(ProviderTableMeta.FILE_TABLE_NAME, indexColumns);
+
+        assertTrue(plan, plan.contains("USING INDEX " + index) || plan.contains("USING COVERING INDEX " + index));
+    }
+
+    private String queryPlan(String selection) {
+        String[] selectionArgs = selection.contains(ProviderTableMeta.FILE_ACCOUNT_OWNER) ?
+            new String[]{"a", OWNER} : new String[]{"a"};
+
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = copy.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME +
+                                               " WHERE " + selection, selectionArgs)) {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndex("detail"))).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Looks up some of the inserted files by path.
+     */
+    private void assertFound(String selection) {
+        for (int row = 0; row < ROWS; row += ROWS / 10) {
+            String path = "/folder" + (row % 100) + "/file" + row;
+            try (Cursor cursor = copy.query(ProviderTableMeta.FILE_TABLE_NAME,
+                                            null,
+                                            selection,
+                                            new String[]{path, OWNER},
+                                            null,
+                                            null,
+                                            null)) {
+                assertTrue(path, cursor.moveToFirst());
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures query throughput of the file provider and checks that connection wide settings are applied.
+ */
+public class FileContentProviderQueryIT extends AbstractIT {
+    private static final String TAG = FileContentProviderQueryIT.class.getSimpleName();
+    private static final int QUERIES = 2000;
+
+    @Test
+    public void testConnectionSettings() {
+        OCFile root = fileDataStorageManager.getFileByPath(OCFile.ROOT_PATH);
+        assertNotNull(root);
+
+        // LIKE must still be case sensitive, without being set by the query itself
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH + " LIKE ?";
+        assertEquals(1, count(selection, account.name, OCFile.ROOT_PATH));
+
+        OCFile file = new OCFile("/caseSensitive.txt");
+        fileDataStorageManager.saveNewFile(file);
+        try {
+            assertEquals(1, count(selection, account.name, "/caseSensitive%"));
+            assertEquals(0, count(selection, account.name, "/CASESENSITIVE%"));
+        } finally {
+            fileDataStorageManager.removeFile(fileDataStorageManager.getFileByPath(file.getRemotePath()), true, false);
+        }
+    }
+
+    /**
+     * Benchmark, timings are only logged as they depend on the device; every query is checked to return the root
+     * folder.
+     */
+    @Test
+    public void benchmarkQuery() {
+        OCFile root = fileDataStorageManager.getFileByPath(OCFile.ROOT_PATH);
+        Uri uri = Uri.withAppendedPath(ProviderTableMeta.CONTENT_URI_FILE, String.valueOf(root.getFileId()));
+        String[] projection = new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH};
+
+        // warm up
+        query(uri, projection, root, QUERIES / 10);
+
+        long start = System.currentTimeMillis();
+        query(uri, projection, root, QUERIES);
+        long duration = System.currentTimeMillis() - start;
+
+        Log_OC.d(TAG, QUERIES + " queries in " + duration + "ms, " + (QUERIES * 1000L / Math.max(duration, 1)) +
+            " queries/s");
+    }
+
+    private void query(Uri uri, String[] projection, OCFile expected, int amount) {
+        for (int i = 0; i < amount; i++) {
+            try (Cursor cursor = targetContext.getContentResolver().query(uri, projection, null, null, null)) {
+                assertNotNull(cursor);
+                assertEquals(1, cursor.getCount());
+                assertTrue(cursor.moveToFirst());
+                assertEquals(expected.getFileId(), cursor.getLong(0));
+                assertEquals(expected.getRemotePath(), cursor.getString(1));
+            }
+        }
+    }
+
+    private int count(String selection, String... selectionArgs) {
+        try (Cursor cursor = targetContext.getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                                                      null,
+                                                                      selection,
+                                                                      selectionArgs,
+                                                                      null)) {
+            assertNotNull(cursor);
+            return cursor.getCount();
+        }
+    }
+}
@@ -36,11 +36,12 @@ import com.owncloud.android.utils.EncryptionUtils;
 import net.bytebuddy.utility.RandomString;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.KeyPair;
@@ -56,7 +57,6 @@ import androidx.annotation.RequiresApi;
 import androidx.test.runner.AndroidJUnit4;
 
 import static androidx.test.InstrumentationRegistry.getInstrumentation;
-import static com.owncloud.android.utils.EncryptionUtils.EncryptedFile;
 import static com.owncloud.android.utils.EncryptionUtils.decodeStringToBase64Bytes;
 import static com.owncloud.android.utils.EncryptionUtils.decryptFile;
 import static com.owncloud.android.utils.EncryptionUtils.decryptFolderMetaData;
@@ -280,6 +280,45 @@ public class EncryptionTestIT {
                         .getAuthenticationTag())));
     }
 
+    /**
+     * Files are encrypted as stream, so also files larger than 2 GB, which do not fit into a byte array, can be handled
+     */
+    @Test
+    public void cryptLargeFile() throws Exception {
+        long size = 2L * 1024 * 1024 * 1024 + 123;
+        File file = File.createTempFile("large", "file");
+        File encryptedFile = File.createTempFile("large", "tmp");
+        File decryptedFile = File.createTempFile("large", "dec");
+
+        try {
+            Assume.assumeTrue("Not enough free space", file.getUsableSpace() > 3 * size);
+
+            // sparse file, only content at the end
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(size);
+                randomAccessFile.seek(size - 4);
+                randomAccessFile.write(new byte[]{1, 2, 3, 4});
+            }
+            String md5 = getMD5Sum(file);
+
+            byte[] key = generateKey();
+            byte[] iv = randomBytes(ivLength);
+            byte[] authenticationTag = decodeStringToBase64Bytes(encryptFile(file, encryptedFile, key, iv));
+
+            // ciphertext followed by 128 bit tag
+            assertEquals(size + 16, encryptedFile.length());
+
+            decryptFile(encryptedFile, decryptedFile, key, iv, authenticationTag);
+
+            assertEquals(size, decryptedFile.length());
+            assertEquals(md5, getMD5Sum(decryptedFile));
+        } finally {
+            assertTrue(file.delete());
+            assertTrue(encryptedFile.delete());
+            assertTrue(decryptedFile.delete());
+        }
+    }
+
     @Test
     public void bigMetadata() throws Exception {
         DecryptedFolderMetadata decryptedFolderMetadata1 = generateFolderMetadata();
@@ -485,24 +524,14 @@ public class EncryptionTestIT {
         File file = getFile(fileName);
         assertEquals(md5, getMD5Sum(file));
 
-        EncryptedFile encryptedFile = encryptFile(file, key, iv);
-
         File encryptedTempFile = File.createTempFile("file", "tmp");
-        FileOutputStream fileOutputStream = new FileOutputStream(encryptedTempFile);
-        fileOutputStream.write(encryptedFile.encryptedBytes);
-        fileOutputStream.close();
-
-        byte[] authenticationTag = decodeStringToBase64Bytes(encryptedFile.authenticationTag);
+        byte[] authenticationTag = decodeStringToBase64Bytes(encryptFile(file, encryptedTempFile, key, iv));
 
         // verify authentication tag
         assertTrue(Arrays.equals(expectedAuthTag, authenticationTag));
 
-        byte[] decryptedBytes = decryptFile(encryptedTempFile, key, iv, authenticationTag);
-
         File decryptedFile = File.createTempFile("file", "dec");
-        FileOutputStream fileOutputStream1 = new FileOutputStream(decryptedFile);
-        fileOutputStream1.write(decryptedBytes);
-        fileOutputStream1.close();
+        decryptFile(encryptedTempFile, decryptedFile, key, iv, authenticationTag);
 
         return md5.compareTo(getMD5Sum(decryptedFile)) == 0;
     }
@@ -23,7 +23,9 @@
 package com.nextcloud.android.sso;
 
 import android.accounts.Account;
+import android.accounts.AccountManager;
 import android.accounts.AuthenticatorException;
+import android.accounts.OnAccountsUpdateListener;
 import android.accounts.OperationCanceledException;
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -73,6 +75,8 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
+import androidx.annotation.VisibleForTesting;
+
 import static com.nextcloud.android.sso.Constants.DELIMITER;
 import static com.nextcloud.android.sso.Constants.EXCEPTION_ACCOUNT_NOT_FOUND;
 import static com.nextcloud.android.sso.Constants.EXCEPTION_HTTP_REQUEST_FAILED;
@@ -99,9 +103,30 @@ public class InputStreamBinder extends IInputStreamService.Stub {
     private Context context;
     private UserAccountManager accountManager;
 
+    private final ValidatedTokenCache tokenCache = new ValidatedTokenCache();
+    private final SharedPreferences ssoPreferences;
+
+    // held here, as shared preferences only keep a weak reference to their listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener grantListener =
+        (sharedPreferences, key) -> tokenCache.clear();
+    private final OnAccountsUpdateListener accountsListener = accounts -> tokenCache.clear();
+
     public InputStreamBinder(Context context, UserAccountManager accountManager) {
         this.context = context;
         this.accountManager = accountManager;
+
+        ssoPreferences = context.getSharedPreferences(SSO_SHARED_PREFERENCE, Context.MODE_PRIVATE);
+        ssoPreferences.registerOnSharedPreferenceChangeListener(grantListener);
+        AccountManager.get(context).addOnAccountsUpdatedListener(accountsListener, null, false);
+    }
+
+    /**
+     * Stops listening to grant and account changes; the binder must not be used afterwards.
+     */
+    public void release() {
+        ssoPreferences.unregisterOnSharedPreferenceChangeListener(grantListener);
+        AccountManager.get(context).removeOnAccountsUpdatedListener(accountsListener);
+        tokenCache.clear();
     }
 
     public ParcelFileDescriptor performNextcloudRequestV2(ParcelFileDescriptor input) {
@@ -309,15 +334,7 @@ public class InputStreamBinder extends IInputStreamService.Stub {
         throws UnsupportedOperationException,
         com.owncloud.android.lib.common.accounts.AccountUtils.AccountNotFoundException,
         OperationCanceledException, AuthenticatorException, IOException {
-        Account account = accountManager.getAccountByName(request.getAccountName());
-        if (account == null) {
-            throw new IllegalStateException(EXCEPTION_ACCOUNT_NOT_FOUND);
-        }
-
-        // Validate token
-        if (!isValid(request)) {
-            throw new IllegalStateException(EXCEPTION_INVALID_TOKEN);
-        }
+        OwnCloudAccount ocAccount = getValidatedAccount(request);
 
         // Validate URL
         if (request.getUrl().length() == 0 || request.getUrl().charAt(0) != PATH_SEPARATOR) {
@@ -326,7 +343,6 @@ public class InputStreamBinder extends IInputStreamService.Stub {
         }
 
         OwnCloudClientManager ownCloudClientManager = OwnCloudClientManagerFactory.getDefaultSingleton();
-        OwnCloudAccount ocAccount = new OwnCloudAccount(account, context);
         OwnCloudClient client = ownCloudClientManager.getClientFor(ocAccount, context);
 
         HttpMethodBase method = buildMethod(request, client.getBaseUri(), requestBodyInputStream);
@@ -372,15 +388,7 @@ public class InputStreamBinder extends IInputStreamService.Stub {
         throws UnsupportedOperationException,
         com.owncloud.android.lib.common.accounts.AccountUtils.AccountNotFoundException,
         OperationCanceledException, AuthenticatorException, IOException {
-        Account account = accountManager.getAccountByName(request.getAccountName());
-        if (account == null) {
-            throw new IllegalStateException(EXCEPTION_ACCOUNT_NOT_FOUND);
-        }
-
-        // Validate token
-        if (!isValid(request)) {
-            throw new IllegalStateException(EXCEPTION_INVALID_TOKEN);
-        }
+        OwnCloudAccount ocAccount = getValidatedAccount(request);
 
         // Validate URL
         if (request.getUrl().length() == 0 || request.getUrl().charAt(0) != PATH_SEPARATOR) {
@@ -389,7 +397,6 @@ public class InputStreamBinder extends IInputStreamService.Stub {
         }
 
         OwnCloudClientManager ownCloudClientManager = OwnCloudClientManagerFactory.getDefaultSingleton();
-        OwnCloudAccount ocAccount = new OwnCloudAccount(account, context);
         OwnCloudClient client = ownCloudClientManager.getClientFor(ocAccount, context);
 
         HttpMethodBase method = buildMethod(request, client.getBaseUri(), requestBodyInputStream);
@@ -431,12 +438,46 @@ public class InputStreamBinder extends IInputStreamService.Stub {
         }
     }
 
+    /**
+     * Checks account and token of the request, using the cache of already validated tokens of the calling app.
+     *
+     * @return account of the request
+     */
+    @VisibleForTesting
+    OwnCloudAccount getValidatedAccount(NextcloudRequest request)
+        throws com.owncloud.android.lib.common.accounts.AccountUtils.AccountNotFoundException {
+        int uid = Binder.getCallingUid();
+        OwnCloudAccount ocAccount = tokenCache.get(uid, request.getAccountName(), request.getToken());
+        if (ocAccount != null) {
+            return ocAccount;
+        }
+
+        long generation = tokenCache.getGeneration();
+        Account account = accountManager.getAccountByName(request.getAccountName());
+        if (account == null) {
+            throw new IllegalStateException(EXCEPTION_ACCOUNT_NOT_FOUND);
+        }
+
+        // Validate token
+        if (!isValid(request)) {
+            throw new IllegalStateException(EXCEPTION_INVALID_TOKEN);
+        }
+
+        ocAccount = createOwnCloudAccount(account);
+        tokenCache.put(uid, request.getAccountName(), request.getToken(), ocAccount, generation);
+        return ocAccount;
+    }
+
+    @VisibleForTesting
+    OwnCloudAccount createOwnCloudAccount(Account account)
+        throws com.owncloud.android.lib.common.accounts.AccountUtils.AccountNotFoundException {
+        return new OwnCloudAccount(account, context);
+    }
+
     private boolean isValid(NextcloudRequest request) {
         String callingPackageName = context.getPackageManager().getNameForUid(Binder.getCallingUid());
 
-        SharedPreferences sharedPreferences = context.getSharedPreferences(SSO_SHARED_PREFERENCE,
-                                                                           Context.MODE_PRIVATE);
-        String hash = sharedPreferences.getString(callingPackageName + DELIMITER + request.getAccountName(), "");
+        String hash = ssoPreferences.getString(callingPackageName + DELIMITER + request.getAccountName(), "");
         return validateToken(hash, request.getToken());
     }
 
@@ -455,7 +496,7 @@ public class InputStreamBinder extends IInputStreamService.Stub {
     }
 
     // Taken from http://codahale.com/a-lesson-in-timing-attacks/
-    private static boolean isEqual(byte[] a, byte[] b) {
+    static boolean isEqual(byte[] a, byte[] b) {
         if (a.length != b.length) {
             return false;
         }
@@ -0,0 +1,100 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.android.sso;
+
+import com.owncloud.android.lib.common.OwnCloudAccount;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+import static com.nextcloud.android.sso.Constants.DELIMITER;
+
+/**
+ * SSO tokens that were already checked against their stored grant, keyed by calling uid, account and token hash,
+ * together with the resolved account.
+ *
+ * The cache has to be cleared whenever grants or accounts change. Entries are only added if no clear happened while
+ * the token was validated, see {@link #getGeneration()}.
+ */
+class ValidatedTokenCache {
+    private static final int MAX_ENTRIES = 64;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private long generation;
+
+    private static class Entry {
+        private final String token;
+        private final OwnCloudAccount account;
+
+        private Entry(String token, OwnCloudAccount account) {
+            this.token = token;
+            this.account = account;
+        }
+    }
+
+    /**
+     * @return account of an already validated token, null if the token has to be validated
+     */
+    @Nullable
+    synchronized OwnCloudAccount get(int uid, String accountName, @Nullable String token) {
+        if (token == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(getKey(uid, accountName, token));
+        if (entry != null && InputStreamBinder.isEqual(entry.token.getBytes(), token.getBytes())) {
+            return entry.account;
+        }
+        return null;
+    }
+
+    /**
+     * @return current generation, to be passed to {@link #put} after validating a token
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Adds a validated token, unless the cache was cleared since the given generation.
+     */
+    synchronized void put(int uid, String accountName, String token, OwnCloudAccount account, long generation) {
+        if (this.generation == generation) {
+            entries.put(getKey(uid, accountName, token), new Entry(token, account));
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        generation++;
+    }
+
+    private static String getKey(int uid, String accountName, String token) {
+        return uid + DELIMITER + accountName + DELIMITER + token.hashCode();
+    }
+}
@@ -20,7 +20,6 @@
 package com.nextcloud.android.sso.aidl;
 
 import android.os.ParcelFileDescriptor;
-import android.util.Log;
 
 import com.owncloud.android.lib.common.utils.Log_OC;
 
@@ -29,9 +28,40 @@ import org.apache.commons.httpclient.HttpMethodBase;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.VisibleForTesting;
 
 public final class ParcelFileDescriptorUtil {
 
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    @VisibleForTesting
+    static final int MAX_POOLED_TRANSFERS = 8;
+    private static final long TRANSFER_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Pumps responses on reused threads. If all threads are busy, e.g. with long downloads, the transfer gets its own
+     * thread instead of waiting, as the calling app may only read the queued response after the running ones.
+     */
+    private static final ThreadPoolExecutor TRANSFER_EXECUTOR = new ThreadPoolExecutor(
+        0,
+        MAX_POOLED_TRANSFERS,
+        TRANSFER_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new SynchronousQueue<>(),
+        runnable -> {
+            Thread thread = new Thread(runnable, "ParcelFileDescriptor Transfer Thread");
+            thread.setDaemon(true);
+            return thread;
+        },
+        (runnable, executor) -> {
+            Thread thread = new Thread(runnable, "ParcelFileDescriptor Transfer Thread");
+            thread.setDaemon(true);
+            thread.start();
+        });
+
     private ParcelFileDescriptorUtil() { }
 
     public static ParcelFileDescriptor pipeFrom(InputStream inputStream,
@@ -42,35 +72,40 @@ public final class ParcelFileDescriptorUtil {
         ParcelFileDescriptor readSide = pipe[0];
         ParcelFileDescriptor writeSide = pipe[1];
 
-        // start the transfer thread
-        new TransferThread(inputStream,
-                           new ParcelFileDescriptor.AutoCloseOutputStream(writeSide),
-                           listener,
-                           method)
-                .start();
+        // start the transfer
+        transfer(inputStream, new ParcelFileDescriptor.AutoCloseOutputStream(writeSide), listener, method);
 
         return readSide;
     }
 
-    public static class TransferThread extends Thread {
-        private static final String TAG = TransferThread.class.getCanonicalName();
+    /**
+     * Starts pumping the input stream to the output stream, on a pooled thread if one is available.
+     */
+    @VisibleForTesting
+    static void transfer(InputStream inputStream,
+                         OutputStream outputStream,
+                         IThreadListener listener,
+                         HttpMethodBase method) {
+        TRANSFER_EXECUTOR.execute(new Transfer(inputStream, outputStream, listener, method));
+    }
+
+    static class Transfer implements Runnable {
+        private static final String TAG = Transfer.class.getCanonicalName();
         private final InputStream inputStream;
         private final OutputStream outputStream;
         private final IThreadListener threadListener;
         private final HttpMethodBase httpMethod;
 
-        TransferThread(InputStream in, OutputStream out, IThreadListener listener, HttpMethodBase method) {
-            super("ParcelFileDescriptor Transfer Thread");
+        Transfer(InputStream in, OutputStream out, IThreadListener listener, HttpMethodBase method) {
             inputStream = in;
             outputStream = out;
             threadListener = listener;
             httpMethod = method;
-            setDaemon(true);
         }
 
         @Override
         public void run() {
-            byte[] buf = new byte[1024];
+            byte[] buf = new byte[TRANSFER_BUFFER_SIZE];
             int len;
 
             try {
@@ -93,7 +128,7 @@ public final class ParcelFileDescriptorUtil {
                 }
             }
             if (threadListener != null) {
-                threadListener.onThreadFinished(this);
+                threadListener.onThreadFinished(Thread.currentThread());
             }
 
             if (httpMethod != null) {
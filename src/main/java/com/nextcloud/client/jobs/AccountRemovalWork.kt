@@ -53,6 +53,7 @@ import com.owncloud.android.ui.activity.ManageAccountsActivity
 import com.owncloud.android.ui.events.AccountRemovedEvent
 import com.owncloud.android.utils.EncryptionUtils
 import com.owncloud.android.utils.FileStorageUtils
+import com.owncloud.android.utils.FilesSyncHelper
 import com.owncloud.android.utils.PushUtils
 import org.greenrobot.eventbus.EventBus
 import java.io.File
@@ -172,8 +173,10 @@ class AccountRemovalWork(
         }
         syncedFolderProvider.deleteSyncFoldersForAccount(account)
         val filesystemDataProvider = FilesystemDataProvider(context.contentResolver)
+        val arbitraryDataProvider = ArbitraryDataProvider(context.contentResolver)
         for (syncedFolderId in syncedFolderIds) {
             filesystemDataProvider.deleteAllEntriesForSyncedFolder(java.lang.Long.toString(syncedFolderId))
+            FilesSyncHelper.resetMediaScan(arbitraryDataProvider, syncedFolderId)
         }
     }
 
@@ -91,7 +91,18 @@ interface BackgroundJobManager {
     ): LiveData<JobInfo?>
 
     fun schedulePeriodicFilesSyncJob()
-    fun startImmediateFilesSyncJob(skipCustomFolders: Boolean = false, overridePowerSaving: Boolean = false)
+    /**
+     * Start auto upload of synced folders.
+     *
+     * @param skipCustomFolders skip synced folders not backed by the media store
+     * @param overridePowerSaving run even if power saving is enabled
+     * @param changedMediaOnly only check media added or modified since the last run, see [FilesSyncWork]
+     */
+    fun startImmediateFilesSyncJob(
+        skipCustomFolders: Boolean = false,
+        overridePowerSaving: Boolean = false,
+        changedMediaOnly: Boolean = false
+    )
     fun scheduleOfflineSync()
 
     fun scheduleMediaFoldersDetectionJob()
@@ -282,18 +282,30 @@ internal class BackgroundJobManagerImpl(
     }
 
     override fun schedulePeriodicFilesSyncJob() {
+        // all media is still checked periodically, but less often
+        val arguments = Data.Builder()
+            .putBoolean(FilesSyncWork.CHANGED_MEDIA_ONLY, true)
+            .build()
+
         val request = periodicRequestBuilder(
             jobClass = FilesSyncWork::class,
             jobName = JOB_PERIODIC_FILES_SYNC,
             intervalMins = DEFAULT_PERIODIC_JOB_INTERVAL_MINUTES
-        ).build()
+        )
+            .setInputData(arguments)
+            .build()
         workManager.enqueueUniquePeriodicWork(JOB_PERIODIC_FILES_SYNC, ExistingPeriodicWorkPolicy.REPLACE, request)
     }
 
-    override fun startImmediateFilesSyncJob(skipCustomFolders: Boolean, overridePowerSaving: Boolean) {
+    override fun startImmediateFilesSyncJob(
+        skipCustomFolders: Boolean,
+        overridePowerSaving: Boolean,
+        changedMediaOnly: Boolean
+    ) {
         val arguments = Data.Builder()
             .putBoolean(FilesSyncWork.SKIP_CUSTOM, skipCustomFolders)
             .putBoolean(FilesSyncWork.OVERRIDE_POWER_SAVING, overridePowerSaving)
+            .putBoolean(FilesSyncWork.CHANGED_MEDIA_ONLY, changedMediaOnly)
             .build()
 
         val request = oneTimeRequestBuilder(
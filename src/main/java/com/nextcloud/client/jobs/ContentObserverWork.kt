@@ -59,7 +59,11 @@ class ContentObserverWork(
     private fun checkAndStartFileSyncJob() {
         val syncFolders = syncerFolderProvider.countEnabledSyncedFolders() > 0
         if (!powerManagementService.isPowerSavingEnabled && syncFolders) {
-            backgroundJobManager.startImmediateFilesSyncJob(true, false)
+            backgroundJobManager.startImmediateFilesSyncJob(
+                skipCustomFolders = true,
+                overridePowerSaving = false,
+                changedMediaOnly = true
+            )
         }
     }
 }
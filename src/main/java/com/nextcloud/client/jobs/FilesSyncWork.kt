@@ -78,6 +78,7 @@ class FilesSyncWork(
         const val TAG = "FilesSyncJob"
         const val SKIP_CUSTOM = "skipCustom"
         const val OVERRIDE_POWER_SAVING = "overridePowerSaving"
+        const val CHANGED_MEDIA_ONLY = "changedMediaOnly"
         private const val WAKELOCK_TAG_SEPARATION = ":"
         private const val WAKELOCK_ACQUIRE_TIMEOUT_MS = 10L * 60L * 1000L
     }
@@ -102,13 +103,14 @@ class FilesSyncWork(
         val resources = context.resources
         val lightVersion = resources.getBoolean(R.bool.syncedFolder_light)
         val skipCustom = inputData.getBoolean(SKIP_CUSTOM, false)
+        val changedMediaOnly = inputData.getBoolean(CHANGED_MEDIA_ONLY, false)
         FilesSyncHelper.restartJobsIfNeeded(
             uploadsStorageManager,
             userAccountManager,
             connectivityService,
             powerManagementService
         )
-        FilesSyncHelper.insertAllDBEntries(preferences, clock, skipCustom)
+        FilesSyncHelper.insertAllDBEntries(preferences, clock, skipCustom, changedMediaOnly)
         // Create all the providers we'll needq
         val filesystemDataProvider = FilesystemDataProvider(contentResolver)
         val syncedFolderProvider = SyncedFolderProvider(contentResolver, preferences, clock)
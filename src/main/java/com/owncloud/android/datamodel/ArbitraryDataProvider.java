@@ -101,7 +101,7 @@ public class ArbitraryDataProvider {
         }
     }
 
-    Long getLongValue(String accountName, String key) {
+    public Long getLongValue(String accountName, String key) {
         String value = getValue(accountName, key);
 
         if (value.isEmpty()) {
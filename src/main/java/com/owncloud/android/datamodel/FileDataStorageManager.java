@@ -30,24 +30,22 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.os.Build;
+import android.os.CancellationSignal;
 import android.os.RemoteException;
 import android.provider.MediaStore;
 import android.text.TextUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
-import com.owncloud.android.lib.common.network.WebdavEntry;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.ReadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
-import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.lib.resources.status.CapabilityBooleanType;
 import com.owncloud.android.lib.resources.status.OCCapability;
 import com.owncloud.android.operations.RemoteOperationFailedException;
@@ -60,10 +58,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
@@ -79,6 +79,11 @@ public class FileDataStorageManager {
     private static final String SENDING_TO_FILECONTENTPROVIDER_MSG = "Sending %d operations to FileContentProvider";
     private static final String EXCEPTION_MSG = "Exception in batch of operations ";
 
+    /**
+     * Upper bound of arguments per IN clause, SQLite allows at most 999 host parameters per statement.
+     */
+    private static final int MAX_QUERY_ARGS = 500;
+
     public static final int ROOT_PARENT_ID = 0;
     public static final String NULL_STRING = "null";
 
@@ -178,8 +183,16 @@ public class FileDataStorageManager {
 
 
     public List<OCFile> getFolderContent(OCFile ocFile, boolean onlyOnDevice) {
+        return getFolderContent(ocFile, onlyOnDevice, null);
+    }
+
+    /**
+     * @param projection columns to read, e.g. {@link OCFileCursorMapper#BASIC_PROJECTION}; null reads all columns.
+     *                   Files read with a reduced projection must not be saved back to database.
+     */
+    public List<OCFile> getFolderContent(OCFile ocFile, boolean onlyOnDevice, @Nullable String[] projection) {
         if (ocFile != null && ocFile.isFolder() && ocFile.fileExists()) {
-            return getFolderContent(ocFile.getFileId(), onlyOnDevice);
+            return getFolderContent(ocFile.getFileId(), onlyOnDevice, projection);
         } else {
             return new ArrayList<>();
         }
@@ -240,7 +253,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, ocFile.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, ocFile.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, ocFile.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(ocFile.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.GSON.toJson(ocFile.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, ocFile.getRichWorkspace());
 
         boolean sameRemotePath = fileExists(ocFile.getRemotePath());
@@ -363,16 +376,34 @@ public class FileDataStorageManager {
 
         ArrayList<ContentProviderOperation> operations = new ArrayList<>(updatedFiles.size());
 
+        // existing entries are resolved in bulk instead of one query per child
+        Map<String, Long> existingPaths = getFolderContentIds(folder.getFileId());
+        Set<Long> existingIds = new HashSet<>(existingPaths.values());
+
+        List<String> unknownIds = new ArrayList<>();
+        List<String> unknownPaths = new ArrayList<>();
+        for (OCFile ocFile : updatedFiles) {
+            if (ocFile.getFileId() != -1 && !existingIds.contains(ocFile.getFileId())) {
+                unknownIds.add(String.valueOf(ocFile.getFileId()));
+            }
+            if (!existingPaths.containsKey(ocFile.getRemotePath())) {
+                unknownPaths.add(ocFile.getRemotePath());
+            }
+        }
+        existingIds.addAll(getFileIdsForValues(ProviderTableMeta._ID, unknownIds).values());
+        existingPaths.putAll(getFileIdsForValues(ProviderTableMeta.FILE_PATH, unknownPaths));
+
         // prepare operations to insert or update files to save in the given folder
         for (OCFile ocFile : updatedFiles) {
             ContentValues contentValues = createContentValueForFile(ocFile, folder);
 
-            if (fileExists(ocFile.getFileId()) || fileExists(ocFile.getRemotePath())) {
+            Long existingId = existingPaths.get(ocFile.getRemotePath());
+            if (existingIds.contains(ocFile.getFileId()) || existingId != null) {
                 long fileId;
                 if (ocFile.getFileId() != -1) {
                     fileId = ocFile.getFileId();
                 } else {
-                    fileId = getFileByPath(ocFile.getRemotePath()).getFileId();
+                    fileId = existingId;
                 }
                 // updating an existing file
                 operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
@@ -463,6 +494,230 @@ public class FileDataStorageManager {
         }
     }
 
+    /**
+     * Retrieves remote path and id of all direct children of a folder with a single query.
+     *
+     * @param folderId id of the folder
+     * @return map of remote path to file id
+     */
+    private Map<String, Long> getFolderContentIds(long folderId) {
+        Map<String, Long> result = new HashMap<>();
+
+        Cursor cursor = queryFiles(new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH},
+                                   ProviderTableMeta.FILE_PARENT + AND + ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?",
+                                   new String[]{String.valueOf(folderId), account.name});
+
+        if (cursor != null) {
+            int idIndex = cursor.getColumnIndex(ProviderTableMeta._ID);
+            int pathIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH);
+            while (cursor.moveToNext()) {
+                result.put(cursor.getString(pathIndex), cursor.getLong(idIndex));
+            }
+            cursor.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves file ids for the given values of a column, using one query per {@link #MAX_QUERY_ARGS} values.
+     *
+     * @param column column to match, e.g. {@link ProviderTableMeta#_ID} or {@link ProviderTableMeta#FILE_PATH}
+     * @param values values to look up
+     * @return map of found value to file id
+     */
+    private Map<String, Long> getFileIdsForValues(String column, Collection<String> values) {
+        Map<String, Long> result = new HashMap<>(values.size());
+        List<String> list = new ArrayList<>(values);
+
+        for (int start = 0; start < list.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = list.subList(start, Math.min(start + MAX_QUERY_ARGS, list.size()));
+            Cursor cursor = queryFiles(new String[]{ProviderTableMeta._ID, column},
+                                       ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + column +
+                                           " IN (" + makePlaceholders(chunk.size()) + ")",
+                                       withAccountName(chunk));
+
+            if (cursor != null) {
+                int idIndex = cursor.getColumnIndex(ProviderTableMeta._ID);
+                int valueIndex = cursor.getColumnIndex(column);
+                while (cursor.moveToNext()) {
+                    result.put(cursor.getString(valueIndex), cursor.getLong(idIndex));
+                }
+                cursor.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieves all files matching the given remote paths, using one query per {@link #MAX_QUERY_ARGS} paths.
+     *
+     * @param remotePaths remote paths to look up
+     * @return map of remote path to file, containing only found files
+     */
+    public Map<String, OCFile> getFilesByRemotePaths(Collection<String> remotePaths) {
+        Map<String, OCFile> result = new HashMap<>(remotePaths.size());
+        List<String> paths = new ArrayList<>(remotePaths);
+
+        for (int start = 0; start < paths.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = paths.subList(start, Math.min(start + MAX_QUERY_ARGS, paths.size()));
+            Cursor cursor = queryFiles(null,
+                                       ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH +
+                                           " IN (" + makePlaceholders(chunk.size()) + ")",
+                                       withAccountName(chunk));
+
+            if (cursor != null) {
+                for (OCFile file : new OCFileCursorMapper(cursor, account.name).mapAll(cursor)) {
+                    result.put(file.getRemotePath(), file);
+                }
+                cursor.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Searches the files of the account by name, using the full text index over file names. Every word of the query
+     * has to be the start of a word of the name; case is ignored for ASCII letters. Names equal to the query are
+     * ranked first, then names starting with the query, then all others by name. Folders are not returned.
+     *
+     * @param query              text to search for
+     * @param limit              maximum number of files to return
+     * @param cancellationSignal signal to abort the search, e.g. when running out of time, may be null
+     * @return matching files, best match first
+     * @throws android.os.OperationCanceledException if the search was aborted
+     */
+    public List<OCFile> searchFilesByName(String query, int limit, @Nullable CancellationSignal cancellationSignal) {
+        String matchQuery = buildNameMatchQuery(query);
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_CONTENT_TYPE +
+            " NOT IN (?, ?) AND ";
+        String[] selectionArgs;
+        if (matchQuery != null) {
+            selection += ProviderTableMeta._ID + " IN (SELECT docid FROM " + ProviderTableMeta.FILE_SEARCH_TABLE_NAME +
+                " WHERE " + ProviderTableMeta.FILE_SEARCH_TABLE_NAME + " MATCH ?)";
+            selectionArgs = new String[]{account.name, MimeType.DIRECTORY, MimeType.WEBDAV_FOLDER, matchQuery};
+        } else {
+            // no letters or digits, nothing in the index to look for
+            selection += ProviderTableMeta.FILE_NAME + " LIKE ? ESCAPE '\\'";
+            selectionArgs = new String[]{account.name, MimeType.DIRECTORY, MimeType.WEBDAV_FOLDER,
+                "%" + escapeLikePattern(query) + "%"};
+        }
+
+        // LIKE is case sensitive in this database, see FileContentProvider, so compare lower case names
+        String sortOrder = "CASE WHEN " + ProviderTableMeta.FILE_NAME + " = " + DatabaseUtils.sqlEscapeString(query) +
+            " COLLATE NOCASE THEN 0 WHEN lower(" + ProviderTableMeta.FILE_NAME + ") LIKE lower(" +
+            DatabaseUtils.sqlEscapeString(escapeLikePattern(query) + "%") + ") ESCAPE '\\' THEN 1 ELSE 2 END, " +
+            ProviderTableMeta.FILE_NAME + " COLLATE NOCASE LIMIT " + limit;
+
+        Cursor cursor;
+        if (getContentResolver() != null) {
+            cursor = getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                                null,
+                                                selection,
+                                                selectionArgs,
+                                                sortOrder,
+                                                cancellationSignal);
+        } else {
+            try {
+                cursor = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                          null,
+                                                          selection,
+                                                          selectionArgs,
+                                                          sortOrder,
+                                                          cancellationSignal);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not search files: " + e.getMessage(), e);
+                return new ArrayList<>();
+            }
+        }
+
+        List<OCFile> result = new ArrayList<>();
+        if (cursor != null) {
+            result = new OCFileCursorMapper(cursor, account.name).mapAll(cursor);
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Converts a search text to a full text query: the words of the text, each as prefix. Words are split at
+     * everything but letters and digits and, like the default tokenizer of the index does, only ASCII letters are
+     * lower cased. Lower case words are never read as operators.
+     *
+     * @param query search text
+     * @return full text query, null if the text contains no word
+     */
+    @Nullable
+    static String buildNameMatchQuery(String query) {
+        StringBuilder matchQuery = new StringBuilder();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                for (int j = start; j < i; j++) {
+                    char c = query.charAt(j);
+                    matchQuery.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+                }
+                matchQuery.append('*');
+                start = -1;
+            }
+        }
+        return matchQuery.length() == 0 ? null : matchQuery.toString();
+    }
+
+    private static String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private String[] withAccountName(List<String> values) {
+        String[] args = new String[values.size() + 1];
+        args[0] = account.name;
+        for (int i = 0; i < values.size(); i++) {
+            args[i + 1] = values.get(i);
+        }
+        return args;
+    }
+
+    private static String makePlaceholders(int count) {
+        StringBuilder placeholders = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                placeholders.append(',');
+            }
+            placeholders.append('?');
+        }
+        return placeholders.toString();
+    }
+
+    @Nullable
+    private Cursor queryFiles(@Nullable String[] projection, String selection, String... selectionArgs) {
+        if (getContentResolver() != null) {
+            return getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                              projection,
+                                              selection,
+                                              selectionArgs,
+                                              null);
+        } else {
+            try {
+                return getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                        projection,
+                                                        selection,
+                                                        selectionArgs,
+                                                        null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not query files: " + e.getMessage(), e);
+                return null;
+            }
+        }
+    }
+
     private ContentValues createContentValueForFile(OCFile folder) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
@@ -493,13 +748,17 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, folder.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, folder.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, folder.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(folder.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.GSON.toJson(folder.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, folder.getRichWorkspace());
 
         return cv;
     }
 
     private ContentValues createContentValueForFile(OCFile file, OCFile folder) {
+        return createContentValueForFile(file, folder.getFileId());
+    }
+
+    private ContentValues createContentValueForFile(OCFile file, long parentId) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
         cv.put(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA, file.getModificationTimestampAtLastSyncForData());
@@ -508,7 +767,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimeType());
         cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
         cv.put(ProviderTableMeta.FILE_ENCRYPTED_NAME, file.getEncryptedFileName());
-        cv.put(ProviderTableMeta.FILE_PARENT, folder.getFileId());
+        cv.put(ProviderTableMeta.FILE_PARENT, parentId);
         cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
         cv.put(ProviderTableMeta.FILE_PATH_DECRYPTED, file.getDecryptedRemotePath());
         cv.put(ProviderTableMeta.FILE_STORAGE_PATH, file.getStoragePath());
@@ -533,7 +792,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, file.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, file.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, file.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(file.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.GSON.toJson(file.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, file.getRichWorkspace());
 
         return cv;
@@ -630,7 +889,7 @@ public class FileDataStorageManager {
 
         if (localFolder.exists()) {
             // stage 1: remove the local files already registered in the files database
-            List<OCFile> files = getFolderContent(folder.getFileId(), false);
+            List<OCFile> files = getFolderContent(folder.getFileId(), false, null);
             for (OCFile ocFile : files) {
                 if (ocFile.isFolder()) {
                     success &= removeLocalFolder(ocFile);
@@ -720,9 +979,10 @@ public class FileDataStorageManager {
             if (cursor.moveToFirst()) {
                 int lengthOfOldPath = ocFile.getRemotePath().length();
                 int lengthOfOldStoragePath = defaultSavePath.length() + lengthOfOldPath;
+                OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, account.name);
                 do {
                     ContentValues contentValues = new ContentValues(); // keep construction in the loop
-                    OCFile childFile = createFileInstance(cursor);
+                    OCFile childFile = mapper.map(cursor);
                     contentValues.put(
                         ProviderTableMeta.FILE_PATH,
                         targetPath + childFile.getRemotePath().substring(lengthOfOldPath)
@@ -873,7 +1133,7 @@ public class FileDataStorageManager {
         }
     }
 
-    private List<OCFile> getFolderContent(long parentId, boolean onlyOnDevice) {
+    private List<OCFile> getFolderContent(long parentId, boolean onlyOnDevice, @Nullable String[] projection) {
         List<OCFile> folderContent = new ArrayList<>();
 
         Uri requestURI = Uri.withAppendedPath(ProviderTableMeta.CONTENT_URI_DIR, String.valueOf(parentId));
@@ -883,7 +1143,7 @@ public class FileDataStorageManager {
             try {
                 cursor = getContentProviderClient().query(
                     requestURI,
-                    null,
+                    projection,
                     ProviderTableMeta.FILE_PARENT + "=?",
                     new String[]{String.valueOf(parentId)},
                     null
@@ -895,7 +1155,7 @@ public class FileDataStorageManager {
         } else {
             cursor = getContentResolver().query(
                 requestURI,
-                null,
+                projection,
                 ProviderTableMeta.FILE_PARENT + "=?",
                 new String[]{String.valueOf(parentId)},
                 null
@@ -904,8 +1164,9 @@ public class FileDataStorageManager {
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, account.name);
                 do {
-                    OCFile child = createFileInstance(cursor);
+                    OCFile child = mapper.map(cursor);
                     if (!onlyOnDevice || child.existsOnDevice()) {
                         folderContent.add(child);
                     }
@@ -968,77 +1229,10 @@ public class FileDataStorageManager {
         return cursor;
     }
 
-    @Nullable
-    private OCFile createFileInstanceFromVirtual(Cursor cursor) {
-        long fileId = cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.VIRTUAL_OCFILE_ID));
-
-        return getFileById(fileId);
-    }
-
     private OCFile createFileInstance(Cursor cursor) {
         OCFile ocFile = null;
         if (cursor != null) {
-            ocFile = new OCFile(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PATH)));
-            ocFile.setDecryptedRemotePath(getString(cursor, ProviderTableMeta.FILE_PATH_DECRYPTED));
-            ocFile.setFileId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta._ID)));
-            ocFile.setParentId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT)));
-            ocFile.setMimeType(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
-            ocFile.setStoragePath(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
-            if (ocFile.getStoragePath() == null) {
-                // try to find existing file and bind it with current account;
-                // with the current update of SynchronizeFolderOperation, this won't be
-                // necessary anymore after a full synchronization of the account
-                File file = new File(FileStorageUtils.getDefaultSavePathFor(account.name, ocFile));
-                if (file.exists()) {
-                    ocFile.setStoragePath(file.getAbsolutePath());
-                    ocFile.setLastSyncDateForData(file.lastModified());
-                }
-            }
-            ocFile.setFileLength(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
-            ocFile.setCreationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION)));
-            ocFile.setModificationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
-            ocFile.setModificationTimestampAtLastSyncForData(cursor.getLong(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)));
-            ocFile.setLastSyncDateForProperties(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE)));
-            ocFile.setLastSyncDateForData(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)));
-            ocFile.setEtag(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
-            ocFile.setEtagOnServer(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER)));
-            ocFile.setSharedViaLink(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK)) == 1);
-            ocFile.setSharedWithSharee(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE)) == 1);
-            ocFile.setPublicLink(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PUBLIC_LINK)));
-            ocFile.setPermissions(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS)));
-            ocFile.setRemoteId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID)));
-            ocFile.setUpdateThumbnailNeeded(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL)) == 1);
-            ocFile.setDownloading(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING)) == 1);
-            ocFile.setEtagInConflict(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT)));
-            ocFile.setFavorite(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE)) == 1);
-            ocFile.setEncrypted(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED)) == 1);
-//            if (ocFile.isEncrypted()) {
-//                ocFile.setFileName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NAME)));
-//            }
-            ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE))]);
-            ocFile.setPreviewAvailable(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW)) == 1);
-            ocFile.setUnreadCommentsCount(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT)));
-            ocFile.setOwnerId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID)));
-            ocFile.setOwnerDisplayName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME)));
-            ocFile.setNote(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE)));
-            ocFile.setRichWorkspace(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE)));
-
-            String sharees = cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES));
-
-            if (sharees == null || NULL_STRING.equals(sharees) || sharees.isEmpty()) {
-                ocFile.setSharees(new ArrayList<>());
-            } else {
-                try {
-                    ShareeUser[] shareesArray = new Gson().fromJson(sharees, ShareeUser[].class);
-
-                    ocFile.setSharees(new ArrayList<>(Arrays.asList(shareesArray)));
-                } catch (JsonSyntaxException e) {
-                    // ignore saved value due to api change
-                    ocFile.setSharees(new ArrayList<>());
-                }
-            }
+            ocFile = new OCFileCursorMapper(cursor, account.name).map(cursor);
         }
 
         return ocFile;
@@ -2224,6 +2418,122 @@ public class FileDataStorageManager {
         }
     }
 
+    /**
+     * Stores files found by a search together with their entries in the given virtual folder, in one batch.
+     *
+     * Files are matched with stored ones by remote path. If parents are needed, they are looked up in bulk; only files
+     * with a parent not stored yet fall back to {@link #saveFileWithParent(OCFile, Context)}, which fetches the
+     * missing parents from the server.
+     *
+     * @param files       files to save, their ids are updated
+     * @param type        virtual folder the files belong to
+     * @param withParents true if the files have to be linked to their parent folder
+     * @param context     used to fetch missing parents
+     * @return saved files, without the ones whose parent could not be retrieved
+     */
+    public List<OCFile> saveSearchResults(List<OCFile> files,
+                                          VirtualFolderType type,
+                                          boolean withParents,
+                                          Context context) {
+        Set<String> paths = new HashSet<>();
+        for (OCFile file : files) {
+            paths.add(file.getRemotePath());
+            if (withParents) {
+                paths.add(file.getParentRemotePath());
+            }
+        }
+        Map<String, OCFile> storedFiles = getFilesByRemotePaths(paths);
+
+        List<OCFile> savedFiles = new ArrayList<>(files.size());
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(files.size() * 2);
+        // file inserted by the operation at the same position, if any
+        List<OCFile> insertedFiles = new ArrayList<>(files.size() * 2);
+
+        for (OCFile file : files) {
+            if (withParents && file.getParentId() == 0 && !OCFile.ROOT_PATH.equals(file.getRemotePath())) {
+                OCFile parent = storedFiles.get(file.getParentRemotePath());
+
+                if (parent == null) {
+                    try {
+                        file = saveFileWithParent(file, context);
+                    } catch (RemoteOperationFailedException e) {
+                        Log_OC.e(TAG, "Error saving file with parent" + e.getMessage(), e);
+                        continue;
+                    }
+                    // further files of the same folder do not need to look it up again
+                    OCFile savedParent = getFileById(file.getParentId());
+                    if (savedParent != null) {
+                        storedFiles.put(savedParent.getRemotePath(), savedParent);
+                    }
+                    operations.add(createVirtualOperation(type).withValue(ProviderTableMeta.VIRTUAL_OCFILE_ID,
+                                                                          file.getFileId()).build());
+                    insertedFiles.add(null);
+                    savedFiles.add(file);
+                    continue;
+                }
+
+                file.setParentId(parent.getFileId());
+            }
+
+            OCFile storedFile = storedFiles.get(file.getRemotePath());
+            if (storedFile != null) {
+                file.setFileId(storedFile.getFileId());
+                if (file.getParentId() == 0) {
+                    file.setParentId(storedFile.getParentId());
+                }
+
+                operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
+                                   .withValues(createContentValueForFile(file, file.getParentId()))
+                                   .withSelection(ProviderTableMeta._ID + " = ?",
+                                                  new String[]{String.valueOf(file.getFileId())})
+                                   .build());
+                insertedFiles.add(null);
+                operations.add(createVirtualOperation(type).withValue(ProviderTableMeta.VIRTUAL_OCFILE_ID,
+                                                                      file.getFileId()).build());
+            } else {
+                int insertIndex = operations.size();
+                operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI)
+                                   .withValues(createContentValueForFile(file, file.getParentId()))
+                                   .build());
+                insertedFiles.add(file);
+                operations.add(createVirtualOperation(type).withValueBackReference(
+                    ProviderTableMeta.VIRTUAL_OCFILE_ID, insertIndex).build());
+            }
+            insertedFiles.add(null);
+            savedFiles.add(file);
+        }
+
+        Log_OC.d(TAG, String.format(Locale.ENGLISH, SENDING_TO_FILECONTENTPROVIDER_MSG, operations.size()));
+
+        ContentProviderResult[] results = null;
+        try {
+            if (getContentResolver() != null) {
+                results = getContentResolver().applyBatch(MainApp.getAuthority(), operations);
+            } else {
+                results = getContentProviderClient().applyBatch(operations);
+            }
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, EXCEPTION_MSG + e.getMessage(), e);
+        }
+
+        // update new id in file objects for insertions
+        if (results != null) {
+            for (int i = 0; i < results.length && i < insertedFiles.size(); i++) {
+                OCFile insertedFile = insertedFiles.get(i);
+                if (insertedFile != null && results[i].uri != null) {
+                    insertedFile.setFileId(ContentUris.parseId(results[i].uri));
+                }
+            }
+        }
+
+        return savedFiles;
+    }
+
+    private ContentProviderOperation.Builder createVirtualOperation(VirtualFolderType type) {
+        return ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_VIRTUAL)
+            .withValue(ProviderTableMeta.VIRTUAL_TYPE, type.toString());
+    }
+
     public void saveVirtual(VirtualFolderType type, OCFile file) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.VIRTUAL_TYPE, type.toString());
@@ -2268,20 +2578,30 @@ public class FileDataStorageManager {
             );
         }
 
+        // resolve all referenced files at once instead of one query per virtual entry
+        List<String> fileIds = new ArrayList<>();
         if (c != null) {
-            if (c.moveToFirst()) {
-                do {
-                    OCFile child = createFileInstanceFromVirtual(c);
-
-                    if (child != null) {
-                        ocFiles.add(child);
-                    }
-                } while (c.moveToNext());
+            int fileIdIndex = c.getColumnIndex(ProviderTableMeta.VIRTUAL_OCFILE_ID);
+            while (c.moveToNext()) {
+                fileIds.add(String.valueOf(c.getLong(fileIdIndex)));
             }
 
             c.close();
         }
 
+        for (int start = 0; start < fileIds.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = fileIds.subList(start, Math.min(start + MAX_QUERY_ARGS, fileIds.size()));
+            Cursor cursor = queryFiles(null,
+                                       ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta._ID +
+                                           " IN (" + makePlaceholders(chunk.size()) + ")",
+                                       withAccountName(chunk));
+
+            if (cursor != null) {
+                ocFiles.addAll(new OCFileCursorMapper(cursor, account.name).mapAll(cursor));
+                cursor.close();
+            }
+        }
+
         if (onlyImages) {
             List<OCFile> temp = new ArrayList<>();
 
@@ -2337,11 +2657,7 @@ public class FileDataStorageManager {
         }
 
         if (cursor != null) {
-            if (cursor.moveToFirst()) {
-                do {
-                    folderContent.add(createFileInstance(cursor));
-                } while (cursor.moveToNext());
-            }
+            folderContent.addAll(new OCFileCursorMapper(cursor, account.name).mapAll(cursor));
             cursor.close();
         }
 
@@ -36,8 +36,9 @@ public class FileSystemDataSet {
     private long foundAt;
     private long syncedFolderId;
     @Nullable private String crc32;
+    private long fileSize = -1;
 
-    public FileSystemDataSet(int id, String localPath, long modifiedAt, boolean folder, boolean sentForUpload, long foundAt, long syncedFolderId, String crc32) {
+    public FileSystemDataSet(int id, String localPath, long modifiedAt, boolean folder, boolean sentForUpload, long foundAt, long syncedFolderId, String crc32, long fileSize) {
         this.id = id;
         this.localPath = localPath;
         this.modifiedAt = modifiedAt;
@@ -46,6 +47,7 @@ public class FileSystemDataSet {
         this.foundAt = foundAt;
         this.syncedFolderId = syncedFolderId;
         this.crc32 = crc32;
+        this.fileSize = fileSize;
     }
 
     public FileSystemDataSet() {
@@ -84,6 +86,13 @@ public class FileSystemDataSet {
         return this.crc32;
     }
 
+    /**
+     * @return size of the file, -1 if not known yet
+     */
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
     public void setId(int id) {
         this.id = id;
     }
@@ -115,4 +124,8 @@ public class FileSystemDataSet {
     public void setCrc32(@Nullable String crc32) {
         this.crc32 = crc32;
     }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
 }
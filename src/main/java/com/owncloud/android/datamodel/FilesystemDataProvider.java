@@ -19,29 +19,39 @@
  */
 package com.owncloud.android.datamodel;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.CRC32;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 /**
  * Provider for stored filesystem data.
  */
 public class FilesystemDataProvider {
 
     static private final String TAG = FilesystemDataProvider.class.getSimpleName();
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
 
     private ContentResolver contentResolver;
 
@@ -111,23 +121,145 @@ public class FilesystemDataProvider {
         return localPathsToUpload;
     }
 
-    public void storeOrUpdateFileValue(String localPath, long modifiedAt, boolean isFolder, SyncedFolder syncedFolder) {
+    /**
+     * Stores a file found for auto upload. The checksum is only calculated for new files and if size or modification
+     * time of a known file have changed, as reading the whole file is expensive.
+     *
+     * @param localPath    absolute path of the file
+     * @param modifiedAt   modification time of the file
+     * @param fileSize     size of the file in bytes
+     * @param isFolder     true if the path is a folder
+     * @param syncedFolder synced folder the file belongs to
+     */
+    public void storeOrUpdateFileValue(String localPath,
+                                       long modifiedAt,
+                                       long fileSize,
+                                       boolean isFolder,
+                                       SyncedFolder syncedFolder) {
 
         FileSystemDataSet data = getFilesystemDataSet(localPath, syncedFolder);
+        ContentValues cv = createContentValues(data, localPath, modifiedAt, fileSize, isFolder, syncedFolder);
+
+        if (data == null) {
+            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
+
+            if (result == null) {
+                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
+            }
+        } else {
+            int result = contentResolver.update(
+                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                    cv,
+                    ProviderMeta.ProviderTableMeta._ID + "=?",
+                    new String[]{String.valueOf(data.getId())}
+            );
+
+            if (result == 0) {
+                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
+            }
+        }
+    }
 
-        int isFolderValue = 0;
-        if (isFolder) {
-            isFolderValue = 1;
+    /**
+     * Creates an indexer storing many files of a synced folder at once, see {@link BulkIndexer}.
+     *
+     * @param syncedFolder synced folder the files belong to
+     */
+    public BulkIndexer createBulkIndexer(SyncedFolder syncedFolder) {
+        return new BulkIndexer(syncedFolder);
+    }
+
+    /**
+     * Stores files of one synced folder with the same rules as
+     * {@link #storeOrUpdateFileValue(String, long, long, boolean, SyncedFolder)}, but loads all known entries of the
+     * synced folder with a single query and writes the changes in batches, each applied in one transaction.
+     *
+     * {@link #flush()} must be called after the last file has been added.
+     */
+    public class BulkIndexer {
+        private static final int BATCH_SIZE = 500;
+
+        private final SyncedFolder syncedFolder;
+        private final Map<String, FileSystemDataSet> knownFiles;
+        private final Set<String> indexedPaths = new HashSet<>();
+        private final ArrayList<ContentProviderOperation> operations = new ArrayList<>(BATCH_SIZE);
+
+        private BulkIndexer(SyncedFolder syncedFolder) {
+            this.syncedFolder = syncedFolder;
+            this.knownFiles = getFilesystemDataSets(syncedFolder);
         }
 
+        /**
+         * @param localPath  absolute path of the file
+         * @param modifiedAt modification time of the file
+         * @param fileSize   size of the file in bytes
+         * @param isFolder   true if the path is a folder
+         */
+        public void add(String localPath, long modifiedAt, long fileSize, boolean isFolder) {
+            if (!indexedPaths.add(localPath)) {
+                // e.g. listed by internal and external media store
+                return;
+            }
+
+            FileSystemDataSet data = knownFiles.remove(localPath);
+            ContentValues cv = createContentValues(data, localPath, modifiedAt, fileSize, isFolder, syncedFolder);
+
+            if (data == null) {
+                operations.add(ContentProviderOperation
+                                   .newInsert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                                   .withValues(cv)
+                                   .build());
+            } else {
+                operations.add(ContentProviderOperation
+                                   .newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                                   .withValues(cv)
+                                   .withSelection(ProviderMeta.ProviderTableMeta._ID + "=?",
+                                                  new String[]{String.valueOf(data.getId())})
+                                   .build());
+            }
+
+            if (operations.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes all pending changes.
+         */
+        public void flush() {
+            if (operations.isEmpty()) {
+                return;
+            }
+
+            try {
+                contentResolver.applyBatch(MainApp.getAuthority(), operations);
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Failed to store filesystem data of synced folder " + syncedFolder.getLocalPath(), e);
+            }
+            operations.clear();
+        }
+    }
+
+    /**
+     * Creates the values to insert a new file or to update a known one; the checksum is only calculated if needed.
+     *
+     * @param data stored entry of the file, null if the file is new
+     */
+    private ContentValues createContentValues(@Nullable FileSystemDataSet data,
+                                              String localPath,
+                                              long modifiedAt,
+                                              long fileSize,
+                                              boolean isFolder,
+                                              SyncedFolder syncedFolder) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, System.currentTimeMillis());
         cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SIZE, fileSize);
 
         if (data == null) {
 
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH, localPath);
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolderValue);
+            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolder ? 1 : 0);
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, Boolean.FALSE);
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, syncedFolder.getId());
 
@@ -135,34 +267,21 @@ public class FilesystemDataProvider {
             if (newCrc32 != -1) {
                 cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
             }
-
-            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
-
-            if (result == null) {
-                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
-            }
         } else {
 
-            if (data.getModifiedAt() != modifiedAt) {
+            // entries stored before the size was known are only compared by modification time
+            boolean sizeChanged = data.getFileSize() != -1 && data.getFileSize() != fileSize;
+
+            if (data.getModifiedAt() != modifiedAt || sizeChanged) {
                 long newCrc32 = getFileChecksum(localPath);
                 if (data.getCrc32() == null || (newCrc32 != -1 && !data.getCrc32().equals(Long.toString(newCrc32)))) {
                     cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
                     cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 0);
                 }
             }
-
-
-            int result = contentResolver.update(
-                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
-                    cv,
-                    ProviderMeta.ProviderTableMeta._ID + "=?",
-                    new String[]{String.valueOf(data.getId())}
-            );
-
-            if (result == 0) {
-                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
-            }
         }
+
+        return cv;
     }
 
     private FileSystemDataSet getFilesystemDataSet(String localPathParam, SyncedFolder syncedFolder) {
@@ -179,32 +298,35 @@ public class FilesystemDataProvider {
         FileSystemDataSet dataSet = null;
         if (cursor != null) {
             if (cursor.moveToFirst()) {
-                int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
-                String localPath = cursor.getString(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
-                long modifiedAt = cursor.getLong(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
-                boolean isFolder = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
-                    isFolder = true;
-                }
-                long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
-                        ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
+                dataSet = createFilesystemDataSet(cursor, syncedFolder);
+            }
+            cursor.close();
+        } else {
+            Log_OC.e(TAG, "DB error restoring arbitrary values.");
+        }
 
-                boolean isSentForUpload = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
-                    isSentForUpload = true;
-                }
+        return dataSet;
+    }
+
+    /**
+     * @return all stored entries of the synced folder, by local path
+     */
+    private Map<String, FileSystemDataSet> getFilesystemDataSets(SyncedFolder syncedFolder) {
+        Map<String, FileSystemDataSet> dataSets = new HashMap<>();
 
-                String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
+        Cursor cursor = contentResolver.query(
+                ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                null,
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                new String[]{Long.toString(syncedFolder.getId())},
+                null
+        );
 
-                if (id == -1) {
-                    Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
-                } else {
-                    dataSet = new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
-                            syncedFolder.getId(), crc32);
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                FileSystemDataSet dataSet = createFilesystemDataSet(cursor, syncedFolder);
+                if (dataSet != null) {
+                    dataSets.put(dataSet.getLocalPath(), dataSet);
                 }
             }
             cursor.close();
@@ -212,16 +334,58 @@ public class FilesystemDataProvider {
             Log_OC.e(TAG, "DB error restoring arbitrary values.");
         }
 
-        return dataSet;
+        return dataSets;
     }
 
-    private long getFileChecksum(String filepath) {
+    @Nullable
+    private FileSystemDataSet createFilesystemDataSet(Cursor cursor, SyncedFolder syncedFolder) {
+        int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
+        String localPath = cursor.getString(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
+        long modifiedAt = cursor.getLong(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
+        boolean isFolder = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
+            isFolder = true;
+        }
+        long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
+                ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
+
+        boolean isSentForUpload = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
+            isSentForUpload = true;
+        }
+
+        String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
+
+        int fileSizeIndex = cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SIZE);
+        long fileSize = cursor.isNull(fileSizeIndex) ? -1 : cursor.getLong(fileSizeIndex);
+
+        if (id == -1) {
+            Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
+            return null;
+        }
+
+        return new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
+                                     syncedFolder.getId(), crc32, fileSize);
+    }
 
-        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(filepath))){
+    /**
+     * Calculates the CRC32 of a file, reading it in blocks.
+     *
+     * @param filepath absolute path of the file
+     * @return checksum, -1 if the file could not be read
+     */
+    @VisibleForTesting
+    static long getFileChecksum(String filepath) {
+        try (InputStream inputStream = new FileInputStream(filepath)) {
             CRC32 crc = new CRC32();
-            int cnt;
-            while ((cnt = inputStream.read()) != -1) {
-                crc.update(cnt);
+            byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
             }
 
             return crc.getValue();
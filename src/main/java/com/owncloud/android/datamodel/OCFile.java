@@ -89,6 +89,7 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
     private String ownerDisplayName;
     String note;
     private List<ShareeUser> sharees;
+    private String shareesJson; // serialized sharees as stored in database, parsed on first access
     private String richWorkspace;
 
     /**
@@ -691,6 +692,10 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
     }
 
     public List<ShareeUser> getSharees() {
+        if (shareesJson != null) {
+            sharees = OCFileCursorMapper.parseSharees(shareesJson);
+            shareesJson = null;
+        }
         return this.sharees;
     }
 
@@ -804,6 +809,17 @@ public class OCFile implements Parcelable, Comparable<OCFile>, ServerFileInterfa
 
     public void setSharees(List<ShareeUser> sharees) {
         this.sharees = sharees;
+        this.shareesJson = null;
+    }
+
+    /**
+     * Sets sharees in their serialized form, they are only parsed when accessed via {@link #getSharees()}
+     *
+     * @param shareesJson sharees serialized as JSON array
+     */
+    void setShareesJson(String shareesJson) {
+        this.sharees = null;
+        this.shareesJson = shareesJson == null ? FileDataStorageManager.NULL_STRING : shareesJson;
     }
 
     public void setRichWorkspace(String richWorkspace) {
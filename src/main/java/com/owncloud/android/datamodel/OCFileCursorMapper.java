@@ -0,0 +1,290 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.network.WebdavEntry;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+import com.owncloud.android.utils.FileStorageUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Creates {@link OCFile} instances out of rows of the file table.
+ *
+ * Column indexes are resolved once per cursor, so a mapper must only be used with the cursor it was created for.
+ * Columns missing in the projection of the cursor are skipped and keep the default value of {@link OCFile}, only
+ * {@link ProviderTableMeta#FILE_PATH} is mandatory. Sharees are kept as JSON and only parsed when accessed.
+ */
+public class OCFileCursorMapper {
+    /**
+     * Projection sufficient to identify and classify files, without local state, sharing and encryption details.
+     */
+    public static final String[] BASIC_PROJECTION = new String[]{
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_CONTENT_LENGTH,
+        ProviderTableMeta.FILE_MODIFIED,
+        ProviderTableMeta.FILE_REMOTE_ID,
+        ProviderTableMeta.FILE_ETAG
+    };
+
+    /**
+     * Projection sufficient to show files by their decrypted name, e.g. as documents of the storage provider.
+     */
+    public static final String[] DOCUMENT_PROJECTION = new String[]{
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_PATH_DECRYPTED,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_CONTENT_LENGTH,
+        ProviderTableMeta.FILE_MODIFIED,
+        ProviderTableMeta.FILE_IS_ENCRYPTED
+    };
+
+    static final Gson GSON = new Gson();
+    private static final int MISSING = -1;
+
+    private final String accountName;
+
+    private final int id;
+    private final int path;
+    private final int pathDecrypted;
+    private final int parent;
+    private final int contentType;
+    private final int storagePath;
+    private final int contentLength;
+    private final int creation;
+    private final int modified;
+    private final int modifiedAtLastSyncForData;
+    private final int lastSyncDate;
+    private final int lastSyncDateForData;
+    private final int etag;
+    private final int etagOnServer;
+    private final int sharedViaLink;
+    private final int sharedWithSharee;
+    private final int publicLink;
+    private final int permissions;
+    private final int remoteId;
+    private final int updateThumbnail;
+    private final int isDownloading;
+    private final int etagInConflict;
+    private final int favorite;
+    private final int isEncrypted;
+    private final int mountType;
+    private final int hasPreview;
+    private final int unreadCommentsCount;
+    private final int ownerId;
+    private final int ownerDisplayName;
+    private final int note;
+    private final int richWorkspace;
+    private final int sharees;
+
+    public OCFileCursorMapper(Cursor cursor, String accountName) {
+        this.accountName = accountName;
+
+        path = cursor.getColumnIndexOrThrow(ProviderTableMeta.FILE_PATH);
+        id = cursor.getColumnIndex(ProviderTableMeta._ID);
+        pathDecrypted = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH_DECRYPTED);
+        parent = cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT);
+        contentType = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE);
+        storagePath = cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH);
+        contentLength = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH);
+        creation = cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION);
+        modified = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED);
+        modifiedAtLastSyncForData = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA);
+        lastSyncDate = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE);
+        lastSyncDateForData = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA);
+        etag = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG);
+        etagOnServer = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER);
+        sharedViaLink = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK);
+        sharedWithSharee = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE);
+        publicLink = cursor.getColumnIndex(ProviderTableMeta.FILE_PUBLIC_LINK);
+        permissions = cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS);
+        remoteId = cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+        updateThumbnail = cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL);
+        isDownloading = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING);
+        etagInConflict = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT);
+        favorite = cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE);
+        isEncrypted = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED);
+        mountType = cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE);
+        hasPreview = cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW);
+        unreadCommentsCount = cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT);
+        ownerId = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID);
+        ownerDisplayName = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME);
+        note = cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE);
+        richWorkspace = cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE);
+        sharees = cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES);
+    }
+
+    /**
+     * @param cursor cursor this mapper was created for, positioned on the row to read
+     * @return file of the current row
+     */
+    public OCFile map(Cursor cursor) {
+        OCFile ocFile = new OCFile(cursor.getString(path));
+
+        if (pathDecrypted != MISSING) {
+            ocFile.setDecryptedRemotePath(cursor.getString(pathDecrypted));
+        }
+        if (id != MISSING) {
+            ocFile.setFileId(cursor.getLong(id));
+        }
+        if (parent != MISSING) {
+            ocFile.setParentId(cursor.getLong(parent));
+        }
+        if (contentType != MISSING) {
+            ocFile.setMimeType(cursor.getString(contentType));
+        }
+        if (storagePath != MISSING) {
+            ocFile.setStoragePath(cursor.getString(storagePath));
+            if (ocFile.getStoragePath() == null) {
+                // try to find existing file and bind it with current account;
+                // with the current update of SynchronizeFolderOperation, this won't be
+                // necessary anymore after a full synchronization of the account
+                File file = new File(FileStorageUtils.getDefaultSavePathFor(accountName, ocFile));
+                if (file.exists()) {
+                    ocFile.setStoragePath(file.getAbsolutePath());
+                    ocFile.setLastSyncDateForData(file.lastModified());
+                }
+            }
+        }
+        if (contentLength != MISSING) {
+            ocFile.setFileLength(cursor.getLong(contentLength));
+        }
+        if (creation != MISSING) {
+            ocFile.setCreationTimestamp(cursor.getLong(creation));
+        }
+        if (modified != MISSING) {
+            ocFile.setModificationTimestamp(cursor.getLong(modified));
+        }
+        if (modifiedAtLastSyncForData != MISSING) {
+            ocFile.setModificationTimestampAtLastSyncForData(cursor.getLong(modifiedAtLastSyncForData));
+        }
+        if (lastSyncDate != MISSING) {
+            ocFile.setLastSyncDateForProperties(cursor.getLong(lastSyncDate));
+        }
+        if (lastSyncDateForData != MISSING) {
+            ocFile.setLastSyncDateForData(cursor.getLong(lastSyncDateForData));
+        }
+        if (etag != MISSING) {
+            ocFile.setEtag(cursor.getString(etag));
+        }
+        if (etagOnServer != MISSING) {
+            ocFile.setEtagOnServer(cursor.getString(etagOnServer));
+        }
+        if (sharedViaLink != MISSING) {
+            ocFile.setSharedViaLink(cursor.getInt(sharedViaLink) == 1);
+        }
+        if (sharedWithSharee != MISSING) {
+            ocFile.setSharedWithSharee(cursor.getInt(sharedWithSharee) == 1);
+        }
+        if (publicLink != MISSING) {
+            ocFile.setPublicLink(cursor.getString(publicLink));
+        }
+        if (permissions != MISSING) {
+            ocFile.setPermissions(cursor.getString(permissions));
+        }
+        if (remoteId != MISSING) {
+            ocFile.setRemoteId(cursor.getString(remoteId));
+        }
+        if (updateThumbnail != MISSING) {
+            ocFile.setUpdateThumbnailNeeded(cursor.getInt(updateThumbnail) == 1);
+        }
+        if (isDownloading != MISSING) {
+            ocFile.setDownloading(cursor.getInt(isDownloading) == 1);
+        }
+        if (etagInConflict != MISSING) {
+            ocFile.setEtagInConflict(cursor.getString(etagInConflict));
+        }
+        if (favorite != MISSING) {
+            ocFile.setFavorite(cursor.getInt(favorite) == 1);
+        }
+        if (isEncrypted != MISSING) {
+            ocFile.setEncrypted(cursor.getInt(isEncrypted) == 1);
+        }
+        if (mountType != MISSING) {
+            ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(mountType)]);
+        }
+        if (hasPreview != MISSING) {
+            ocFile.setPreviewAvailable(cursor.getInt(hasPreview) == 1);
+        }
+        if (unreadCommentsCount != MISSING) {
+            ocFile.setUnreadCommentsCount(cursor.getInt(unreadCommentsCount));
+        }
+        if (ownerId != MISSING) {
+            ocFile.setOwnerId(cursor.getString(ownerId));
+        }
+        if (ownerDisplayName != MISSING) {
+            ocFile.setOwnerDisplayName(cursor.getString(ownerDisplayName));
+        }
+        if (note != MISSING) {
+            ocFile.setNote(cursor.getString(note));
+        }
+        if (richWorkspace != MISSING) {
+            ocFile.setRichWorkspace(cursor.getString(richWorkspace));
+        }
+        if (sharees != MISSING) {
+            ocFile.setShareesJson(cursor.getString(sharees));
+        }
+
+        return ocFile;
+    }
+
+    /**
+     * @param cursor cursor to read all rows of, it is not closed
+     * @return files of all rows of the cursor
+     */
+    public List<OCFile> mapAll(Cursor cursor) {
+        List<OCFile> files = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            do {
+                files.add(map(cursor));
+            } while (cursor.moveToNext());
+        }
+        return files;
+    }
+
+    static List<ShareeUser> parseSharees(String sharees) {
+        if (sharees == null || FileDataStorageManager.NULL_STRING.equals(sharees) || sharees.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            ShareeUser[] shareesArray = GSON.fromJson(sharees, ShareeUser[].class);
+
+            return new ArrayList<>(Arrays.asList(shareesArray));
+        } catch (JsonSyntaxException e) {
+            // ignore saved value due to api change
+            return new ArrayList<>();
+        }
+    }
+}
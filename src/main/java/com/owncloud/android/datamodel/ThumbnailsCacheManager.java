@@ -41,6 +41,7 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.provider.MediaStore;
 import android.text.TextUtils;
+import android.util.LruCache;
 import android.view.Display;
 import android.view.WindowManager;
 import android.widget.ImageView;
@@ -74,6 +75,15 @@ import java.lang.ref.WeakReference;
 import java.net.URLEncoder;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.res.ResourcesCompat;
@@ -94,15 +104,66 @@ public final class ThumbnailsCacheManager {
     private static final String AVATAR_TIMESTAMP = "avatarTimestamp";
     private static final String ETAG = "ETag";
 
+    /**
+     * Only guards the initialisation; the disk cache itself is thread safe, so reads and writes run concurrently.
+     */
     private static final Object mThumbnailsDiskCacheLock = new Object();
-    private static DiskLruImageCache mThumbnailCache;
-    private static boolean mThumbnailCacheStarting = true;
+    private static final CountDownLatch mThumbnailCacheInitialized = new CountDownLatch(1);
+    private static volatile DiskLruImageCache mThumbnailCache;
 
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 200; // 200MB
     private static final CompressFormat mCompressFormat = CompressFormat.JPEG;
     private static final int mCompressQuality = 70;
     private static OwnCloudClient mClient;
 
+    private static final int DISK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int NETWORK_THREADS = 4;
+    private static final int PREFETCH_THREADS = 2;
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Decoded bitmaps in front of the disk cache, up to an eighth of the heap. Resized images are left out, as they
+     * are big and recycled by their users.
+     */
+    private static final LruCache<String, Bitmap> mMemoryCache =
+        new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 1024 / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                // in kB
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+
+    /**
+     * Thumbnails of local files are decoded on the disk executor, the others are looked up in the disk cache and
+     * downloaded on the network executor, so slow requests don't hold up local work. Both executors run the most
+     * recently requested thumbnail first, which belongs to the row that became visible last.
+     */
+    private static final ThreadPoolExecutor mDiskExecutor = createLifoExecutor(DISK_THREADS);
+    private static final ThreadPoolExecutor mNetworkExecutor = createLifoExecutor(NETWORK_THREADS);
+
+    /**
+     * Loads thumbnails of rows that are not shown yet, in the order they were requested, i.e. nearest row first. Kept
+     * apart from the executors above, so visible rows never wait behind prefetches.
+     */
+    private static final ThreadPoolExecutor mPrefetchExecutor = createExecutor(PREFETCH_THREADS,
+                                                                               new LinkedBlockingQueue<>());
+
+    /**
+     * Thumbnails being generated, by image key
+     */
+    private static final ConcurrentHashMap<String, FutureTask<Bitmap>> mPendingThumbnails = new ConcurrentHashMap<>();
+
+    /**
+     * Compresses and writes bitmaps to the disk cache in the background, one at a time
+     */
+    private static final ThreadPoolExecutor mCacheWriteExecutor = createExecutor(1, new LinkedBlockingQueue<>());
+
+    /**
+     * Bitmaps waiting for {@link #mCacheWriteExecutor}, by key
+     */
+    private static final ConcurrentHashMap<String, Bitmap> mPendingWrites = new ConcurrentHashMap<>();
+
     public static final Bitmap mDefaultImg = BitmapFactory.decodeResource(MainApp.getAppContext().getResources(),
             R.drawable.file_image);
 
@@ -112,12 +173,69 @@ public final class ThumbnailsCacheManager {
     private ThumbnailsCacheManager() {
     }
 
+    private static ThreadPoolExecutor createLifoExecutor(int threads) {
+        return createExecutor(threads, new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(Runnable runnable) {
+                return offerFirst(runnable);
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor createExecutor(int threads, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                             threads,
+                                                             THREAD_KEEP_ALIVE_SECONDS,
+                                                             TimeUnit.SECONDS,
+                                                             queue);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Starts the given task on the thumbnail executor matching its file.
+     */
+    public static void executeThumbnailTask(ThumbnailGenerationTask task, ThumbnailGenerationTaskObject object) {
+        Object file = object.getFile();
+        boolean local = file instanceof File || file instanceof OCFile && ((OCFile) file).isDown();
+
+        task.executeOnExecutor(local ? mDiskExecutor : mNetworkExecutor, object);
+    }
+
+    /**
+     * Starts the given task before the file is shown, see {@link #mPrefetchExecutor}.
+     */
+    public static void prefetchThumbnail(ThumbnailGenerationTask task, OCFile file) {
+        task.executeOnExecutor(mPrefetchExecutor, new ThumbnailGenerationTaskObject(file, file.getRemoteId()));
+    }
+
+    /**
+     * Runs the generation of the thumbnail with the given key, unless it is already running; then its result is
+     * awaited instead, e.g. when a row is bound again while its thumbnail is still downloaded.
+     */
+    private static Bitmap generateOnce(String imageKey, Callable<Bitmap> generation) throws Exception {
+        FutureTask<Bitmap> task = new FutureTask<>(generation);
+        FutureTask<Bitmap> running = mPendingThumbnails.putIfAbsent(imageKey, task);
+        if (running != null) {
+            return running.get();
+        }
+
+        try {
+            task.run();
+            return task.get();
+        } finally {
+            mPendingThumbnails.remove(imageKey, task);
+        }
+    }
+
+    private static boolean isMemoryCached(String key) {
+        return !key.startsWith(PREFIX_RESIZED_IMAGE);
+    }
+
     public static class InitDiskCacheTask extends AsyncTask<File, Void, Void> {
         @Override
         protected Void doInBackground(File... params) {
             synchronized (mThumbnailsDiskCacheLock) {
-                mThumbnailCacheStarting = true;
-
                 if (mThumbnailCache == null) {
                     try {
                         File cacheDir = MainApp.getAppContext().getCacheDir();
@@ -148,8 +266,7 @@ public final class ThumbnailsCacheManager {
                         mThumbnailCache = null;
                     }
                 }
-                mThumbnailCacheStarting = false; // Finished initialization
-                mThumbnailsDiskCacheLock.notifyAll(); // Wake any waiting threads
+                mThumbnailCacheInitialized.countDown(); // Finished initialization, wake any waiting threads
             }
             return null;
         }
@@ -181,18 +298,18 @@ public final class ThumbnailsCacheManager {
     /**
      * Add thumbnail to cache
      * @param imageKey: thumb key
-     * @param bitmap:   image for extracting thumbnail
-     * @param path:     image path
+     * @param bitmap:   image for extracting thumbnail, already rotated according to its exif tag; released if not
+     *                  used as thumbnail
      * @param pxW:      thumbnail width in pixel
      * @param pxH:      thumbnail height in pixel
      * @return Bitmap
      */
-    private static Bitmap addThumbnailToCache(String imageKey, Bitmap bitmap, String path, int pxW, int pxH){
+    private static Bitmap addThumbnailToCache(String imageKey, Bitmap bitmap, int pxW, int pxH){
 
         Bitmap thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
-
-        // Rotate image, obeying exif tag
-        thumbnail = BitmapUtils.rotateImage(thumbnail,path);
+        if (thumbnail != bitmap) {
+            BitmapUtils.releaseBitmap(bitmap);
+        }
 
         // Add thumbnail to cache
         addBitmapToCache(imageKey, thumbnail);
@@ -201,49 +318,91 @@ public final class ThumbnailsCacheManager {
     }
 
     public static void addBitmapToCache(String key, Bitmap bitmap) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            if (mThumbnailCache != null) {
-                mThumbnailCache.put(key, bitmap);
+        if (isMemoryCached(key)) {
+            mMemoryCache.put(key, bitmap);
+
+            // users of these bitmaps don't recycle them, so they can be written later
+            mPendingWrites.put(key, bitmap);
+            mCacheWriteExecutor.execute(() -> {
+                DiskLruImageCache cache = getDiskCache();
+                if (cache != null && mPendingWrites.get(key) == bitmap) {
+                    cache.put(key, bitmap);
+                }
+                mPendingWrites.remove(key, bitmap);
+            });
+        } else {
+            DiskLruImageCache cache = getDiskCache();
+            if (cache != null) {
+                cache.put(key, bitmap);
             }
         }
     }
 
     public static boolean containsBitmap(String key) {
-        return mThumbnailCache.containsKey(key);
+        if (mPendingWrites.containsKey(key)) {
+            return true;
+        }
+        DiskLruImageCache cache = getDiskCache();
+        return cache != null && cache.containsKey(key);
     }
 
-    public static Bitmap getScaledBitmapFromDiskCache(String key, int width, int height) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getScaledBitmap(key, width, height);
+    /**
+     * Waits for the disk cache to be initialized.
+     *
+     * @return disk cache, null if it could not be opened
+     */
+    private static DiskLruImageCache getDiskCache() {
+        // Wait while disk cache is started from background thread
+        boolean interrupted = false;
+        while (mThumbnailCacheInitialized.getCount() > 0) {
+            try {
+                mThumbnailCacheInitialized.await();
+            } catch (InterruptedException e) {
+                Log_OC.e(TAG, "Wait for disk cache initialization was interrupted", e);
+                interrupted = true;
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return mThumbnailCache;
+    }
+
+    public static Bitmap getScaledBitmapFromDiskCache(String key, int width, int height) {
+        DiskLruImageCache cache = getDiskCache();
+        if (cache != null) {
+            return cache.getScaledBitmap(key, width, height);
+        }
         return null;
     }
 
+    /**
+     * @return bitmap from the memory cache, without accessing the disk
+     */
+    public static Bitmap getBitmapFromMemoryCache(String key) {
+        return mMemoryCache.get(key);
+    }
+
     public static Bitmap getBitmapFromDiskCache(String key) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getBitmap(key);
-            }
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
         }
-        return null;
+
+        bitmap = mPendingWrites.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        DiskLruImageCache cache = getDiskCache();
+        if (cache != null) {
+            bitmap = cache.getBitmap(key);
+        }
+
+        if (bitmap != null && isMemoryCached(key)) {
+            mMemoryCache.put(key, bitmap);
+        }
+        return bitmap;
     }
 
     public static class ResizedImageGenerationTask extends AsyncTask<Object, Void, Bitmap> {
@@ -320,7 +479,7 @@ public final class ThumbnailsCacheManager {
                             bitmap = handlePNG(bitmap, pxW, pxH);
                         }
 
-                        thumbnail = addThumbnailToCache(imageKey, bitmap, file.getStoragePath(), pxW, pxH);
+                        thumbnail = addThumbnailToCache(imageKey, bitmap, pxW, pxH);
 
                         file.setUpdateThumbnailNeeded(false);
                         storageManager.saveFile(file);
@@ -339,7 +498,7 @@ public final class ThumbnailsCacheManager {
                             int status = mClient.executeMethod(getMethod);
                             if (status == HttpStatus.SC_OK) {
                                 InputStream inputStream = getMethod.getResponseBodyAsStream();
-                                thumbnail = BitmapFactory.decodeStream(inputStream);
+                                thumbnail = BitmapUtils.decodeSampledBitmapFromStream(inputStream, pxW, pxH);
                             } else {
                                 mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
                             }
@@ -422,7 +581,8 @@ public final class ThumbnailsCacheManager {
 
     public static class ThumbnailGenerationTask extends AsyncTask<ThumbnailGenerationTaskObject, Void, Bitmap> {
         private final WeakReference<ImageView> mImageViewReference;
-        private static Account mAccount;
+        private Account mAccount;
+        private OwnCloudClient client;
         private List<ThumbnailGenerationTask> mAsyncTasks;
         private Object mFile;
         private String mImageKey;
@@ -430,6 +590,7 @@ public final class ThumbnailsCacheManager {
         private GetMethod getMethod;
         private Listener mListener;
         private boolean gridViewEnabled = false;
+        private boolean downloadAllowed = true;
 
         public ThumbnailGenerationTask(ImageView imageView, FileDataStorageManager storageManager, Account account)
                 throws IllegalArgumentException {
@@ -470,6 +631,16 @@ public final class ThumbnailsCacheManager {
             mImageViewReference = null;
         }
 
+        /**
+         * @param downloadAllowed false to only generate thumbnails from local files and caches, e.g. for prefetching
+         *                        on metered networks
+         */
+        public ThumbnailGenerationTask(FileDataStorageManager storageManager, Account account,
+                                       boolean downloadAllowed) {
+            this(storageManager, account);
+            this.downloadAllowed = downloadAllowed;
+        }
+
         public ThumbnailGenerationTask(ImageView imageView) {
             // Use a WeakReference to ensure the ImageView can be garbage collected
             mImageViewReference = new WeakReference<>(imageView);
@@ -486,8 +657,12 @@ public final class ThumbnailsCacheManager {
                             mAccount,
                             MainApp.getAppContext()
                     );
-                    mClient = OwnCloudClientManagerFactory.getDefaultSingleton().
+                    // tasks of different accounts run in parallel, keep the client of this one
+                    client = OwnCloudClientManagerFactory.getDefaultSingleton().
                             getClientFor(ocAccount, MainApp.getAppContext());
+                    mClient = client;
+                } else {
+                    client = mClient;
                 }
 
                 ThumbnailGenerationTaskObject object = params[0];
@@ -564,7 +739,17 @@ public final class ThumbnailsCacheManager {
             mListener = listener;
         }
 
-        private Bitmap doThumbnailFromOCFileInBackground() {
+        private Bitmap doThumbnailFromOCFileInBackground() throws Exception {
+            ServerFileInterface file = (ServerFileInterface) mFile;
+
+            if (!downloadAllowed) {
+                // not shared, tasks awaiting it would miss the download
+                return generateThumbnailFromServerFile();
+            }
+            return generateOnce(PREFIX_THUMBNAIL + file.getRemoteId(), this::generateThumbnailFromServerFile);
+        }
+
+        private Bitmap generateThumbnailFromServerFile() {
             Bitmap thumbnail;
             ServerFileInterface file = (ServerFileInterface) mFile;
             String imageKey = PREFIX_THUMBNAIL + file.getRemoteId();
@@ -595,7 +780,7 @@ public final class ThumbnailsCacheManager {
                                 bitmap = handlePNG(bitmap, pxW, pxH);
                             }
 
-                            thumbnail = addThumbnailToCache(imageKey, bitmap, ocFile.getStoragePath(), pxW, pxH);
+                            thumbnail = addThumbnailToCache(imageKey, bitmap, pxW, pxH);
 
                             ocFile.setUpdateThumbnailNeeded(false);
                             mStorageManager.saveFile(ocFile);
@@ -612,16 +797,16 @@ public final class ThumbnailsCacheManager {
                         thumbnail = ThumbnailUtils.extractThumbnail(resizedImage, pxW, pxH);
                     } else {
                         // Download thumbnail from server
-                        if (mClient != null) {
+                        if (client != null && downloadAllowed) {
                             getMethod = null;
                             try {
                                 // thumbnail
                                 String uri;
                                 if (file instanceof OCFile) {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
                                         pxW + "/" + pxH + Uri.encode(file.getRemotePath(), "/");
                                 } else {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
                                             file.getLocalId() + "&x=" + pxW + "&y=" + pxH;
                                 }
 
@@ -633,13 +818,16 @@ public final class ThumbnailsCacheManager {
                                 getMethod.setRequestHeader(RemoteOperation.OCS_API_HEADER,
                                         RemoteOperation.OCS_API_HEADER_VALUE);
 
-                                int status = mClient.executeMethod(getMethod);
+                                int status = client.executeMethod(getMethod);
                                 if (status == HttpStatus.SC_OK) {
                                     InputStream inputStream = getMethod.getResponseBodyAsStream();
-                                    Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+                                    Bitmap bitmap = BitmapUtils.decodeSampledBitmapFromStream(inputStream, pxW, pxH);
                                     thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
+                                    if (thumbnail != bitmap) {
+                                        BitmapUtils.releaseBitmap(bitmap);
+                                    }
                                 } else {
-                                    mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
+                                    client.exhaustResponse(getMethod.getResponseBodyAsStream());
                                 }
 
                                 // Handle PNG
@@ -704,7 +892,7 @@ public final class ThumbnailsCacheManager {
                 Bitmap bitmap = BitmapUtils.decodeSampledBitmapFromFile(file.getAbsolutePath(), pxW, pxH);
 
                 if (bitmap != null) {
-                    thumbnail = addThumbnailToCache(imageKey, bitmap, file.getPath(), pxW, pxH);
+                    thumbnail = addThumbnailToCache(imageKey, bitmap, pxW, pxH);
                 }
             }
             return thumbnail;
@@ -812,7 +1000,7 @@ public final class ThumbnailsCacheManager {
                     Bitmap bitmap = BitmapUtils.decodeSampledBitmapFromFile(file.getAbsolutePath(), px, px);
 
                     if (bitmap != null) {
-                        thumbnail = addThumbnailToCache(imageKey, bitmap, file.getPath(), px, px);
+                        thumbnail = addThumbnailToCache(imageKey, bitmap, px, px);
                     }
                 } else if (Type.VIDEO.equals(type)) {
                     MediaMetadataRetriever retriever = new MediaMetadataRetriever();
@@ -839,7 +1027,7 @@ public final class ThumbnailsCacheManager {
                         int max = Math.max(width, height);
                         if (max > px) {
                             thumbnail = BitmapUtils.scaleBitmap(thumbnail, px, width, height, max);
-                            thumbnail = addThumbnailToCache(imageKey, thumbnail, file.getPath(), px, px);
+                            thumbnail = addThumbnailToCache(imageKey, thumbnail, px, px);
                         }
                     }
                 }
@@ -1189,7 +1377,7 @@ public final class ThumbnailsCacheManager {
                 bitmap = handlePNG(bitmap, pxW, pxH);
             }
 
-            addThumbnailToCache(imageKey, bitmap, file.getStoragePath(), pxW, pxH);
+            addThumbnailToCache(imageKey, bitmap, pxW, pxH);
         }
     }
 
@@ -1217,8 +1405,11 @@ public final class ThumbnailsCacheManager {
             int status = mClient.executeMethod(getMethod);
             if (status == HttpStatus.SC_OK) {
                 InputStream inputStream = getMethod.getResponseBodyAsStream();
-                Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+                Bitmap bitmap = BitmapUtils.decodeSampledBitmapFromStream(inputStream, pxW, pxH);
                 thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
+                if (thumbnail != bitmap) {
+                    BitmapUtils.releaseBitmap(bitmap);
+                }
             } else {
                 mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
             }
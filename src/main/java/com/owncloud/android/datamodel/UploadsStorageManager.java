@@ -24,13 +24,17 @@
 package com.owncloud.android.datamodel;
 
 import android.accounts.Account;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
 import com.nextcloud.client.account.User;
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.OCUpload;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.db.UploadResult;
@@ -42,8 +46,14 @@ import com.owncloud.android.operations.UploadFileOperation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Observable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -58,9 +68,74 @@ public class UploadsStorageManager extends Observable {
     private static final String AND = " AND ";
     private static final int SINGLE_RESULT = 1;
 
+    /**
+     * last results of uploads which are only waiting for the right conditions and are shown as current uploads
+     */
+    private static final String DELAYED_RESULTS = UploadResult.DELAYED_FOR_WIFI.getValue() + ", " +
+        UploadResult.LOCK_FAILED.getValue() + ", " +
+        UploadResult.DELAYED_FOR_CHARGING.getValue() + ", " +
+        UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue();
+
+    /**
+     * order of pages, same as {@link com.owncloud.android.db.OCUploadComparator} except for uploads being uploaded
+     * now, which are only known to the uploader
+     */
+    private static final String PAGE_SORT_ORDER = ProviderTableMeta.UPLOADS_STATUS + " ASC, " +
+        ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " DESC, " +
+        ProviderTableMeta._ID + " ASC";
+
+    /**
+     * number of uploads with pending status changes which are written immediately
+     */
+    @VisibleForTesting
+    static final int STATUS_BUFFER_SIZE = 100;
+
+    /**
+     * maximum time status changes are kept in memory before they are written
+     */
+    private static final long STATUS_FLUSH_DELAY_MS = 1000;
+
+    private static final ScheduledThreadPoolExecutor STATUS_FLUSH_EXECUTOR = new ScheduledThreadPoolExecutor(1);
+
+    static {
+        STATUS_FLUSH_EXECUTOR.setKeepAliveTime(10, TimeUnit.SECONDS);
+        STATUS_FLUSH_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
     private ContentResolver mContentResolver;
     private CurrentAccountProvider currentAccountProvider;
 
+    /**
+     * status changes not written yet by upload id, guarded by itself
+     */
+    private final Map<Long, StatusUpdate> pendingStatusUpdates = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledStatusFlush;
+
+    /**
+     * Latest status change of one upload.
+     */
+    private static class StatusUpdate {
+        private UploadStatus status;
+        private UploadResult result;
+        private String remotePath;
+        private String localPath;
+        private long uploadEndTimestamp = -1;
+
+        private ContentValues toContentValues() {
+            ContentValues cv = new ContentValues();
+            cv.put(ProviderTableMeta.UPLOADS_STATUS, status.value);
+            cv.put(ProviderTableMeta.UPLOADS_LAST_RESULT, result.getValue());
+            cv.put(ProviderTableMeta.UPLOADS_REMOTE_PATH, remotePath);
+            if (localPath != null) {
+                cv.put(ProviderTableMeta.UPLOADS_LOCAL_PATH, localPath);
+            }
+            if (uploadEndTimestamp >= 0) {
+                cv.put(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP, uploadEndTimestamp);
+            }
+            return cv;
+        }
+    }
+
     public UploadsStorageManager(
         CurrentAccountProvider currentAccountProvider,
         ContentResolver contentResolver
@@ -104,7 +179,7 @@ public class UploadsStorageManager extends Observable {
         } else {
             long new_id = Long.parseLong(result.getPathSegments().get(1));
             ocUpload.setUploadId(new_id);
-            notifyObserversNow();
+            notifyObserversNow(new_id);
             return new_id;
         }
     }
@@ -138,86 +213,102 @@ public class UploadsStorageManager extends Observable {
         if (result != SINGLE_RESULT) {
             Log_OC.e(TAG, "Failed to update item " + ocUpload.getLocalPath() + " into upload db.");
         } else {
-            notifyObserversNow();
+            notifyObserversNow(ocUpload.getUploadId());
         }
 
         return result;
     }
 
-    private int updateUploadInternal(Cursor c, UploadStatus status, UploadResult result, String remotePath,
-                                     String localPath) {
-
-        int r = 0;
-        while (c.moveToNext()) {
-            // read upload object and update
-            OCUpload upload = createOCUploadFromCursor(c);
-
-            String path = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH));
-            Log_OC.v(
-                    TAG,
-                    "Updating " + path + " with status:" + status + " and result:"
-                            + (result == null ? "null" : result.toString()) + " (old:"
-                            + upload.toFormattedString() + ")");
+    /**
+     * Changes the status of an upload, known its id. The change is buffered together with other status changes and
+     * written in one batch after {@link #STATUS_FLUSH_DELAY_MS}, when {@link #STATUS_BUFFER_SIZE} uploads changed or
+     * before the next access to the uploads table, whatever comes first. Only the latest change per upload is
+     * written.
+     *
+     * @param id         upload id.
+     * @param status     new status.
+     * @param result     new result of upload operation
+     * @param remotePath path of the file to upload in the ownCloud storage
+     * @param localPath  path of the file to upload in the device storage, null to keep it
+     */
+    private void updateUploadStatus(long id, UploadStatus status, UploadResult result, String remotePath,
+                                    String localPath) {
+        Log_OC.v(TAG, "Updating " + id + " with status:" + status + " and result:" + result);
+
+        boolean flushNow;
+        synchronized (pendingStatusUpdates) {
+            StatusUpdate update = pendingStatusUpdates.get(id);
+            if (update == null) {
+                update = new StatusUpdate();
+                pendingStatusUpdates.put(id, update);
+            }
 
-            upload.setUploadStatus(status);
-            upload.setLastResult(result);
-            upload.setRemotePath(remotePath);
+            update.status = status;
+            update.result = result != null ? result : UploadResult.UNKNOWN;
+            update.remotePath = remotePath;
             if (localPath != null) {
-                upload.setLocalPath(localPath);
+                update.localPath = localPath;
             }
             if (status == UploadStatus.UPLOAD_SUCCEEDED) {
-                upload.setUploadEndTimestamp(Calendar.getInstance().getTimeInMillis());
+                update.uploadEndTimestamp = Calendar.getInstance().getTimeInMillis();
             }
 
-            // store update upload object to db
-            r = updateUpload(upload);
-
+            flushNow = pendingStatusUpdates.size() >= STATUS_BUFFER_SIZE;
+            if (!flushNow && scheduledStatusFlush == null) {
+                scheduledStatusFlush = STATUS_FLUSH_EXECUTOR.schedule(this::flushStatusUpdates,
+                                                                      STATUS_FLUSH_DELAY_MS,
+                                                                      TimeUnit.MILLISECONDS);
+            }
         }
 
-        return r;
+        if (flushNow) {
+            flushStatusUpdates();
+        }
     }
 
     /**
-     * Update upload status of file uniquely referenced by id.
-     *
-     * @param id         upload id.
-     * @param status     new status.
-     * @param result     new result of upload operation
-     * @param remotePath path of the file to upload in the ownCloud storage
-     * @param localPath  path of the file to upload in the device storage
-     * @return 1 if file status was updated, else 0.
+     * Writes all buffered status changes in one transaction and informs the observers about the changed uploads.
+     * Should be called before the process may be stopped, e.g. when the upload service is destroyed.
      */
-    private int updateUploadStatus(long id, UploadStatus status, UploadResult result, String remotePath,
-                                   String localPath) {
-        //Log_OC.v(TAG, "Updating "+filepath+" with uploadStatus="+status +" and result="+result);
+    public void flushStatusUpdates() {
+        List<Long> uploadIds;
+        synchronized (pendingStatusUpdates) {
+            if (scheduledStatusFlush != null) {
+                scheduledStatusFlush.cancel(false);
+                scheduledStatusFlush = null;
+            }
 
-        int returnValue = 0;
-        Cursor c = getDB().query(
-                ProviderTableMeta.CONTENT_URI_UPLOADS,
-                null,
-                ProviderTableMeta._ID + "=?",
-                new String[]{String.valueOf(id)},
-                null
-        );
+            if (pendingStatusUpdates.isEmpty()) {
+                return;
+            }
 
-        if (c != null) {
-            if (c.getCount() != SINGLE_RESULT) {
-                Log_OC.e(TAG, c.getCount() + " items for id=" + id
-                        + " available in UploadDb. Expected 1. Failed to update upload db.");
-            } else {
-                returnValue = updateUploadInternal(c, status, result, remotePath, localPath);
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(pendingStatusUpdates.size());
+            for (Map.Entry<Long, StatusUpdate> entry : pendingStatusUpdates.entrySet()) {
+                operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI_UPLOADS)
+                                   .withValues(entry.getValue().toContentValues())
+                                   .withSelection(ProviderTableMeta._ID + "=?",
+                                                  new String[]{String.valueOf(entry.getKey())})
+                                   .build());
+            }
+            uploadIds = new ArrayList<>(pendingStatusUpdates.keySet());
+            pendingStatusUpdates.clear();
+
+            // still holding the lock, so that no query runs before the changes are written
+            try {
+                mContentResolver.applyBatch(MainApp.getAuthority(), operations);
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Failed to write " + operations.size() + " upload status changes", e);
             }
-            c.close();
-        } else {
-            Log_OC.e(TAG, "Cursor is null");
         }
 
-        return returnValue;
+        for (Long uploadId : uploadIds) {
+            notifyObserversNow(uploadId);
+        }
     }
 
     /**
      * Should be called when some value of this DB was changed. All observers
-     * are informed.
+     * are informed, with a null argument as any upload may have changed.
      */
     public void notifyObserversNow() {
         Log_OC.d(TAG, "notifyObserversNow");
@@ -225,6 +316,18 @@ public class UploadsStorageManager extends Observable {
         notifyObservers();
     }
 
+    /**
+     * Informs all observers that a single upload was stored, updated or removed. The id of the upload is passed as
+     * argument, so observers only have to reload this upload.
+     *
+     * @param uploadId id of the changed upload
+     */
+    private void notifyObserversNow(long uploadId) {
+        Log_OC.d(TAG, "notifyObserversNow " + uploadId);
+        setChanged();
+        notifyObservers(uploadId);
+    }
+
     /**
      * Remove an upload from the uploads list, known its target account and remote path.
      *
@@ -239,7 +342,7 @@ public class UploadsStorageManager extends Observable {
         );
         Log_OC.d(TAG, "delete returns " + result + " for upload " + upload);
         if (result > 0) {
-            notifyObserversNow();
+            notifyObserversNow(upload.getUploadId());
         }
         return result;
     }
@@ -362,6 +465,155 @@ public class UploadsStorageManager extends Observable {
         return uploads.toArray(new OCUpload[0]);
     }
 
+    /**
+     * Gets a single upload.
+     *
+     * @param id id of the upload
+     * @return the upload, null if it does not exist (anymore)
+     */
+    @Nullable
+    public OCUpload getUploadById(long id) {
+        OCUpload upload = null;
+        Cursor c = getDB().query(
+            ProviderTableMeta.CONTENT_URI_UPLOADS,
+            null,
+            ProviderTableMeta._ID + "=?",
+            new String[]{String.valueOf(id)},
+            null
+        );
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                upload = createOCUploadFromCursor(c);
+            }
+            c.close();
+        }
+        return upload;
+    }
+
+    /**
+     * Gets one page of the uploads of the current account in the given group, ordered by status, upload end
+     * timestamp (newest first) and id like {@link com.owncloud.android.db.OCUploadComparator}; uploads being uploaded
+     * now are not sorted first. The next page starts after the last upload of the previous one.
+     *
+     * @param filter group of uploads
+     * @param after  last upload of the previous page, null for the first page
+     * @param limit  maximum number of uploads in the page
+     * @return uploads of the page, fewer than limit if it is the last page
+     */
+    public OCUpload[] getUploadsPage(UploadsFilter filter, @Nullable OCUpload after, int limit) {
+        String selection = getSelection(filter);
+        String[] selectionArgs;
+        if (after == null) {
+            selectionArgs = new String[]{currentAccountProvider.getUser().getAccountName()};
+        } else {
+            selection = "(" + selection + ")" + AND + "(" +
+                ProviderTableMeta.UPLOADS_STATUS + " > ? OR (" +
+                ProviderTableMeta.UPLOADS_STATUS + " = ?" + AND + "(" +
+                ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " < ? OR (" +
+                ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " = ?" + AND + ProviderTableMeta._ID + " > ?))))";
+            String status = String.valueOf(after.getUploadStatus().value);
+            selectionArgs = new String[]{
+                currentAccountProvider.getUser().getAccountName(),
+                status,
+                status,
+                String.valueOf(after.getUploadEndTimestamp()),
+                String.valueOf(after.getUploadEndTimestamp()),
+                String.valueOf(after.getUploadId())
+            };
+        }
+
+        ArrayList<OCUpload> uploads = new ArrayList<>();
+        Cursor c = getDB().query(
+            ProviderTableMeta.CONTENT_URI_UPLOADS,
+            null,
+            selection,
+            selectionArgs,
+            String.format(Locale.ENGLISH, "%s LIMIT %d", PAGE_SORT_ORDER, limit)
+        );
+
+        if (c != null) {
+            while (c.moveToNext()) {
+                uploads.add(createOCUploadFromCursor(c));
+            }
+            c.close();
+        }
+
+        return uploads.toArray(new OCUpload[0]);
+    }
+
+    /**
+     * @param filter group of uploads
+     * @return number of uploads of the current account in the given group
+     */
+    public int countUploads(UploadsFilter filter) {
+        int count = 0;
+        Cursor c = getDB().query(
+            ProviderTableMeta.CONTENT_URI_UPLOADS,
+            new String[]{"count(*)"},
+            getSelection(filter),
+            new String[]{currentAccountProvider.getUser().getAccountName()},
+            null
+        );
+
+        if (c != null) {
+            if (c.moveToFirst()) {
+                count = c.getInt(0);
+            }
+            c.close();
+        }
+        return count;
+    }
+
+    /**
+     * Checks in memory if an upload belongs to a group, with the same conditions as the queries of the group.
+     *
+     * @param filter group of uploads
+     * @param upload upload to check
+     * @return true if the upload belongs to the current account and the given group
+     */
+    public boolean isInGroup(UploadsFilter filter, OCUpload upload) {
+        if (!currentAccountProvider.getUser().getAccountName().equals(upload.getAccountName())) {
+            return false;
+        }
+
+        UploadResult lastResult = upload.getLastResult();
+        boolean delayed = lastResult == UploadResult.DELAYED_FOR_WIFI ||
+            lastResult == UploadResult.LOCK_FAILED ||
+            lastResult == UploadResult.DELAYED_FOR_CHARGING ||
+            lastResult == UploadResult.DELAYED_IN_POWER_SAVE_MODE;
+
+        switch (filter) {
+            case CURRENT_AND_PENDING:
+                return upload.getUploadStatus() == UploadStatus.UPLOAD_IN_PROGRESS || delayed;
+            case FAILED_BUT_NOT_DELAYED:
+                return upload.getUploadStatus() == UploadStatus.UPLOAD_FAILED && !delayed;
+            case FINISHED:
+            default:
+                return upload.getUploadStatus() == UploadStatus.UPLOAD_SUCCEEDED;
+        }
+    }
+
+    /**
+     * @return selection of the given group, with the account name as only argument
+     */
+    private String getSelection(UploadsFilter filter) {
+        switch (filter) {
+            case CURRENT_AND_PENDING:
+                return "(" + ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
+                    " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT + " IN (" + DELAYED_RESULTS + "))" +
+                    AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+            case FAILED_BUT_NOT_DELAYED:
+                return ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_FAILED.value +
+                    AND + ProviderTableMeta.UPLOADS_LAST_RESULT + " NOT IN (" + DELAYED_RESULTS + ")" +
+                    AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+            case FINISHED:
+            default:
+                return ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_SUCCEEDED.value +
+                    AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+        }
+    }
+
     private OCUpload createOCUploadFromCursor(Cursor c) {
         OCUpload upload = null;
         if (c != null) {
@@ -395,17 +647,7 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getCurrentAndPendingUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_FOR_WIFI.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.LOCK_FAILED.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
-                        " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "==" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
-                        " AND " + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
-                        user.getAccountName());
+        return getUploads(getSelection(UploadsFilter.CURRENT_AND_PENDING), user.getAccountName());
     }
 
     /**
@@ -429,8 +671,7 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getFinishedUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_SUCCEEDED.value + AND +
-                              ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?", user.getAccountName());
+        return getUploads(getSelection(UploadsFilter.FINISHED), user.getAccountName());
     }
 
     /**
@@ -444,17 +685,7 @@ public class UploadsStorageManager extends Observable {
     public OCUpload[] getFailedButNotDelayedUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_FAILED.value +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_FOR_WIFI.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.LOCK_FAILED.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_LAST_RESULT +
-                        "<>" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
-                        AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
-                        user.getAccountName());
+        return getUploads(getSelection(UploadsFilter.FAILED_BUT_NOT_DELAYED), user.getAccountName());
     }
 
     /**
@@ -476,7 +707,11 @@ public class UploadsStorageManager extends Observable {
         );
     }
 
+    /**
+     * @return content resolver, after writing buffered status changes so that every access sees them
+     */
     private ContentResolver getDB() {
+        flushStatusUpdates();
         return mContentResolver;
     }
 
@@ -621,6 +856,26 @@ public class UploadsStorageManager extends Observable {
             new String[]{account.name});
     }
 
+    /**
+     * Groups of uploads of the current account, as shown in the uploads list.
+     */
+    public enum UploadsFilter {
+        /**
+         * Uploads in progress and uploads waiting for wifi, charging, leaving power save mode or a folder lock.
+         */
+        CURRENT_AND_PENDING,
+
+        /**
+         * Failed uploads, except for those only waiting.
+         */
+        FAILED_BUT_NOT_DELAYED,
+
+        /**
+         * Successful uploads.
+         */
+        FINISHED
+    }
+
     public enum UploadStatus {
 
         /**
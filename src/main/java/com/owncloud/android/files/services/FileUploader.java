@@ -38,11 +38,7 @@ import android.content.Intent;
 import android.graphics.BitmapFactory;
 import android.os.Binder;
 import android.os.Build;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.Looper;
-import android.os.Message;
 import android.os.Parcelable;
 import android.os.Process;
 import android.util.Pair;
@@ -81,9 +77,13 @@ import com.owncloud.android.utils.ThemeUtils;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -102,9 +102,10 @@ import dagger.android.AndroidInjection;
  *
  * Every file passed to this service is uploaded. No filtering is performed. However, Intent keys (e.g., KEY_WIFI_ONLY)
  * are obeyed.
+ *
+ * Uploads are performed by up to {@code R.integer.max_concurrent_uploads} workers, see {@link UploadScheduler}.
  */
-public class FileUploader extends Service
-    implements OnDatatransferProgressListener, OnAccountsUpdateListener, UploadFileOperation.OnRenameListener {
+public class FileUploader extends Service implements OnAccountsUpdateListener {
 
     private static final String TAG = FileUploader.class.getSimpleName();
 
@@ -173,12 +174,9 @@ public class FileUploader extends Service
 
 
     private Notification mNotification;
-    private Looper mServiceLooper;
-    private ServiceHandler mServiceHandler;
+    private ExecutorService mUploadExecutor;
+    private UploadScheduler mUploadScheduler;
     private IBinder mBinder;
-    private OwnCloudClient mUploadClient;
-    private Account mCurrentAccount;
-    private FileDataStorageManager mStorageManager;
 
     @Inject UserAccountManager accountManager;
     @Inject UploadsStorageManager mUploadsStorageManager;
@@ -188,20 +186,19 @@ public class FileUploader extends Service
     private IndexedForest<UploadFileOperation> mPendingUploads = new IndexedForest<>();
 
     /**
-     * {@link UploadFileOperation} object of ongoing upload. Can be null. Note: There can only be one concurrent
-     * upload!
+     * Ongoing uploads with their progress as transferred and total bytes. Also used as lock for the progress
+     * notification.
      */
-    private UploadFileOperation mCurrentUpload;
+    private final Map<UploadFileOperation, long[]> mActiveUploads = new LinkedHashMap<>();
 
     private NotificationManager mNotificationManager;
     private NotificationCompat.Builder mNotificationBuilder;
     private int mLastPercent;
 
 
-    @Override
-    public void onRenameUpload() {
-        mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
-        sendBroadcastUploadStarted(mCurrentUpload);
+    private void onRenameUpload(UploadFileOperation upload) {
+        mUploadsStorageManager.updateDatabaseUploadStart(upload);
+        sendBroadcastUploadStarted(upload);
     }
 
     /**
@@ -213,10 +210,25 @@ public class FileUploader extends Service
         AndroidInjection.inject(this);
         Log_OC.d(TAG, "Creating service");
         mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        HandlerThread thread = new HandlerThread("FileUploaderThread", Process.THREAD_PRIORITY_BACKGROUND);
-        thread.start();
-        mServiceLooper = thread.getLooper();
-        mServiceHandler = new ServiceHandler(mServiceLooper, this);
+        int maxConcurrentUploads = getResources().getInteger(R.integer.max_concurrent_uploads);
+        AtomicInteger threadCount = new AtomicInteger();
+        mUploadExecutor = Executors.newFixedThreadPool(maxConcurrentUploads, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "FileUploaderThread-" + threadCount.incrementAndGet()));
+        mUploadScheduler = new UploadScheduler(maxConcurrentUploads, mUploadExecutor, new UploadScheduler.Callback() {
+            @Override
+            public void upload(String uploadKey) {
+                uploadFile(uploadKey);
+            }
+
+            @Override
+            public void onIdle(int lastStartId) {
+                Log_OC.d(TAG, "Stopping command after id " + lastStartId);
+                stopForeground(true);
+                stopSelf(lastStartId);
+            }
+        });
         mBinder = new FileUploaderBinder();
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this).setContentTitle(
@@ -259,11 +271,13 @@ public class FileUploader extends Service
     public void onDestroy() {
         Log_OC.v(TAG, "Destroying service");
         mBinder = null;
-        mServiceHandler = null;
-        mServiceLooper.quit();
-        mServiceLooper = null;
+        mUploadScheduler.shutdown();
+        mUploadExecutor.shutdown();
         mNotificationManager = null;
 
+        // write status changes of finished uploads before the process may go away
+        mUploadsStorageManager.flushStatusUpdates();
+
         // remove AccountsUpdatedListener
         AccountManager am = AccountManager.get(getApplicationContext());
         am.removeOnAccountsUpdatedListener(this);
@@ -328,10 +342,7 @@ public class FileUploader extends Service
         }
 
         if (requestedUploads.size() > 0) {
-            Message msg = mServiceHandler.obtainMessage();
-            msg.arg1 = startId;
-            msg.obj = requestedUploads;
-            mServiceHandler.sendMessage(msg);
+            mUploadScheduler.schedule(startId);
             sendBroadcastUploadsAdded();
         }
         return Service.START_NOT_STICKY;
@@ -473,10 +484,7 @@ public class FileUploader extends Service
         if (isCreateRemoteFolder) {
             newUpload.setRemoteFolderToBeCreated();
         }
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -487,9 +495,11 @@ public class FileUploader extends Service
         if (putResult != null) {
             requestedUploads.add(putResult.first);
 
-            // Save upload in database
+            // Save upload in database, before a finishing upload may start it
             long id = mUploadsStorageManager.storeUpload(ocUpload);
             newUpload.setOCUploadId(id);
+
+            mUploadScheduler.enqueue(user.getAccountName(), file.getRemotePath(), putResult.first);
         }
     }
 
@@ -518,10 +528,7 @@ public class FileUploader extends Service
             whileChargingOnly
         );
 
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -532,12 +539,30 @@ public class FileUploader extends Service
             String uploadKey = putResult.first;
             requestedUploads.add(uploadKey);
 
-            // Update upload in database
+            // Update upload in database, before a finishing upload may start it
             upload.setUploadStatus(UploadStatus.UPLOAD_IN_PROGRESS);
             mUploadsStorageManager.updateUpload(upload);
+
+            mUploadScheduler.enqueue(user.getAccountName(), upload.getRemotePath(), uploadKey);
         }
     }
 
+    /**
+     * Registers the progress and rename listeners of the service and its binder for an upload.
+     */
+    private void addListeners(final UploadFileOperation upload) {
+        upload.addDataTransferProgressListener((progressRate, totalTransferredSoFar, totalToTransfer, fileName) -> {
+            onTransferProgress(upload, totalTransferredSoFar, totalToTransfer, fileName);
+
+            FileUploaderBinder binder = (FileUploaderBinder) mBinder;
+            if (binder != null) {
+                binder.onTransferProgress(upload, progressRate, totalTransferredSoFar, totalToTransfer, fileName);
+            }
+        });
+
+        upload.addRenameUploadListener(() -> onRenameUpload(upload));
+    }
+
     /**
      * Provides a binder object that clients can use to perform operations on the queue of uploads, excepting the
      * addition of new files.
@@ -560,94 +585,92 @@ public class FileUploader extends Service
 
     @Override
     public void onAccountsUpdated(Account[] accounts) {
-        // Review current upload, and cancel it if its account doesn't exist
-        if (mCurrentUpload != null && !accountManager.exists(mCurrentUpload.getAccount())) {
-            mCurrentUpload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+        // Review current uploads, and cancel them if their account doesn't exist
+        for (UploadFileOperation upload : getActiveUploads()) {
+            if (!accountManager.exists(upload.getAccount())) {
+                upload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+            }
         }
         // The rest of uploads are cancelled when they try to start
     }
 
+    private List<UploadFileOperation> getActiveUploads() {
+        synchronized (mActiveUploads) {
+            return new ArrayList<>(mActiveUploads.keySet());
+        }
+    }
+
     /**
-     * Core upload method: sends the file(s) to upload
+     * Core upload method: sends the file(s) to upload. Called concurrently by the workers of {@link UploadScheduler}.
      *
      * @param uploadKey Key to access the upload to perform, contained in mPendingUploads
      */
     public void uploadFile(String uploadKey) {
-        mCurrentUpload = mPendingUploads.get(uploadKey);
+        UploadFileOperation upload = mPendingUploads.get(uploadKey);
 
-        if (mCurrentUpload != null) {
+        if (upload != null) {
             /// Check account existence
-            if (!accountManager.exists(mCurrentUpload.getAccount())) {
-                Log_OC.w(TAG, "Account " + mCurrentUpload.getAccount().name +
+            if (!accountManager.exists(upload.getAccount())) {
+                Log_OC.w(TAG, "Account " + upload.getAccount().name +
                     " does not exist anymore -> cancelling all its uploads");
-                cancelUploadsForAccount(mCurrentUpload.getAccount());
+                cancelUploadsForAccount(upload.getAccount());
                 return;
             }
 
             /// OK, let's upload
-            mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
+            mUploadsStorageManager.updateDatabaseUploadStart(upload);
 
-            notifyUploadStart(mCurrentUpload);
+            notifyUploadStart(upload);
 
-            sendBroadcastUploadStarted(mCurrentUpload);
+            sendBroadcastUploadStarted(upload);
 
             RemoteOperationResult uploadResult = null;
 
-            try {
-                /// prepare client object to send the request to the ownCloud server
-                if (mCurrentAccount == null || !mCurrentAccount.equals(mCurrentUpload.getAccount())) {
-                    mCurrentAccount = mCurrentUpload.getAccount();
-                    mStorageManager = new FileDataStorageManager(mCurrentAccount, getContentResolver());
-                }   // else, reuse storage manager from previous operation
+            Account account = upload.getAccount();
+            FileDataStorageManager storageManager = new FileDataStorageManager(account, getContentResolver());
 
+            try {
                 // always get client from client manager, to get fresh credentials in case of update
-                OwnCloudAccount ocAccount = new OwnCloudAccount(mCurrentAccount, this);
-                mUploadClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, this);
-
-
-//                // If parent folder is encrypted, upload file encrypted
-//                OCFile parent = mStorageManager.getFileByPath(mCurrentUpload.getFile().getParentRemotePath());
+                OwnCloudAccount ocAccount = new OwnCloudAccount(account, this);
+                OwnCloudClient uploadClient = OwnCloudClientManagerFactory.getDefaultSingleton()
+                    .getClientFor(ocAccount, this);
 
-//                if (parent.isEncrypted()) {
-//                    UploadEncryptedFileOperation uploadEncryptedFileOperation =
-//                            new UploadEncryptedFileOperation(parent, mCurrentUpload);
-//
-//                    uploadResult = uploadEncryptedFileOperation.execute(mUploadClient, mStorageManager);
-//                } else {
                 /// perform the regular upload
-                uploadResult = mCurrentUpload.execute(mUploadClient, mStorageManager);
-//                }
+                uploadResult = upload.execute(uploadClient, storageManager);
             } catch (Exception e) {
                 Log_OC.e(TAG, "Error uploading", e);
                 uploadResult = new RemoteOperationResult(e);
             } finally {
                 Pair<UploadFileOperation, String> removeResult;
-                if (mCurrentUpload.wasRenamed()) {
+                if (upload.wasRenamed()) {
                     removeResult = mPendingUploads.removePayload(
-                        mCurrentAccount.name,
-                        mCurrentUpload.getOldFile().getRemotePath()
+                        account.name,
+                        upload.getOldFile().getRemotePath()
                     );
-                    // TODO: grant that name is also updated for mCurrentUpload.getOCUploadId
+                    // TODO: grant that name is also updated for upload.getOCUploadId
 
                 } else {
-                    removeResult = mPendingUploads.removePayload(mCurrentAccount.name,
-                                                                 mCurrentUpload.getDecryptedRemotePath());
+                    removeResult = mPendingUploads.removePayload(account.name, upload.getDecryptedRemotePath());
                 }
 
-                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, mCurrentUpload);
+                synchronized (mActiveUploads) {
+                    mActiveUploads.remove(upload);
+                }
+
+                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, upload);
 
                 /// notify result
-                notifyUploadResult(mCurrentUpload, uploadResult);
+                notifyUploadResult(upload, uploadResult);
 
-                sendBroadcastUploadFinished(mCurrentUpload, uploadResult, removeResult.second);
+                sendBroadcastUploadFinished(upload, uploadResult, removeResult.second);
             }
 
             // generate new Thumbnail
             final ThumbnailsCacheManager.ThumbnailGenerationTask task =
-                new ThumbnailsCacheManager.ThumbnailGenerationTask(mStorageManager, mCurrentAccount);
+                new ThumbnailsCacheManager.ThumbnailGenerationTask(storageManager, account);
 
-            File file = new File(mCurrentUpload.getOriginalStoragePath());
-            String remoteId = mCurrentUpload.getFile().getRemoteId();
+            File file = new File(upload.getOriginalStoragePath());
+            String remoteId = upload.getFile().getRemoteId();
 
             task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
         }
@@ -660,64 +683,86 @@ public class FileUploader extends Service
      * @param upload Upload operation starting.
      */
     private void notifyUploadStart(UploadFileOperation upload) {
-        // / create status notification with a progress bar
-        mLastPercent = 0;
-        mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
-        mNotificationBuilder
-            .setOngoing(true)
-            .setSmallIcon(R.drawable.notification_icon)
-            .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
-            .setContentTitle(getString(R.string.uploader_upload_in_progress_ticker))
-            .setProgress(100, 0, false)
-            .setContentText(
-                String.format(getString(R.string.uploader_upload_in_progress_content), 0, upload.getFileName())
-            );
+        synchronized (mActiveUploads) {
+            mActiveUploads.put(upload, new long[]{0, 0});
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
-        }
+            if (mActiveUploads.size() > 1 && mNotificationBuilder != null) {
+                // progress notification of running uploads is reused, progress is aggregated
+                return;
+            }
+
+            // / create status notification with a progress bar
+            mLastPercent = 0;
+            mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
+            mNotificationBuilder
+                .setOngoing(true)
+                .setSmallIcon(R.drawable.notification_icon)
+                .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
+                .setContentTitle(getString(R.string.uploader_upload_in_progress_ticker))
+                .setProgress(100, 0, false)
+                .setContentText(
+                    String.format(getString(R.string.uploader_upload_in_progress_content), 0, upload.getFileName())
+                );
 
-        /// includes a pending intent in the notification showing the details
-        Intent intent = UploadListActivity.createIntent(upload.getFile(),
-                                                        upload.getAccount(),
-                                                        Intent.FLAG_ACTIVITY_CLEAR_TOP,
-                                                        this);
-        mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
-                                                                        (int) System.currentTimeMillis(),
-                                                                        intent,
-                                                                        0)
-                                             );
-
-        if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
             }
 
-            mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
-        }   // else wait until the upload really start (onTransferProgress is called), so that if it's discarded
-        // due to lack of Wifi, no notification is shown
-        // TODO generalize for automated uploads
+            /// includes a pending intent in the notification showing the details
+            Intent intent = UploadListActivity.createIntent(upload.getFile(),
+                                                            upload.getAccount(),
+                                                            Intent.FLAG_ACTIVITY_CLEAR_TOP,
+                                                            this);
+            mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
+                                                                            (int) System.currentTimeMillis(),
+                                                                            intent,
+                                                                            0)
+                                                 );
+
+            if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
+                if (mNotificationManager == null) {
+                    mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+                }
+
+                mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
+            }   // else wait until the upload really start (onTransferProgress is called), so that if it's discarded
+            // due to lack of Wifi, no notification is shown
+            // TODO generalize for automated uploads
+        }
     }
 
     /**
-     * Callback method to update the progress bar in the status notification
+     * Updates the progress bar in the status notification, aggregated over all running uploads
      */
-    @Override
-    public void onTransferProgress(
-        long progressRate,
+    private void onTransferProgress(
+        UploadFileOperation upload,
         long totalTransferredSoFar,
         long totalToTransfer,
         String filePath
     ) {
-        int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
-        if (percent != mLastPercent) {
-            mNotificationBuilder.setProgress(100, percent, false);
-            String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
-            String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent, fileName);
-            mNotificationBuilder.setContentText(text);
-            mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
+        synchronized (mActiveUploads) {
+            if (mNotificationBuilder == null || !mActiveUploads.containsKey(upload)) {
+                return;
+            }
+            mActiveUploads.put(upload, new long[]{totalTransferredSoFar, totalToTransfer});
+
+            long transferred = 0;
+            long total = 0;
+            for (long[] progress : mActiveUploads.values()) {
+                transferred += progress[0];
+                total += progress[1];
+            }
+
+            int percent = (int) (100.0 * ((double) transferred) / ((double) total));
+            if (percent != mLastPercent) {
+                mNotificationBuilder.setProgress(100, percent, false);
+                String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
+                String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent, fileName);
+                mNotificationBuilder.setContentText(text);
+                mNotificationManager.notify(R.string.uploader_upload_in_progress_ticker, mNotificationBuilder.build());
+            }
+            mLastPercent = percent;
         }
-        mLastPercent = percent;
     }
 
     /**
@@ -733,7 +778,12 @@ public class FileUploader extends Service
             mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         }
 
-        mNotificationManager.cancel(R.string.uploader_upload_in_progress_ticker);
+        synchronized (mActiveUploads) {
+            if (mActiveUploads.isEmpty()) {
+                mNotificationManager.cancel(R.string.uploader_upload_in_progress_ticker);
+                mNotificationBuilder = null;
+            }
+        }
 
         // Only notify if the upload fails
         if (!uploadResult.isCancelled() &&
@@ -756,13 +806,20 @@ public class FileUploader extends Service
                 tickerId = R.string.uploader_upload_failed_sync_conflict_error;
             }
 
-            mNotificationBuilder
+            // progress notification may still be in use by other uploads
+            NotificationCompat.Builder notificationBuilder = NotificationUtils.newNotificationBuilder(this);
+            notificationBuilder
+                .setSmallIcon(R.drawable.notification_icon)
                 .setTicker(getString(tickerId))
                 .setContentTitle(getString(tickerId))
                 .setAutoCancel(true)
                 .setOngoing(false)
                 .setProgress(0, 0, false);
 
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                notificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            }
+
             content = ErrorMessageAdapter.getErrorCauseMessage(uploadResult, upload, getResources());
 
             if (needsToUpdateCredentials) {
@@ -779,7 +836,7 @@ public class FileUploader extends Service
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
                 updateAccountCredentials.addFlags(Intent.FLAG_FROM_BACKGROUND);
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(
                     this,
                     (int) System.currentTimeMillis(),
                     updateAccountCredentials,
@@ -799,15 +856,15 @@ public class FileUploader extends Service
                                                              this);
                 }
 
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
-                                                                                (int) System.currentTimeMillis(),
-                                                                                intent,
-                                                                                0)
-                                                     );
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(this,
+                                                                               (int) System.currentTimeMillis(),
+                                                                               intent,
+                                                                               0)
+                                                    );
             }
 
-            mNotificationBuilder.setContentText(content);
-            mNotificationManager.notify(tickerId, mNotificationBuilder.build());
+            notificationBuilder.setContentText(content);
+            mNotificationManager.notify(tickerId, notificationBuilder.build());
         }
     }
 
@@ -1104,12 +1161,12 @@ public class FileUploader extends Service
      *
      * It provides by itself the available operations.
      */
-    public class FileUploaderBinder extends Binder implements OnDatatransferProgressListener {
+    public class FileUploaderBinder extends Binder {
 
         /**
          * Map of listeners that will be reported about progress of uploads from a {@link FileUploaderBinder} instance
          */
-        private Map<String, OnDatatransferProgressListener> mBoundListeners = new HashMap<>();
+        private Map<String, OnDatatransferProgressListener> mBoundListeners = new ConcurrentHashMap<>();
 
         /**
          * Cancels a pending or current upload of a remote file.
@@ -1139,14 +1196,20 @@ public class FileUploader extends Service
          */
         private void cancel(String accountName, String remotePath, @Nullable ResultCode resultCode) {
             Pair<UploadFileOperation, String> removeResult = mPendingUploads.remove(accountName, remotePath);
-            UploadFileOperation upload = removeResult.first;
-            if (upload == null && mCurrentUpload != null && mCurrentAccount != null &&
-                mCurrentUpload.getRemotePath().startsWith(remotePath) && accountName.equals(mCurrentAccount.name)) {
-
-                upload = mCurrentUpload;
+            List<UploadFileOperation> uploads = new ArrayList<>();
+            if (removeResult.first != null) {
+                uploads.add(removeResult.first);
+            } else {
+                // running uploads below the given path
+                for (UploadFileOperation activeUpload : getActiveUploads()) {
+                    if (activeUpload.getRemotePath().startsWith(remotePath) &&
+                        accountName.equals(activeUpload.getAccount().name)) {
+                        uploads.add(activeUpload);
+                    }
+                }
             }
 
-            if (upload != null) {
+            for (UploadFileOperation upload : uploads) {
                 upload.cancel(resultCode);
                 // need to update now table in mUploadsStorageManager,
                 // since the operation will not get to be run by FileUploader#uploadFile
@@ -1154,7 +1217,9 @@ public class FileUploader extends Service
                     mUploadsStorageManager.updateDatabaseUploadResult(new RemoteOperationResult(resultCode), upload);
                     notifyUploadResult(upload, new RemoteOperationResult(resultCode));
                 } else {
-                    mUploadsStorageManager.removeUpload(accountName, remotePath);
+                    mUploadsStorageManager.removeUpload(accountName,
+                                                        upload == removeResult.first ? remotePath :
+                                                            upload.getRemotePath());
                 }
             }
         }
@@ -1167,10 +1232,10 @@ public class FileUploader extends Service
         public void cancel(Account account) {
             Log_OC.d(TAG, "Account= " + account.name);
 
-            if (mCurrentUpload != null) {
-                Log_OC.d(TAG, "Current Upload Account= " + mCurrentUpload.getAccount().name);
-                if (mCurrentUpload.getAccount().name.equals(account.name)) {
-                    mCurrentUpload.cancel(ResultCode.CANCELLED);
+            for (UploadFileOperation upload : getActiveUploads()) {
+                Log_OC.d(TAG, "Current Upload Account= " + upload.getAccount().name);
+                if (upload.getAccount().name.equals(account.name)) {
+                    upload.cancel(ResultCode.CANCELLED);
                 }
             }
 
@@ -1203,11 +1268,28 @@ public class FileUploader extends Service
         }
 
         public boolean isUploadingNow(OCUpload upload) {
-            return upload != null &&
-                mCurrentAccount != null &&
-                mCurrentUpload != null &&
-                upload.getAccountName().equals(mCurrentAccount.name) &&
-                upload.getRemotePath().equals(mCurrentUpload.getRemotePath());
+            if (upload == null) {
+                return false;
+            }
+
+            for (UploadFileOperation activeUpload : getActiveUploads()) {
+                if (upload.getAccountName().equals(activeUpload.getAccount().name) &&
+                    upload.getRemotePath().equals(activeUpload.getRemotePath())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return ids of the uploads being uploaded now, see {@link #isUploadingNow(OCUpload)}
+         */
+        public List<Long> getUploadingNowIds() {
+            List<Long> ids = new ArrayList<>();
+            for (UploadFileOperation activeUpload : getActiveUploads()) {
+                ids.add(activeUpload.getOCUploadId());
+            }
+            return ids;
         }
 
         /**
@@ -1290,14 +1372,14 @@ public class FileUploader extends Service
             }
         }
 
-        @Override
-        public void onTransferProgress(
+        private void onTransferProgress(
+            UploadFileOperation upload,
             long progressRate,
             long totalTransferredSoFar,
             long totalToTransfer,
             String fileName
         ) {
-            String key = buildRemoteName(mCurrentUpload.getAccount().name, mCurrentUpload.getFile().getRemotePath());
+            String key = buildRemoteName(upload.getAccount().name, upload.getFile().getRemotePath());
             OnDatatransferProgressListener boundListener = mBoundListeners.get(key);
 
             if (boundListener != null) {
@@ -1308,18 +1390,18 @@ public class FileUploader extends Service
             if (context != null) {
                 ResultCode cancelReason = null;
                 Connectivity connectivity = connectivityService.getConnectivity();
-                if (mCurrentUpload.isWifiRequired() && !connectivity.isWifi()) {
+                if (upload.isWifiRequired() && !connectivity.isWifi()) {
                     cancelReason = ResultCode.DELAYED_FOR_WIFI;
-                } else if (mCurrentUpload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
+                } else if (upload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
                     cancelReason = ResultCode.DELAYED_FOR_CHARGING;
-                } else if (!mCurrentUpload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
+                } else if (!upload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
                     cancelReason = ResultCode.DELAYED_IN_POWER_SAVE_MODE;
                 }
 
                 if (cancelReason != null) {
                     cancel(
-                        mCurrentUpload.getAccount().name,
-                        mCurrentUpload.getFile().getRemotePath(),
+                        upload.getAccount().name,
+                        upload.getFile().getRemotePath(),
                         cancelReason
                     );
                 }
@@ -1340,38 +1422,4 @@ public class FileUploader extends Service
             return accountName + remotePath;
         }
     }
-
-
-    /**
-     * Upload worker. Performs the pending uploads in the order they were requested.
-     *
-     * Created with the Looper of a new thread, started in {@link FileUploader#onCreate()}.
-     */
-    private static class ServiceHandler extends Handler {
-        // don't make it a final class, and don't remove the static ; lint will
-        // warn about a possible memory leak
-        private FileUploader mService;
-
-        public ServiceHandler(Looper looper, FileUploader service) {
-            super(looper);
-            if (service == null) {
-                throw new IllegalArgumentException("Received invalid NULL in parameter 'service'");
-            }
-            mService = service;
-        }
-
-        @Override
-        public void handleMessage(Message msg) {
-            @SuppressWarnings("unchecked")
-            List<String> requestedUploads = (List<String>) msg.obj;
-            if (msg.obj != null) {
-                for (String requestedUpload : requestedUploads) {
-                    mService.uploadFile(requestedUpload);
-                }
-            }
-            Log_OC.d(TAG, "Stopping command after id " + msg.arg1);
-            mService.stopForeground(true);
-            mService.stopSelf(msg.arg1);
-        }
-    }
 }
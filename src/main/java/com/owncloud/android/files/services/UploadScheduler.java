@@ -0,0 +1,281 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Dispatches uploads to a bounded number of workers.
+ *
+ * Accounts are served round robin, so a large batch of one account does not starve the others. Uploads of an account
+ * are started in the order they were requested. Until the first upload into a remote folder has finished, further
+ * uploads into the same folder or below it are held back, so the folder and its missing parents are only created
+ * once.
+ *
+ * Uploads are identified by the keys of {@link IndexedForest}; cancelling is done by removing the key from there, the
+ * worker is then expected to skip it.
+ */
+class UploadScheduler {
+    private static final String TAG = UploadScheduler.class.getSimpleName();
+
+    interface Callback {
+        /**
+         * Performs the upload, called on a worker thread.
+         */
+        void upload(String uploadKey);
+
+        /**
+         * Called on a worker thread when no upload is queued or running anymore.
+         *
+         * @param lastStartId start id of the last batch enqueued
+         */
+        void onIdle(int lastStartId);
+    }
+
+    private static final class Task {
+        /**
+         * keys of the target folder, first, and of its parents up to the root folder, which always exists and is
+         * only included as target folder of uploads into it
+         */
+        private final List<String> folderKeys = new ArrayList<>();
+        private final String uploadKey;
+
+        private Task(String accountName, String remotePath, String uploadKey) {
+            String folder = getParentPath(remotePath);
+            folderKeys.add(accountName + folder);
+            while (!OCFile.ROOT_PATH.equals(folder = getParentPath(folder))) {
+                folderKeys.add(accountName + folder);
+            }
+            this.uploadKey = uploadKey;
+        }
+    }
+
+    private final int maxWorkers;
+    private final Executor executor;
+    private final Callback callback;
+
+    private final Map<String, ArrayDeque<Task>> queues = new LinkedHashMap<>();
+    private final Map<String, Integer> runningPerFolder = new HashMap<>();
+    private final Set<String> readyFolders = new HashSet<>();
+    private int running;
+    private int lastStartId;
+    private boolean shutdown;
+
+    /**
+     * @param maxWorkers maximum number of concurrent uploads
+     * @param executor   executor providing at least maxWorkers threads
+     * @param callback   performs the uploads
+     */
+    UploadScheduler(int maxWorkers, Executor executor, Callback callback) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed");
+        }
+        this.maxWorkers = maxWorkers;
+        this.executor = executor;
+        this.callback = callback;
+    }
+
+    /**
+     * Adds an upload to the end of the queue of its account. Queued uploads are started with {@link #schedule(int)}.
+     *
+     * @param accountName account of the upload
+     * @param remotePath  target of the upload
+     * @param uploadKey   key of the upload in {@link IndexedForest}
+     */
+    synchronized void enqueue(String accountName, String remotePath, String uploadKey) {
+        if (shutdown) {
+            return;
+        }
+
+        ArrayDeque<Task> queue = queues.get(accountName);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            queues.put(accountName, queue);
+        }
+        queue.add(new Task(accountName, remotePath, uploadKey));
+    }
+
+    /**
+     * Starts queued uploads on free workers.
+     *
+     * @param startId start id of the command the enqueued uploads belong to
+     */
+    synchronized void schedule(int startId) {
+        lastStartId = startId;
+        dispatch();
+    }
+
+    synchronized int getQueuedCount() {
+        int count = 0;
+        for (ArrayDeque<Task> queue : queues.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * Drops all queued uploads, running uploads are not interrupted.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+        queues.clear();
+    }
+
+    private void dispatch() {
+        while (running < maxWorkers) {
+            Task task = nextTask();
+            if (task == null) {
+                break;
+            }
+            start(task);
+        }
+
+        if (running == 0 && queues.isEmpty()) {
+            readyFolders.clear();
+        }
+    }
+
+    /**
+     * Takes the first startable task of the next account, rotating the accounts for fairness.
+     */
+    private Task nextTask() {
+        int accounts = queues.size();
+        for (int i = 0; i < accounts; i++) {
+            Iterator<Map.Entry<String, ArrayDeque<Task>>> accountIterator = queues.entrySet().iterator();
+            Map.Entry<String, ArrayDeque<Task>> entry = accountIterator.next();
+            ArrayDeque<Task> queue = entry.getValue();
+
+            // move account to the end
+            accountIterator.remove();
+
+            Task task = pollStartable(queue);
+            if (!queue.isEmpty()) {
+                queues.put(entry.getKey(), queue);
+            }
+
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private Task pollStartable(ArrayDeque<Task> queue) {
+        Iterator<Task> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+            if (isStartable(task)) {
+                iterator.remove();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if none of the folders of the task may be created by a running upload right now
+     */
+    private boolean isStartable(Task task) {
+        for (String folderKey : task.folderKeys) {
+            if (!readyFolders.contains(folderKey) && runningPerFolder.containsKey(folderKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void start(final Task task) {
+        running++;
+        for (String folderKey : task.folderKeys) {
+            Integer runningInFolder = runningPerFolder.get(folderKey);
+            runningPerFolder.put(folderKey, runningInFolder == null ? 1 : runningInFolder + 1);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    callback.upload(task.uploadKey);
+                } catch (RuntimeException e) {
+                    Log_OC.e(TAG, "Error uploading " + task.uploadKey, e);
+                } finally {
+                    finished(task);
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected, e.g. executor already shut down
+            Log_OC.e(TAG, "Could not start upload " + task.uploadKey, e);
+            running--;
+            releaseFolder(task);
+        }
+    }
+
+    private void finished(Task task) {
+        int startId;
+        boolean idle;
+        synchronized (this) {
+            running--;
+            releaseFolder(task);
+            readyFolders.addAll(task.folderKeys);
+
+            dispatch();
+
+            idle = running == 0 && queues.isEmpty();
+            startId = lastStartId;
+        }
+
+        if (idle) {
+            callback.onIdle(startId);
+        }
+    }
+
+    private void releaseFolder(Task task) {
+        for (String folderKey : task.folderKeys) {
+            Integer runningInFolder = runningPerFolder.get(folderKey);
+            if (runningInFolder == null || runningInFolder <= 1) {
+                runningPerFolder.remove(folderKey);
+            } else {
+                runningPerFolder.put(folderKey, runningInFolder - 1);
+            }
+        }
+    }
+
+    private static String getParentPath(String remotePath) {
+        int end = remotePath.endsWith(OCFile.PATH_SEPARATOR) ? remotePath.length() - 1 : remotePath.length();
+        int separator = remotePath.lastIndexOf(OCFile.PATH_SEPARATOR, end - 1);
+        return separator < 0 ? OCFile.ROOT_PATH : remotePath.substring(0, separator + 1);
+    }
+}
@@ -40,7 +40,6 @@ import com.owncloud.android.utils.EncryptionUtils;
 import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -51,6 +50,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class DownloadFileOperation extends RemoteOperation {
     private static final String TAG = DownloadFileOperation.class.getSimpleName();
+    private static final String DECRYPTED_SUFFIX = ".decrypted";
 
     private Account account;
     private OCFile file;
@@ -194,10 +194,11 @@ public class DownloadFileOperation extends RemoteOperation {
                         .get(file.getEncryptedFileName()).getAuthenticationTag());
 
                 try {
-                    byte[] decryptedBytes = EncryptionUtils.decryptFile(tmpFile, key, iv, authenticationTag);
+                    File decryptedFile = new File(tmpFile.getAbsolutePath() + DECRYPTED_SUFFIX);
+                    EncryptionUtils.decryptFile(tmpFile, decryptedFile, key, iv, authenticationTag);
 
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
-                        fileOutputStream.write(decryptedBytes);
+                    if (!tmpFile.delete() || !decryptedFile.renameTo(tmpFile)) {
+                        return new RemoteOperationResult(RemoteOperationResult.ResultCode.LOCAL_STORAGE_NOT_MOVED);
                     }
                 } catch (Exception e) {
                     return new RemoteOperationResult(e);
@@ -444,6 +444,16 @@ public class RefreshFolderOperation extends RemoteOperation {
         OCFile updatedFile;
         RemoteFile remote;
 
+        // files which are not (yet) children of this folder are looked up at once instead of one query per child
+        List<String> unknownRemotePaths = new ArrayList<>();
+        for (int i = 1; i < folderAndFiles.size(); i++) {
+            String remotePath = ((RemoteFile) folderAndFiles.get(i)).getRemotePath();
+            if (!localFilesMap.containsKey(remotePath)) {
+                unknownRemotePaths.add(remotePath);
+            }
+        }
+        Map<String, OCFile> unknownLocalFiles = mStorageManager.getFilesByRemotePaths(unknownRemotePaths);
+
         for (int i = 1; i < folderAndFiles.size(); i++) {
             /// new OCFile instance with the data from the server
             remote = (RemoteFile) folderAndFiles.get(i);
@@ -456,9 +466,8 @@ public class RefreshFolderOperation extends RemoteOperation {
             // retrieve local data for the read file
             localFile = localFilesMap.remove(remoteFile.getRemotePath());
 
-            // TODO better implementation is needed
             if (localFile == null) {
-                localFile = mStorageManager.getFileByPath(updatedFile.getRemotePath());
+                localFile = unknownLocalFiles.get(updatedFile.getRemotePath());
             }
 
             // add to updatedFile data about LOCAL STATE (not existing in server)
@@ -432,6 +432,7 @@ public class UploadFileOperation extends SyncOperation {
         File temporalFile = null;
         File originalFile = new File(mOriginalStoragePath);
         File expectedFile = null;
+        File encryptedTempFile = null;
         FileLock fileLock = null;
         long size;
 
@@ -496,8 +497,6 @@ public class UploadFileOperation extends SyncOperation {
             // IV, always generate new one
             byte[] iv = EncryptionUtils.randomBytes(EncryptionUtils.ivLength);
 
-            EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(mFile, key, iv);
-
             // new random file name, check if it exists in metadata
             String encryptedFileName = UUID.randomUUID().toString().replaceAll("-", "");
 
@@ -505,10 +504,8 @@ public class UploadFileOperation extends SyncOperation {
                 encryptedFileName = UUID.randomUUID().toString().replaceAll("-", "");
             }
 
-            File encryptedTempFile = File.createTempFile("encFile", encryptedFileName);
-            FileOutputStream fileOutputStream = new FileOutputStream(encryptedTempFile);
-            fileOutputStream.write(encryptedFile.encryptedBytes);
-            fileOutputStream.close();
+            encryptedTempFile = File.createTempFile("encFile", encryptedFileName);
+            String authenticationTag = EncryptionUtils.encryptFile(mFile, encryptedTempFile, key, iv);
 
             /***** E2E *****/
 
@@ -600,7 +597,7 @@ public class UploadFileOperation extends SyncOperation {
 
                 decryptedFile.setEncrypted(data);
                 decryptedFile.setInitializationVector(EncryptionUtils.encodeBytesToBase64String(iv));
-                decryptedFile.setAuthenticationTag(encryptedFile.authenticationTag);
+                decryptedFile.setAuthenticationTag(authenticationTag);
 
                 metadata.getFiles().put(encryptedFileName, decryptedFile);
 
@@ -644,6 +641,12 @@ public class UploadFileOperation extends SyncOperation {
             if (temporalFile != null && !originalFile.equals(temporalFile)) {
                 temporalFile.delete();
             }
+
+            // encrypted copy is as large as the file itself, do not keep it around, also not after failures
+            if (encryptedTempFile != null && encryptedTempFile.exists() && !encryptedTempFile.delete()) {
+                Log_OC.w(TAG, "Could not delete encrypted temporary file " + encryptedTempFile.getAbsolutePath());
+            }
+
             if (result == null) {
                 result = new RemoteOperationResult(ResultCode.UNKNOWN_ERROR);
             }
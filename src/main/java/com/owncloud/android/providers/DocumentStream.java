@@ -0,0 +1,429 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.FileStorageUtils;
+import com.owncloud.android.utils.MimeTypeUtil;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Read only descriptor of a remote file that is fed by the WebDAV GET while it runs, instead of after the whole file
+ * is downloaded.
+ *
+ * The download is written to a temporary file of the account, which is moved to the local copy of the file once it is
+ * complete. From Android O on, the descriptor is a seekable proxy: reads of already downloaded data are served from
+ * the temporary file, reads shortly ahead of the download wait for it and reads far ahead are served by ranged GETs.
+ * Older versions get a pipe, which can only be read in order.
+ */
+class DocumentStream {
+    private static final String TAG = DocumentStream.class.getSimpleName();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * reads starting further than this ahead of the download use a ranged GET instead of waiting
+     */
+    private static final long READ_AHEAD_LIMIT = 1024 * 1024;
+
+    /**
+     * minimum size of a ranged GET, following reads are served from its buffer
+     */
+    private static final int RANGE_SIZE = 512 * 1024;
+
+    /**
+     * reads waiting for the download fail if it makes no progress for this long
+     */
+    private static final long READ_TIMEOUT_MS = 30 * 1000;
+
+    private static final String ETAG = "ETag";
+
+    private final OwnCloudClient client;
+    private final FileDataStorageManager storageManager;
+    private final OCFile file;
+    private final String url;
+    private final File tmpFile;
+    private final long readTimeout;
+
+    private final Object lock = new Object();
+    private long downloaded;
+    private boolean finished;
+    private boolean failed;
+    private volatile boolean closed;
+
+    private byte[] range = new byte[0];
+    private long rangeStart;
+    private int rangeLength;
+
+    DocumentStream(OwnCloudClient client, FileDataStorageManager storageManager, OCFile file) {
+        this(client,
+             storageManager,
+             file,
+             new File(FileStorageUtils.getTemporalPath(storageManager.getAccount().name) +
+                          file.getRemotePath() + ".stream" + System.nanoTime()),
+             READ_TIMEOUT_MS);
+    }
+
+    /**
+     * @param tmpFile     file the download is written to
+     * @param readTimeout time in ms reads wait for the download to make progress
+     */
+    @VisibleForTesting
+    DocumentStream(OwnCloudClient client,
+                   FileDataStorageManager storageManager,
+                   OCFile file,
+                   File tmpFile,
+                   long readTimeout) {
+        this.client = client;
+        this.storageManager = storageManager;
+        this.file = file;
+        this.tmpFile = tmpFile;
+        this.readTimeout = readTimeout;
+        url = client.getWebdavUri() + WebdavUtils.encodePath(file.getRemotePath());
+    }
+
+    /**
+     * Starts the download on the given executor and returns the descriptor fed by it.
+     */
+    ParcelFileDescriptor open(Context context, Executor executor) throws IOException {
+        File parent = tmpFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create folder " + parent.getAbsolutePath());
+        }
+        OutputStream cache = new FileOutputStream(tmpFile);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return openProxy(context, executor, cache);
+        } else {
+            return openPipe(executor, cache);
+        }
+    }
+
+    private ParcelFileDescriptor openPipe(Executor executor, OutputStream cache) throws IOException {
+        ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createReliablePipe();
+        ParcelFileDescriptor writeSide = pipe[1];
+
+        executor.execute(() -> {
+            OutputStream consumer = new ParcelFileDescriptor.AutoCloseOutputStream(writeSide);
+            try {
+                download(cache, consumer);
+                consumer.close();
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Streaming " + file.getRemotePath() + " failed", e);
+                try {
+                    writeSide.closeWithError(e.getMessage());
+                } catch (IOException closeException) {
+                    Log_OC.e(TAG, "Failed to close pipe of " + file.getRemotePath(), closeException);
+                }
+            }
+        });
+
+        return pipe[0];
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private ParcelFileDescriptor openProxy(Context context, Executor executor, OutputStream cache) throws IOException {
+        RandomAccessFile reader = new RandomAccessFile(tmpFile, "r");
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+
+        StorageManager systemStorageManager = context.getSystemService(StorageManager.class);
+        ParcelFileDescriptor descriptor;
+        try {
+            descriptor = systemStorageManager.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                                                                      new ProxyCallback(reader, thread),
+                                                                      new Handler(thread.getLooper()));
+        } catch (IOException e) {
+            thread.quitSafely();
+            reader.close();
+            cache.close();
+            deleteTmpFile();
+            throw e;
+        }
+
+        executor.execute(() -> {
+            try {
+                download(cache, null);
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Streaming " + file.getRemotePath() + " failed", e);
+            }
+        });
+
+        return descriptor;
+    }
+
+    /**
+     * Downloads the whole file into the temporary file and, if given, the consumer. Stops as soon as the descriptor
+     * is closed.
+     */
+    private void download(OutputStream cache, OutputStream consumer) throws IOException {
+        GetMethod get = new GetMethod(url);
+        boolean complete = false;
+        try {
+            int status = client.executeMethod(get);
+            if (status != HttpStatus.SC_OK) {
+                client.exhaustResponse(get.getResponseBodyAsStream());
+                throw new IOException("Download of " + file.getRemotePath() + " failed with status " + status);
+            }
+
+            InputStream input = get.getResponseBodyAsStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                if (closed) {
+                    get.abort();
+                    return;
+                }
+                cache.write(buffer, 0, read);
+                if (consumer != null) {
+                    consumer.write(buffer, 0, read);
+                }
+                onDownloaded(read);
+            }
+            cache.close();
+            complete = true;
+
+            Header etag = get.getResponseHeader(ETAG);
+            saveDownloadedFile(etag == null ? null : etag.getValue().replace("\"", ""));
+        } finally {
+            get.releaseConnection();
+            cache.close();
+            onDownloadFinished(complete);
+            if (!complete) {
+                deleteTmpFile();
+            }
+        }
+    }
+
+    /**
+     * Wakes up reads waiting for the given number of further bytes, which are written to the temporary file.
+     */
+    @VisibleForTesting
+    void onDownloaded(int count) {
+        synchronized (lock) {
+            downloaded += count;
+            lock.notifyAll();
+        }
+    }
+
+    @VisibleForTesting
+    void onDownloadFinished(boolean complete) {
+        synchronized (lock) {
+            finished = true;
+            failed = !complete;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Moves the complete download to the local copy of the file, like {@code FileDownloader} does, unless the file
+     * got downloaded in the meantime.
+     */
+    private void saveDownloadedFile(String etag) {
+        OCFile current = storageManager.getFileById(file.getFileId());
+        if (current == null || current.isDown()) {
+            deleteTmpFile();
+            return;
+        }
+
+        File saveFile = new File(FileStorageUtils.getDefaultSavePathFor(storageManager.getAccount().name, current));
+        File parent = saveFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log_OC.e(TAG, "Unable to create parent folder " + parent.getAbsolutePath());
+        }
+        if (!tmpFile.renameTo(saveFile)) {
+            Log_OC.e(TAG, "Unable to move " + tmpFile.getAbsolutePath() + " to " + saveFile.getAbsolutePath());
+            deleteTmpFile();
+            return;
+        }
+        saveFile.setLastModified(current.getModificationTimestamp());
+
+        long syncDate = System.currentTimeMillis();
+        current.setLastSyncDateForProperties(syncDate);
+        current.setLastSyncDateForData(syncDate);
+        current.setUpdateThumbnailNeeded(true);
+        current.setModificationTimestampAtLastSyncForData(current.getModificationTimestamp());
+        if (etag != null) {
+            current.setEtag(etag);
+        }
+        current.setStoragePath(saveFile.getAbsolutePath());
+        current.setFileLength(saveFile.length());
+        storageManager.saveFile(current);
+        if (MimeTypeUtil.isMedia(current.getMimeType())) {
+            FileDataStorageManager.triggerMediaScan(current.getStoragePath(), current);
+        }
+        storageManager.saveConflict(current, null);
+    }
+
+    private void deleteTmpFile() {
+        if (tmpFile.exists() && !tmpFile.delete()) {
+            Log_OC.e(TAG, "Unable to delete " + tmpFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads the given part of the file with a ranged GET.
+     *
+     * @return number of bytes read, -1 at the end of the file
+     */
+    @VisibleForTesting
+    int readRange(long offset, byte[] data, int size) throws IOException {
+        GetMethod get = new GetMethod(url);
+        get.setRequestHeader("Range", "bytes=" + offset + "-" + (offset + size - 1));
+        try {
+            int status = client.executeMethod(get);
+            if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                client.exhaustResponse(get.getResponseBodyAsStream());
+                return -1;
+            }
+            if (status != HttpStatus.SC_PARTIAL_CONTENT) {
+                // a full response would have to be read up to the offset, the sequential download is cheaper
+                get.abort();
+                throw new IOException("Ranged read of " + file.getRemotePath() + " failed with status " + status);
+            }
+
+            InputStream input = get.getResponseBodyAsStream();
+            int total = 0;
+            int read;
+            while (total < size && (read = input.read(data, total, size - total)) != -1) {
+                total += read;
+            }
+            return total == 0 ? -1 : total;
+        } finally {
+            get.releaseConnection();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    @VisibleForTesting
+    class ProxyCallback extends ProxyFileDescriptorCallback {
+        private final RandomAccessFile reader;
+        private final HandlerThread thread;
+
+        ProxyCallback(RandomAccessFile reader, HandlerThread thread) {
+            this.reader = reader;
+            this.thread = thread;
+        }
+
+        @Override
+        public long onGetSize() {
+            return file.getFileLength();
+        }
+
+        @Override
+        public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+            try {
+                boolean cached;
+                synchronized (lock) {
+                    long waitedFor = downloaded;
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeout);
+                    while (!finished && offset + size > downloaded && offset <= downloaded + READ_AHEAD_LIMIT) {
+                        if (downloaded != waitedFor) {
+                            // download is progressing, wait again
+                            waitedFor = downloaded;
+                            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeout);
+                        }
+                        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                        if (remaining <= 0) {
+                            Log_OC.e(TAG, "Reading " + file.getRemotePath() + " at " + offset +
+                                " timed out, download is stalled");
+                            throw new ErrnoException("onRead", OsConstants.EIO);
+                        }
+                        lock.wait(remaining);
+                    }
+                    cached = offset < downloaded || finished && !failed;
+                }
+
+                if (cached) {
+                    reader.seek(offset);
+                    int read = reader.read(data, 0, size);
+                    return Math.max(read, 0);
+                }
+                return readFromRange(offset, size, data);
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Reading " + file.getRemotePath() + " at " + offset + " failed", e);
+                throw new ErrnoException("onRead", OsConstants.EIO);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ErrnoException("onRead", OsConstants.EINTR);
+            }
+        }
+
+        private int readFromRange(long offset, int size, byte[] data) throws IOException {
+            if (offset < rangeStart || offset + size > rangeStart + rangeLength) {
+                int length = Math.max(size, RANGE_SIZE);
+                if (range.length < length) {
+                    range = new byte[length];
+                }
+                int read = readRange(offset, range, length);
+                if (read == -1) {
+                    return 0;
+                }
+                rangeStart = offset;
+                rangeLength = read;
+            }
+
+            int count = (int) Math.min(size, rangeStart + rangeLength - offset);
+            System.arraycopy(range, (int) (offset - rangeStart), data, 0, count);
+            return count;
+        }
+
+        @Override
+        public void onRelease() {
+            closed = true;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Failed to close " + tmpFile.getAbsolutePath(), e);
+            }
+            thread.quitSafely();
+        }
+    }
+}
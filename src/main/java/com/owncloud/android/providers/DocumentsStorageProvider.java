@@ -57,6 +57,7 @@ import com.owncloud.android.R;
 import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.OCFileCursorMapper;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
 import com.owncloud.android.files.services.FileDownloader;
 import com.owncloud.android.lib.common.OwnCloudAccount;
@@ -83,8 +84,6 @@ import org.nextcloud.providers.cursors.RootCursor;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -100,6 +99,9 @@ public class DocumentsStorageProvider extends DocumentsProvider {
 
     private static final long CACHE_EXPIRATION = TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES);
 
+    private static final int SEARCH_RESULT_LIMIT = 100;
+    private static final long SEARCH_TIMEOUT_MS = 2000;
+
     UserAccountManager accountManager;
 
     private static final String DOCUMENTID_SEPARATOR = "/";
@@ -159,8 +161,10 @@ public class DocumentsStorageProvider extends DocumentsProvider {
 
         final FileCursor resultCursor = new FileCursor(projection);
 
-        for (OCFile file : storageManager.getFolderContent(parentFolder.getFile(), false)) {
-            resultCursor.addFile(new Document(storageManager, file));
+        for (OCFile file : storageManager.getFolderContent(parentFolder.getFile(),
+                                                           false,
+                                                           OCFileCursorMapper.DOCUMENT_PROJECTION)) {
+            resultCursor.addFile(new Document(storageManager, file), file);
         }
 
         boolean isLoading = false;
@@ -200,6 +204,19 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         OCFile ocFile = document.getFile();
         Account account = document.getAccount();
         final User user = accountManager.getUser(account.name).orElseThrow(RuntimeException::new); // should exist
+        boolean isWrite = mode.indexOf('w') != -1;
+
+        if (!ocFile.isDown() && !isWrite && !ocFile.isEncrypted()) {
+            // stream while downloading instead of waiting for the whole file
+            OwnCloudClient client = document.getClient();
+            if (client != null) {
+                try {
+                    return new DocumentStream(client, document.getStorageManager(), ocFile).open(context, executor);
+                } catch (IOException e) {
+                    Log_OC.e(TAG, "Failed to stream document with id " + documentId, e);
+                }
+            }
+        }
 
         if (!ocFile.isDown()) {
             Intent i = new Intent(getContext(), FileDownloader.class);
@@ -259,7 +276,6 @@ public class DocumentsStorageProvider extends DocumentsProvider {
 
         File file = new File(ocFile.getStoragePath());
         int accessMode = ParcelFileDescriptor.parseMode(mode);
-        boolean isWrite = mode.indexOf('w') != -1;
 
         final OCFile oldFile = ocFile;
         final OCFile newFile = ocFile;
@@ -441,8 +457,20 @@ public class DocumentsStorageProvider extends DocumentsProvider {
             return result;
         }
 
-        for (Document d : findFiles(new Document(storageManager, ROOT_PATH), query)) {
-            result.addFile(d);
+        // give up instead of blocking the file picker
+        CancellationSignal cancellationSignal = new CancellationSignal();
+        Handler handler = new Handler(Looper.getMainLooper());
+        Runnable cancel = cancellationSignal::cancel;
+        handler.postDelayed(cancel, SEARCH_TIMEOUT_MS);
+
+        try {
+            for (OCFile file : storageManager.searchFilesByName(query, SEARCH_RESULT_LIMIT, cancellationSignal)) {
+                result.addFile(new Document(storageManager, file), file);
+            }
+        } catch (android.os.OperationCanceledException e) {
+            Log_OC.w(TAG, "Search for " + query + " took longer than " + SEARCH_TIMEOUT_MS + "ms, cancelled");
+        } finally {
+            handler.removeCallbacks(cancel);
         }
 
         return result;
@@ -665,19 +693,6 @@ public class DocumentsStorageProvider extends DocumentsProvider {
         return !(cancellationSignal != null && cancellationSignal.isCanceled());
     }
 
-    private List<Document> findFiles(Document root, String query) {
-        FileDataStorageManager storageManager = root.getStorageManager();
-        List<Document> result = new ArrayList<>();
-        for (OCFile f : storageManager.getFolderContent(root.getFile(), false)) {
-            if (f.isFolder()) {
-                result.addAll(findFiles(new Document(storageManager, f), query));
-            } else if (f.getFileName().contains(query)) {
-                result.add(new Document(storageManager, f));
-            }
-        }
-        return result;
-    }
-
     private Uri toNotifyUri(Document document) {
         return DocumentsContract.buildDocumentUri(
             getContext().getString(R.string.document_provider_authority),
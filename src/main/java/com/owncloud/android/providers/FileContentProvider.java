@@ -40,6 +40,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.CancellationSignal;
 import android.text.TextUtils;
 
 import com.nextcloud.client.core.Clock;
@@ -54,12 +55,13 @@ import com.owncloud.android.lib.common.accounts.AccountUtils;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.shares.ShareType;
 import com.owncloud.android.utils.FileStorageUtils;
-import com.owncloud.android.utils.MimeType;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Inject;
 
@@ -95,6 +97,8 @@ public class FileContentProvider extends ContentProvider {
     private static final int SINGLE_PATH_SEGMENT = 1;
     public static final int ARBITRARY_DATA_TABLE_INTRODUCTION_VERSION = 20;
     public static final int MINIMUM_PATH_SEGMENTS_SIZE = 1;
+    private static final int PAGE_CACHE_SIZE_KIB = 4096;
+    private static final Map<String, String> FILE_PROJECTION_MAP = createFileProjectionMap();
 
     @Inject protected Clock clock;
     private DataBaseHelper mDbHelper;
@@ -168,43 +172,64 @@ public class FileContentProvider extends ContentProvider {
     }
 
     private int deleteDirectory(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
-        int count = 0;
+        String selection;
+        if (uri.getPathSegments().size() > MINIMUM_PATH_SEGMENTS_SIZE) {
+            selection = ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1)
+                + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : "");
+        } else if (TextUtils.isEmpty(where)) {
+            return db.delete(ProviderTableMeta.FILE_TABLE_NAME, null, null);
+        } else {
+            selection = where;
+        }
 
-        Cursor children = query(uri, null, null, null, null);
-        if (children != null) {
-            if (children.moveToFirst()) {
-                long childId;
-                boolean isDir;
-                while (!children.isAfterLast()) {
-                    childId = children.getLong(children.getColumnIndex(ProviderTableMeta._ID));
-                    isDir = MimeType.DIRECTORY.equals(children.getString(
-                        children.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)
-                    ));
-                    if (isDir) {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, childId),
-                                        null, (String[]) null);
-                    } else {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, childId),
-                                        null, (String[]) null);
-                    }
-                    children.moveToNext();
-                }
+        int count = 0;
+        try (Cursor folders = db.query(ProviderTableMeta.FILE_TABLE_NAME,
+                                       new String[]{ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_PATH},
+                                       selection,
+                                       whereArgs,
+                                       null,
+                                       null,
+                                       null)) {
+            while (folders.moveToNext()) {
+                count += deleteFolderContent(db, folders.getString(0), folders.getString(1));
             }
-            children.close();
         }
 
-        if (uri.getPathSegments().size() > MINIMUM_PATH_SEGMENTS_SIZE) {
-            count += db.delete(ProviderTableMeta.FILE_TABLE_NAME,
-                               ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1)
-                                   + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
+        count += db.delete(ProviderTableMeta.FILE_TABLE_NAME, selection, whereArgs);
+
+        return count;
+    }
+
+    /**
+     * Removes all descendants of a folder with a single statement. Descendants are selected by the range of paths
+     * starting with the folder path, which is served by the (owner, path) index and does not depend on LIKE
+     * semantics.
+     *
+     * @return amount of deleted rows
+     */
+    private int deleteFolderContent(SQLiteDatabase db, String accountName, String folderPath) {
+        if (folderPath == null || !folderPath.endsWith(OCFile.PATH_SEPARATOR)) {
+            // not a folder
+            return 0;
         }
 
+        // all paths with prefix "/a/" are greater than "/a/" and lower than "/a0", '0' being the next char after '/'
+        String upperBound = folderPath.substring(0, folderPath.length() - 1)
+            + (char) (OCFile.PATH_SEPARATOR.charAt(0) + 1);
+
+        int count = db.delete(ProviderTableMeta.FILE_TABLE_NAME,
+                              ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " +
+                                  ProviderTableMeta.FILE_PATH + ">? AND " +
+                                  ProviderTableMeta.FILE_PATH + "<?",
+                              new String[]{accountName, folderPath, upperBound});
+        Log_OC.d(TAG, "Removed " + count + " entries in folder " + folderPath);
+
         return count;
     }
 
     private int deleteSingleFile(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
         int count = 0;
-        Cursor c = query(db, uri, null, where, whereArgs, null);
+        Cursor c = query(db, uri, null, where, whereArgs, null, null);
         String remoteId = "";
         try {
             if (c != null && c.moveToFirst()) {
@@ -275,7 +300,7 @@ public class FileContentProvider extends ContentProvider {
                 String accountName = values.getAsString(ProviderTableMeta.FILE_ACCOUNT_OWNER);
                 String[] whereArgs = {remotePath, accountName};
 
-                Cursor doubleCheck = query(db, uri, projection, where, whereArgs, null);
+                Cursor doubleCheck = query(db, uri, projection, where, whereArgs, null, null);
                 // ugly patch; serious refactorization is needed to reduce work in
                 // FileDataStorageManager and bring it to FileContentProvider
                 if (doubleCheck == null || !doubleCheck.moveToFirst()) {
@@ -456,6 +481,16 @@ public class FileContentProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Same as {@link #query(Uri, String[], String, String[], String)}, but the query is aborted with an
+     * {@link android.os.OperationCanceledException} once the cancellation signal is triggered.
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
 
         // skip check for files as they need to be queried to get access via document provider
         switch (mUriMatcher.match(uri)) {
@@ -474,7 +509,7 @@ public class FileContentProvider extends ContentProvider {
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
         db.beginTransaction();
         try {
-            result = query(db, uri, projection, selection, selectionArgs, sortOrder);
+            result = query(db, uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
@@ -483,7 +518,7 @@ public class FileContentProvider extends ContentProvider {
     }
 
     private Cursor query(SQLiteDatabase db, Uri uri, String[] projectionArray, String selection, String[] selectionArgs,
-                         String sortOrder) {
+                         String sortOrder, CancellationSignal cancellationSignal) {
 
         SQLiteQueryBuilder sqlQuery = new SQLiteQueryBuilder();
 
@@ -589,19 +624,10 @@ public class FileContentProvider extends ContentProvider {
             order = sortOrder;
         }
 
-        // DB case_sensitive
-        db.execSQL("PRAGMA case_sensitive_like = true");
-
         // only file list is accessible via content provider, so only this has to be protected with projectionMap
         if ((mUriMatcher.match(uri) == ROOT_DIRECTORY || mUriMatcher.match(uri) == SINGLE_FILE ||
             mUriMatcher.match(uri) == DIRECTORY) && projectionArray != null) {
-            HashMap<String, String> projectionMap = new HashMap<>();
-
-            for (String projection : ProviderTableMeta.FILE_ALL_COLUMNS) {
-                projectionMap.put(projection, projection);
-            }
-
-            sqlQuery.setProjectionMap(projectionMap);
+            sqlQuery.setProjectionMap(FILE_PROJECTION_MAP);
         }
 
         // if both are null, let them pass to query
@@ -611,7 +637,8 @@ public class FileContentProvider extends ContentProvider {
         }
 
         sqlQuery.setStrict(true);
-        Cursor c = sqlQuery.query(db, projectionArray, selection, selectionArgs, null, null, order);
+        Cursor c = sqlQuery.query(db, projectionArray, selection, selectionArgs, null, null, order, null,
+                                  cancellationSignal);
         c.setNotificationUri(mContext.getContentResolver(), uri);
         return c;
     }
@@ -886,10 +913,87 @@ public class FileContentProvider extends ContentProvider {
                        + ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD + " INTEGER, "
                        + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " STRING, "
                        + ProviderTableMeta.FILESYSTEM_CRC32 + " STRING, "
-                       + ProviderTableMeta.FILESYSTEM_FILE_MODIFIED + " LONG );"
+                       + ProviderTableMeta.FILESYSTEM_FILE_MODIFIED + " LONG, "
+                       + ProviderTableMeta.FILESYSTEM_FILE_SIZE + " LONG );"
         );
     }
 
+    /**
+     * Creates the full text index over the file names, used to search files, and the triggers keeping it in sync with
+     * the file table. The index only stores tokens, the names are read from the file table (external content).
+     *
+     * @param db Database where the index is created.
+     */
+    private void createFileSearchTable(SQLiteDatabase db) {
+        String table = ProviderTableMeta.FILE_SEARCH_TABLE_NAME;
+        String files = ProviderTableMeta.FILE_TABLE_NAME;
+        String name = ProviderTableMeta.FILE_NAME;
+        String deleteOld = " BEGIN DELETE FROM " + table + " WHERE docid = old." + ProviderTableMeta._ID + "; END;";
+        String insertNew = " BEGIN INSERT INTO " + table + "(docid, " + name + ") VALUES (new." +
+            ProviderTableMeta._ID + ", new." + name + "); END;";
+
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + table + " USING fts4(content=\"" + files + "\", " +
+                       name + ");");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_before_update BEFORE UPDATE OF " + name + " ON " +
+                       files + deleteOld);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_before_delete BEFORE DELETE ON " + files + deleteOld);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_after_update AFTER UPDATE OF " + name + " ON " +
+                       files + insertNew);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_after_insert AFTER INSERT ON " + files + insertNew);
+    }
+
+    /**
+     * Creates the secondary indexes used by the lookups in {@link com.owncloud.android.datamodel.FileDataStorageManager},
+     * {@link com.owncloud.android.datamodel.FilesystemDataProvider} and
+     * {@link com.owncloud.android.datamodel.UploadsStorageManager}. Without them every lookup by path, parent or
+     * remote id is a full table scan.
+     *
+     * @param db Database where the indexes are created.
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        // filelist
+        createIndex(db, ProviderTableMeta.FILE_TABLE_NAME,
+                    ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_PATH);
+        // parent first, it also serves lookups of folder content by parent id only
+        createIndex(db, ProviderTableMeta.FILE_TABLE_NAME,
+                    ProviderTableMeta.FILE_PARENT, ProviderTableMeta.FILE_ACCOUNT_OWNER);
+        createIndex(db, ProviderTableMeta.FILE_TABLE_NAME,
+                    ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_REMOTE_ID);
+        createIndex(db, ProviderTableMeta.FILE_TABLE_NAME,
+                    ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_STORAGE_PATH);
+
+        // filesystem
+        createIndex(db, ProviderTableMeta.FILESYSTEM_TABLE_NAME,
+                    ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH);
+
+        // ocshares
+        createIndex(db, ProviderTableMeta.OCSHARES_TABLE_NAME,
+                    ProviderTableMeta.OCSHARES_ACCOUNT_OWNER, ProviderTableMeta.OCSHARES_PATH);
+        createIndex(db, ProviderTableMeta.OCSHARES_TABLE_NAME,
+                    ProviderTableMeta.OCSHARES_ACCOUNT_OWNER, ProviderTableMeta.OCSHARES_ID_REMOTE_SHARED);
+
+        // list_of_uploads
+        createIndex(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                    ProviderTableMeta.UPLOADS_ACCOUNT_NAME, ProviderTableMeta.UPLOADS_REMOTE_PATH);
+        createIndex(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                    ProviderTableMeta.UPLOADS_LOCAL_PATH);
+        createIndex(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                    ProviderTableMeta.UPLOADS_STATUS, ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+    }
+
+    private void createIndex(SQLiteDatabase db, String table, String... columns) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + getIndexName(table, columns) + " ON " + table
+                       + "(" + TextUtils.join(", ", columns) + ");");
+    }
+
+    /**
+     * @return name of the index over the given columns, e.g. "filelist_file_owner_path_index"
+     */
+    public static String getIndexName(String table, String... columns) {
+        return table + "_" + TextUtils.join("_", columns) + "_index";
+    }
+
     /**
      * Version 10 of database does not modify its scheme. It coincides with the upgrade of the
      * ownCloud account names structure to include in it the path to the server instance. Updating
@@ -1031,11 +1135,45 @@ public class FileContentProvider extends ContentProvider {
         }
     }
 
+    private static Map<String, String> createFileProjectionMap() {
+        Map<String, String> projectionMap = new HashMap<>();
+
+        for (String projection : ProviderTableMeta.FILE_ALL_COLUMNS) {
+            projectionMap.put(projection, projection);
+        }
+
+        return Collections.unmodifiableMap(projectionMap);
+    }
+
     class DataBaseHelper extends SQLiteOpenHelper {
         DataBaseHelper(Context context) {
             super(context, ProviderMeta.DB_NAME, null, ProviderMeta.DB_VERSION);
         }
 
+        /**
+         * Applies connection wide settings once, instead of with every statement.
+         *
+         * WAL is set with a pragma instead of {@link SQLiteDatabase#enableWriteAheadLogging()}, as the latter opens
+         * additional read-only connections which would not get case sensitive LIKE applied.
+         */
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            super.onConfigure(db);
+
+            // DB case_sensitive
+            db.execSQL("PRAGMA case_sensitive_like = true");
+            db.execSQL("PRAGMA cache_size = -" + PAGE_CACHE_SIZE_KIB);
+
+            if (!db.isReadOnly()) {
+                // journal_mode returns the resulting mode, so it has to be run as query
+                try (Cursor cursor = db.rawQuery("PRAGMA journal_mode = WAL", null)) {
+                    if (cursor.moveToFirst()) {
+                        Log_OC.d(SQL, "Journal mode: " + cursor.getString(0));
+                    }
+                }
+            }
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
             // files table
@@ -1065,6 +1203,12 @@ public class FileContentProvider extends ContentProvider {
 
             // Create filesystem table
             createFileSystemTable(db);
+
+            // Create indexes for the most frequent lookups
+            createIndexes(db);
+
+            // Create full text index over file names
+            createFileSearchTable(db);
         }
 
         @Override
@@ -2271,6 +2415,78 @@ public class FileContentProvider extends ContentProvider {
             if (!upgraded) {
                 Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
             }
+
+            if (oldVersion < 60 && newVersion >= 60) {
+                Log_OC.i(SQL, "Entering in the #60 add indexes to file, filesystem, share and upload tables");
+                db.beginTransaction();
+                try {
+                    createIndexes(db);
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 61 && newVersion >= 61) {
+                Log_OC.i(SQL, "Entering in the #61 add filesystem.file_size");
+                db.beginTransaction();
+                try {
+                    db.execSQL(ALTER_TABLE + ProviderTableMeta.FILESYSTEM_TABLE_NAME +
+                                   ADD_COLUMN + ProviderTableMeta.FILESYSTEM_FILE_SIZE + " LONG ");
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 62 && newVersion >= 62) {
+                Log_OC.i(SQL, "Entering in the #62 add upload status index");
+                db.beginTransaction();
+                try {
+                    createIndex(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                                ProviderTableMeta.UPLOADS_STATUS, ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 63 && newVersion >= 63) {
+                Log_OC.i(SQL, "Entering in the #63 add full text index over file names");
+                db.beginTransaction();
+                try {
+                    createFileSearchTable(db);
+                    db.execSQL("INSERT INTO " + ProviderTableMeta.FILE_SEARCH_TABLE_NAME + "(" +
+                                   ProviderTableMeta.FILE_SEARCH_TABLE_NAME + ") VALUES ('rebuild');");
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
         }
     }
 }
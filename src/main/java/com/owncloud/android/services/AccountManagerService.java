@@ -54,4 +54,12 @@ public class AccountManagerService extends Service {
         return super.onUnbind(intent);
     }
 
+    @Override
+    public void onDestroy() {
+        if (mBinder != null) {
+            mBinder.release();
+        }
+        super.onDestroy();
+    }
+
 }
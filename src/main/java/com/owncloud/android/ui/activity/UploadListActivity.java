@@ -168,6 +168,7 @@ public class UploadListActivity extends FileActivity {
         binding.list.addItemDecoration(new MediaGridItemDecoration(spacing));
         binding.list.setLayoutManager(lm);
         binding.list.setAdapter(uploadListAdapter);
+        uploadsStorageManager.addObserver(uploadListAdapter);
 
         ThemeUtils.colorSwipeRefreshLayout(this, swipeListRefreshLayout);
         swipeListRefreshLayout.setOnRefreshListener(this::refresh);
@@ -187,7 +188,7 @@ public class UploadListActivity extends FileActivity {
     }
 
     private void refresh() {
-        backgroundJobManager.startImmediateFilesSyncJob(false, true);
+        backgroundJobManager.startImmediateFilesSyncJob(false, true, false);
 
         // retry failed uploads
         new Thread(() -> FileUploader.retryFailedUploads(
@@ -240,6 +241,14 @@ public class UploadListActivity extends FileActivity {
         Log_OC.v(TAG, "onPause() end");
     }
 
+    @Override
+    protected void onDestroy() {
+        if (uploadListAdapter != null) {
+            uploadsStorageManager.deleteObserver(uploadListAdapter);
+        }
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         MenuInflater inflater = getMenuInflater();
@@ -347,7 +356,8 @@ public class UploadListActivity extends FileActivity {
     }
 
     /**
-     * Once the file upload has changed its status -> update uploads list view
+     * Once the file upload has started or finished -> update its item in the uploads list view. Changed uploads are
+     * reloaded by the adapter itself, as observer of {@link UploadsStorageManager}.
      */
     private class UploadMessagesReceiver extends BroadcastReceiver {
         /**
@@ -356,7 +366,11 @@ public class UploadListActivity extends FileActivity {
         @Override
         public void onReceive(Context context, Intent intent) {
             try {
-                uploadListAdapter.loadUploadItemsFromDb();
+                String accountName = intent.getStringExtra(FileUploader.ACCOUNT_NAME);
+                String remotePath = intent.getStringExtra(FileUploader.EXTRA_REMOTE_PATH);
+                if (accountName != null && remotePath != null) {
+                    uploadListAdapter.notifyUploadChanged(accountName, remotePath);
+                }
             } finally {
                 if (intent != null) {
                     removeStickyBroadcast(intent);
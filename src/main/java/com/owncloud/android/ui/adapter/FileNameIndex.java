@@ -0,0 +1,135 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.utils.FileSortOrder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Lower case names of the files of one folder listing, used by the search filter of {@link OCFileListAdapter}.
+ *
+ * The index is built once per listing: files outside of the folder, duplicates and, if wanted, hidden files are
+ * dropped and the rest is sorted. Searching only checks the prepared names, and narrowing a query only checks the
+ * matches of the previous one.
+ */
+class FileNameIndex {
+    private final String directoryPath;
+    private final boolean showHiddenFiles;
+    private final FileSortOrder sortOrder;
+    private final Locale locale;
+    private final List<OCFile> files;
+    private final String[] names;
+
+    /**
+     * Matches of one query, in order of the index.
+     */
+    static class Matches {
+        private final FileNameIndex index;
+        private final String query;
+        private final int[] positions;
+
+        private Matches(FileNameIndex index, String query, int[] positions) {
+            this.index = index;
+            this.query = query;
+            this.positions = positions;
+        }
+
+        List<OCFile> getFiles() {
+            List<OCFile> result = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                result.add(index.files.get(position));
+            }
+            return result;
+        }
+    }
+
+    FileNameIndex(List<OCFile> allFiles, String directoryPath, boolean showHiddenFiles, FileSortOrder sortOrder) {
+        this.directoryPath = directoryPath;
+        this.showHiddenFiles = showHiddenFiles;
+        this.sortOrder = sortOrder;
+        locale = Locale.getDefault();
+
+        List<OCFile> folderFiles = new ArrayList<>();
+        Set<OCFile> added = new HashSet<>();
+        for (OCFile file : allFiles) {
+            if ((showHiddenFiles || !file.isHidden()) &&
+                directoryPath.equals(file.getParentRemotePath()) &&
+                added.add(file)) {
+                folderFiles.add(file);
+            }
+        }
+        files = sortOrder.sortCloudFiles(folderFiles);
+
+        names = new String[files.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = files.get(i).getFileName().toLowerCase(locale);
+        }
+    }
+
+    /**
+     * @return true if the index is still valid for the given listing settings
+     */
+    boolean isValidFor(String directoryPath, boolean showHiddenFiles, FileSortOrder sortOrder) {
+        return this.directoryPath.equals(directoryPath) &&
+            this.showHiddenFiles == showHiddenFiles &&
+            this.sortOrder == sortOrder &&
+            locale.equals(Locale.getDefault());
+    }
+
+    /**
+     * Finds all files containing the query in their name, ignoring case.
+     *
+     * @param query    text to search for
+     * @param previous matches of the previous query, if any; only these are checked if the new query contains the
+     *                 previous one
+     * @return matching files
+     */
+    Matches search(String query, @Nullable Matches previous) {
+        String normalizedQuery = query.toLowerCase(locale);
+
+        int[] candidates = null;
+        if (previous != null && previous.index == this && normalizedQuery.contains(previous.query)) {
+            candidates = previous.positions;
+        }
+
+        int count = candidates == null ? names.length : candidates.length;
+        int[] positions = new int[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int position = candidates == null ? i : candidates[i];
+            if (names[position].contains(normalizedQuery)) {
+                positions[found++] = position;
+            }
+        }
+
+        int[] result = new int[found];
+        System.arraycopy(positions, 0, result, 0, found);
+        return new Matches(this, normalizedQuery, result);
+    }
+}
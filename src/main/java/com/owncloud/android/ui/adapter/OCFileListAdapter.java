@@ -24,9 +24,9 @@
 
 package com.owncloud.android.ui.adapter;
 
+import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.app.Activity;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -52,6 +52,8 @@ import com.bumptech.glide.request.target.BitmapImageViewTarget;
 import com.elyeproj.loaderviewlibrary.LoaderImageView;
 import com.nextcloud.client.account.User;
 import com.nextcloud.client.account.UserAccountManager;
+import com.nextcloud.client.core.AsyncRunner;
+import com.nextcloud.client.core.Cancellable;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.R;
@@ -59,7 +61,6 @@ import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
 import com.owncloud.android.datamodel.VirtualFolderType;
-import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.files.services.FileDownloader;
 import com.owncloud.android.files.services.FileUploader;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
@@ -71,7 +72,6 @@ import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
 import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.operations.RefreshFolderOperation;
-import com.owncloud.android.operations.RemoteOperationFailedException;
 import com.owncloud.android.services.OperationsService;
 import com.owncloud.android.ui.TextDrawable;
 import com.owncloud.android.ui.activity.ComponentsGetter;
@@ -88,20 +88,26 @@ import com.owncloud.android.utils.ThemeUtils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.res.ResourcesCompat;
 import androidx.core.graphics.drawable.RoundedBitmapDrawable;
 import androidx.core.graphics.drawable.RoundedBitmapDrawableFactory;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import kotlin.Unit;
 
 /**
  * This Adapter populates a RecyclerView with all files and folders in a Nextcloud instance.
@@ -128,6 +134,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     private OCFileListFragmentInterface ocFileListFragmentInterface;
 
     private FilesFilter mFilesFilter;
+    private volatile FileNameIndex fileNameIndex;
     private OCFile currentDirectory;
     private static final String TAG = OCFileListAdapter.class.getSimpleName();
 
@@ -141,6 +148,35 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     private boolean showShareAvatar = false;
     private OCFile highlightedItem;
 
+    private final AsyncRunner asyncRunner;
+    private Cancellable pendingLoad;
+    private Cancellable pendingSort;
+    /**
+     * increased whenever a load is cancelled, results of older loads are dropped
+     */
+    private int loadGeneration;
+
+    private static final int FOLDER_REFRESH_THREADS = 2;
+    private static final ThreadPoolExecutor folderRefreshExecutor = new ThreadPoolExecutor(
+        FOLDER_REFRESH_THREADS, FOLDER_REFRESH_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private static final Set<String> pendingFolderRefreshes = Collections.synchronizedSet(new HashSet<>());
+
+    static {
+        folderRefreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final String PAYLOAD_FAVORITE = "favorite";
+    private static final String PAYLOAD_COMMENTS = "comments";
+    private static final String PAYLOAD_ENCRYPTION = "encryption";
+    private static final String PAYLOAD_TRANSFER_STATE = "transferState";
+
+    /**
+     * positions of the shown files by remote id, valid as long as {@link #positionsFiles} is shown
+     */
+    private final Map<String, Integer> positionsByRemoteId = new HashMap<>();
+    private List<OCFile> positionsFiles;
+    private int filesVersion;
+
     public OCFileListAdapter(
         Activity activity,
         User user,
@@ -149,7 +185,8 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         ComponentsGetter transferServiceGetter,
         OCFileListFragmentInterface ocFileListFragmentInterface,
         boolean argHideItemOptions,
-        boolean gridView
+        boolean gridView,
+        AsyncRunner asyncRunner
     ) {
         this.ocFileListFragmentInterface = ocFileListFragmentInterface;
         this.activity = activity;
@@ -158,6 +195,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         this.user = user;
         hideItemOptions = argHideItemOptions;
         this.gridView = gridView;
+        this.asyncRunner = asyncRunner;
         checkedFiles = new HashSet<>();
 
         this.transferServiceGetter = transferServiceGetter;
@@ -215,65 +253,147 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     }
 
     public void setFavoriteAttributeForItemID(String fileId, boolean favorite) {
-        for (OCFile file : mFiles) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setFavorite(favorite);
-                break;
+        new Handler(Looper.getMainLooper()).post(() -> {
+            OCFile file = findFile(fileId);
+            if (file == null) {
+                return;
             }
-        }
-
-        for (OCFile file : mFilesAll) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setFavorite(favorite);
-                break;
+            file.setFavorite(favorite);
+            // order of favorites may have changed
+            fileNameIndex = null;
+
+            int position = getPosition(fileId);
+            if (position >= 0) {
+                notifyFileChanged(position, PAYLOAD_FAVORITE);
+                sortShownFiles();
             }
-        }
+        });
+    }
 
-        FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
-        mFiles = sortOrder.sortCloudFiles(mFiles);
+    public void refreshCommentsCount(String fileId) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            OCFile file = findFile(fileId);
+            if (file == null) {
+                return;
+            }
+            file.setUnreadCommentsCount(0);
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+            int position = getPosition(fileId);
+            if (position >= 0) {
+                notifyFileChanged(position, PAYLOAD_COMMENTS);
+            }
+        });
     }
 
-    public void refreshCommentsCount(String fileId) {
-        for (OCFile file : mFiles) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setUnreadCommentsCount(0);
-                break;
+    public void setEncryptionAttributeForItemID(String fileId, boolean encrypted) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            OCFile file = findFile(fileId);
+            if (file == null) {
+                return;
             }
-        }
+            file.setEncrypted(encrypted);
 
-        for (OCFile file : mFilesAll) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setUnreadCommentsCount(0);
-                break;
+            int position = getPosition(fileId);
+            if (position >= 0) {
+                notifyFileChanged(position, PAYLOAD_ENCRYPTION);
+
+                final FileDataStorageManager storageManager = mStorageManager;
+                asyncRunner.postQuickTask(() -> {
+                    storageManager.saveFile(file);
+                    return Unit.INSTANCE;
+                }, null, null);
+            }
+        });
+    }
+
+    /**
+     * Looks up a shown file by its remote id, must be called on main thread.
+     *
+     * @return position in the shown files, without header, or -1 if not shown
+     */
+    private int getPosition(String remoteId) {
+        if (positionsFiles != mFiles) {
+            positionsByRemoteId.clear();
+            for (int i = 0; i < mFiles.size(); i++) {
+                positionsByRemoteId.put(mFiles.get(i).getRemoteId(), i);
             }
+            positionsFiles = mFiles;
         }
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+        Integer position = positionsByRemoteId.get(remoteId);
+        return position == null ? -1 : position;
     }
 
-    public void setEncryptionAttributeForItemID(String fileId, boolean encrypted) {
-        int filesSize = mFiles.size();
-        for (int i = 0; i < filesSize; i++) {
-            if (mFiles.get(i).getRemoteId().equals(fileId)) {
-                OCFile file = mFiles.get(i);
-                file.setEncrypted(encrypted);
-                mStorageManager.saveFile(file);
+    /**
+     * Must be called whenever the shown files are replaced or reordered.
+     */
+    private void invalidatePositions() {
+        positionsFiles = null;
+        filesVersion++;
+    }
 
-                break;
-            }
+    /**
+     * Finds a file of the current listing, shown or filtered out by search.
+     */
+    @Nullable
+    private OCFile findFile(String remoteId) {
+        if (remoteId == null) {
+            return null;
         }
 
-        filesSize = mFilesAll.size();
-        for (int i = 0; i < filesSize; i++) {
-            if (mFilesAll.get(i).getRemoteId().equals(fileId)) {
-                mFilesAll.get(i).setEncrypted(encrypted);
-                break;
+        int position = getPosition(remoteId);
+        if (position >= 0) {
+            return mFiles.get(position);
+        }
+
+        for (OCFile file : mFilesAll) {
+            if (remoteId.equals(file.getRemoteId())) {
+                return file;
             }
         }
+        return null;
+    }
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+    private void notifyFileChanged(int position, Object payload) {
+        notifyItemChanged(shouldShowHeader() ? position + 1 : position, payload);
+    }
+
+    /**
+     * Sorts the shown files again in background and moves the changed ones.
+     */
+    private void sortShownFiles() {
+        if (pendingSort != null) {
+            // sorting the current files covers the changes of the pending one
+            pendingSort.cancel();
+        }
+
+        final List<OCFile> files = mFiles;
+        final List<OCFile> oldFiles = new ArrayList<>(files);
+        final int version = filesVersion;
+        final FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
+
+        pendingSort = asyncRunner.postQuickTask(
+            () -> {
+                List<OCFile> sorted = sortOrder.sortCloudFiles(new ArrayList<>(oldFiles));
+                DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new OCFileListDiffCallback(oldFiles, sorted));
+                return new FolderContent(sorted, oldFiles, diff, null);
+            },
+            content -> {
+                pendingSort = null;
+                // files were replaced meanwhile, they are sorted already
+                if (files == mFiles && version == filesVersion) {
+                    mFiles = content.files;
+                    invalidatePositions();
+                    dispatchUpdates(content.diff, shouldShowHeader() ? 1 : 0);
+                }
+                return Unit.INSTANCE;
+            },
+            error -> {
+                pendingSort = null;
+                Log_OC.e(TAG, "Error sorting files", error);
+                return Unit.INSTANCE;
+            }
+        );
     }
 
     @Override
@@ -331,6 +451,41 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder,
+                                 int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !(holder instanceof OCFileListGridImageViewHolder)) {
+            super.onBindViewHolder(holder, position, payloads);
+            return;
+        }
+
+        OCFileListGridImageViewHolder gridViewHolder = (OCFileListGridImageViewHolder) holder;
+        OCFile file = getItem(position);
+
+        for (Object payload : payloads) {
+            if (PAYLOAD_FAVORITE.equals(payload)) {
+                gridViewHolder.favorite.setVisibility(file.isFavorite() ? View.VISIBLE : View.GONE);
+            } else if (PAYLOAD_COMMENTS.equals(payload)) {
+                bindUnreadComments(gridViewHolder, file);
+            } else if (PAYLOAD_ENCRYPTION.equals(payload)) {
+                setThumbnail(file,
+                             gridViewHolder.thumbnail,
+                             user,
+                             mStorageManager,
+                             asyncTasks,
+                             gridView,
+                             activity,
+                             gridViewHolder.shimmerThumbnail, preferences);
+            } else if (PAYLOAD_TRANSFER_STATE.equals(payload)) {
+                bindLocalFileIndicator(gridViewHolder, file);
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (holder instanceof OCFileListFooterViewHolder) {
@@ -384,14 +539,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                                                                      ocFileListFragmentInterface.onLongItemClicked(file));
             }
 
-            // unread comments
-            if (file.getUnreadCommentsCount() > 0) {
-                gridViewHolder.unreadComments.setVisibility(View.VISIBLE);
-                gridViewHolder.unreadComments.setOnClickListener(view -> ocFileListFragmentInterface
-                    .showActivityDetailView(file));
-            } else {
-                gridViewHolder.unreadComments.setVisibility(View.GONE);
-            }
+            bindUnreadComments(gridViewHolder, file);
 
             if (holder instanceof OCFileListItemViewHolder) {
                 OCFileListItemViewHolder itemViewHolder = (OCFileListItemViewHolder) holder;
@@ -528,35 +676,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                 }
             }
 
-            gridViewHolder.localFileIndicator.setVisibility(View.INVISIBLE);   // default first
-
-            OperationsService.OperationsServiceBinder operationsServiceBinder = transferServiceGetter.getOperationsServiceBinder();
-            FileDownloader.FileDownloaderBinder fileDownloaderBinder = transferServiceGetter.getFileDownloaderBinder();
-            FileUploader.FileUploaderBinder fileUploaderBinder = transferServiceGetter.getFileUploaderBinder();
-            if (operationsServiceBinder != null && operationsServiceBinder.isSynchronizing(user, file)) {
-                //synchronizing
-                gridViewHolder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
-                gridViewHolder.localFileIndicator.setVisibility(View.VISIBLE);
-
-            } else if (fileDownloaderBinder != null && fileDownloaderBinder.isDownloading(user, file)) {
-                // downloading
-                gridViewHolder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
-                gridViewHolder.localFileIndicator.setVisibility(View.VISIBLE);
-
-            } else if (fileUploaderBinder != null && fileUploaderBinder.isUploading(user, file)) {
-                //uploading
-                gridViewHolder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
-                gridViewHolder.localFileIndicator.setVisibility(View.VISIBLE);
-
-            } else if (file.getEtagInConflict() != null) {
-                // conflict
-                gridViewHolder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing_error);
-                gridViewHolder.localFileIndicator.setVisibility(View.VISIBLE);
-
-            } else if (file.isDown()) {
-                gridViewHolder.localFileIndicator.setImageResource(R.drawable.ic_synced);
-                gridViewHolder.localFileIndicator.setVisibility(View.VISIBLE);
-            }
+            bindLocalFileIndicator(gridViewHolder, file);
 
             gridViewHolder.favorite.setVisibility(file.isFavorite() ? View.VISIBLE : View.GONE);
 
@@ -714,8 +834,9 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
                             thumbnailView.setImageDrawable(asyncDrawable);
                             asyncTasks.add(task);
-                            task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file,
-                                                                                                  file.getRemoteId()));
+                            ThumbnailsCacheManager.executeThumbnailTask(
+                                task,
+                                new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
                         } catch (IllegalArgumentException e) {
                             Log_OC.d(TAG, "ThumbnailGenerationTask : " + e.getMessage());
                         }
@@ -828,6 +949,49 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return output;
     }
 
+    private void bindUnreadComments(OCFileListGridImageViewHolder holder, OCFile file) {
+        if (file.getUnreadCommentsCount() > 0) {
+            holder.unreadComments.setVisibility(View.VISIBLE);
+            holder.unreadComments.setOnClickListener(view -> ocFileListFragmentInterface
+                .showActivityDetailView(file));
+        } else {
+            holder.unreadComments.setVisibility(View.GONE);
+        }
+    }
+
+    private void bindLocalFileIndicator(OCFileListGridImageViewHolder holder, OCFile file) {
+        holder.localFileIndicator.setVisibility(View.INVISIBLE);   // default first
+
+        OperationsService.OperationsServiceBinder operationsServiceBinder =
+            transferServiceGetter.getOperationsServiceBinder();
+        FileDownloader.FileDownloaderBinder fileDownloaderBinder = transferServiceGetter.getFileDownloaderBinder();
+        FileUploader.FileUploaderBinder fileUploaderBinder = transferServiceGetter.getFileUploaderBinder();
+        if (operationsServiceBinder != null && operationsServiceBinder.isSynchronizing(user, file)) {
+            //synchronizing
+            holder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
+            holder.localFileIndicator.setVisibility(View.VISIBLE);
+
+        } else if (fileDownloaderBinder != null && fileDownloaderBinder.isDownloading(user, file)) {
+            // downloading
+            holder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
+            holder.localFileIndicator.setVisibility(View.VISIBLE);
+
+        } else if (fileUploaderBinder != null && fileUploaderBinder.isUploading(user, file)) {
+            //uploading
+            holder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing);
+            holder.localFileIndicator.setVisibility(View.VISIBLE);
+
+        } else if (file.getEtagInConflict() != null) {
+            // conflict
+            holder.localFileIndicator.setImageResource(R.drawable.ic_synchronizing_error);
+            holder.localFileIndicator.setVisibility(View.VISIBLE);
+
+        } else if (file.isDown()) {
+            holder.localFileIndicator.setImageResource(R.drawable.ic_synced);
+            holder.localFileIndicator.setVisibility(View.VISIBLE);
+        }
+    }
+
     public OCFile getItem(int position) {
         int newPosition = position;
 
@@ -838,6 +1002,37 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return mFiles.get(newPosition);
     }
 
+    /**
+     * @return file shown at the given adapter position, null for header, footer and positions out of range
+     */
+    @Nullable
+    public OCFile getFileAtPosition(int position) {
+        int index = shouldShowHeader() ? position - 1 : position;
+
+        if (index < 0 || index >= mFiles.size()) {
+            return null;
+        }
+        return mFiles.get(index);
+    }
+
+    /**
+     * Starts loading the thumbnail of a file into the cache before its row is bound.
+     *
+     * @param download false to only use local files and caches
+     * @return started task, null if the file has no thumbnail or is not shown by this adapter
+     */
+    @Nullable
+    public ThumbnailsCacheManager.ThumbnailGenerationTask prefetchThumbnail(OCFile file, boolean download) {
+        if (mStorageManager == null || file.isFolder() || file.getRemoteId() == null || !file.isPreviewAvailable()) {
+            return null;
+        }
+
+        ThumbnailsCacheManager.ThumbnailGenerationTask task =
+            new ThumbnailsCacheManager.ThumbnailGenerationTask(mStorageManager, user.toPlatformAccount(), download);
+        ThumbnailsCacheManager.prefetchThumbnail(task, file);
+        return task;
+    }
+
     public boolean shouldShowHeader() {
         if (currentDirectory == null) {
             return false;
@@ -916,44 +1111,211 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         OCFile directory,
         FileDataStorageManager updatedStorageManager,
         boolean onlyOnDevice, String limitToMimeType
+    ) {
+        swapDirectory(account, directory, updatedStorageManager, onlyOnDevice, limitToMimeType, null);
+    }
+
+    /**
+     * Change the adapted directory for a new one. The content is loaded, filtered and sorted in background and compared
+     * to the current content, so only changed items are updated. A load still running is cancelled.
+     *
+     * @param directory             New folder to adapt. Can be NULL, meaning "no content to adapt".
+     * @param updatedStorageManager Optional updated storage manager; used to replace
+     * @param limitToMimeType       show only files of this mimeType
+     * @param onSwapped             called on main thread once the new content is shown
+     */
+    public void swapDirectory(
+        User account,
+        OCFile directory,
+        FileDataStorageManager updatedStorageManager,
+        boolean onlyOnDevice,
+        String limitToMimeType,
+        @Nullable Runnable onSwapped
     ) {
         this.onlyOnDevice = onlyOnDevice;
+        cancelLoading();
 
         if (updatedStorageManager != null && !updatedStorageManager.equals(mStorageManager)) {
             mStorageManager = updatedStorageManager;
             showShareAvatar = mStorageManager.getCapability(account.getAccountName()).getVersion().isShareesOnDavSupported();
             this.user = account;
         }
-        if (mStorageManager != null) {
-            mFiles = mStorageManager.getFolderContent(directory, onlyOnDevice);
 
-            if (!preferences.isShowHiddenFilesEnabled()) {
-                mFiles = filterHiddenFiles(mFiles);
+        if (mStorageManager == null) {
+            mFiles.clear();
+            updateAllFiles(null);
+            notifyDataSetChanged();
+
+            if (onSwapped != null) {
+                onSwapped.run();
             }
-            if (!limitToMimeType.isEmpty()) {
-                mFiles = filterByMimeType(mFiles, limitToMimeType);
+            return;
+        }
+
+        final FileDataStorageManager storageManager = mStorageManager;
+        final boolean showHiddenFiles = preferences.isShowHiddenFilesEnabled();
+        final FileSortOrder sortOrder = preferences.getSortOrderByFolder(directory);
+        final List<OCFile> oldFiles = new ArrayList<>(mFiles);
+        final int generation = loadGeneration;
+
+        pendingLoad = asyncRunner.postQuickTask(
+            () -> {
+                List<OCFile> files = storageManager.getFolderContent(directory, onlyOnDevice);
+
+                if (!showHiddenFiles) {
+                    files = filterHiddenFiles(files);
+                }
+                if (!limitToMimeType.isEmpty()) {
+                    files = filterByMimeType(files, limitToMimeType);
+                }
+                files = sortOrder.sortCloudFiles(files);
+
+                FileNameIndex index = null;
+                if (directory != null) {
+                    index = new FileNameIndex(files, directory.getRemotePath(), showHiddenFiles, sortOrder);
+                }
+
+                DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new OCFileListDiffCallback(oldFiles, files));
+                return new FolderContent(files, oldFiles, diff, index);
+            },
+            content -> {
+                if (generation != loadGeneration) {
+                    // cancelled while finishing, e.g. replaced by search results
+                    return Unit.INSTANCE;
+                }
+                pendingLoad = null;
+                showDirectory(directory, content);
+
+                if (onSwapped != null) {
+                    onSwapped.run();
+                }
+                return Unit.INSTANCE;
+            },
+            error -> {
+                if (generation == loadGeneration) {
+                    pendingLoad = null;
+                }
+                Log_OC.e(TAG, "Error loading content of " + directory, error);
+                return Unit.INSTANCE;
             }
-            FileSortOrder sortOrder = preferences.getSortOrderByFolder(directory);
-            mFiles = sortOrder.sortCloudFiles(mFiles);
-            mFilesAll.clear();
-            mFilesAll.addAll(mFiles);
+        );
+    }
 
-            currentDirectory = directory;
-        } else {
-            mFiles.clear();
-            mFilesAll.clear();
+    /**
+     * Cancels loading a directory, see {@link #swapDirectory(User, OCFile, FileDataStorageManager, boolean, String,
+     * Runnable)}, and sorting after a change of favorites. Results of cancelled loads are not shown anymore.
+     */
+    public void cancelLoading() {
+        loadGeneration++;
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
+        }
+        if (pendingSort != null) {
+            pendingSort.cancel();
+            pendingSort = null;
         }
+    }
 
-        notifyDataSetChanged();
+    private void showDirectory(OCFile directory, FolderContent content) {
+        boolean headerShown = shouldShowHeader();
+        boolean sameDirectory = directory != null && directory.equals(currentDirectory);
+        currentDirectory = directory;
+
+        // the content may have been changed since the load was started, e.g. by search
+        if (!content.oldFiles.equals(mFiles) || headerShown != shouldShowHeader()) {
+            mFiles = content.files;
+            updateAllFiles(content.index);
+            notifyDataSetChanged();
+            return;
+        }
+
+        mFiles = content.files;
+        updateAllFiles(content.index);
+
+        final int offset = headerShown ? 1 : 0;
+        dispatchUpdates(content.diff, offset);
+
+        if (sameDirectory) {
+            // transfer state of the files is not part of the content, refresh it on shown items
+            notifyItemRangeChanged(offset, mFiles.size(), PAYLOAD_TRANSFER_STATE);
+        }
+        if (headerShown) {
+            notifyItemChanged(0);
+        }
+        // footer with number of files and folders
+        notifyItemChanged(mFiles.size() + offset);
+    }
+
+    /**
+     * Notifies the changes of the shown files.
+     *
+     * @param offset position of the first file, 1 if the header is shown
+     */
+    private void dispatchUpdates(DiffUtil.DiffResult diff, final int offset) {
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position + offset, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position + offset, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition + offset, toPosition + offset);
+            }
+
+            @Override
+            public void onChanged(int position, int count, @Nullable Object payload) {
+                notifyItemRangeChanged(position + offset, count, payload);
+            }
+        });
     }
 
+    /**
+     * Content of a directory, ready to be shown
+     */
+    private static class FolderContent {
+        private final List<OCFile> files;
+        private final List<OCFile> oldFiles;
+        private final DiffUtil.DiffResult diff;
+        private final FileNameIndex index;
+
+        private FolderContent(List<OCFile> files,
+                              List<OCFile> oldFiles,
+                              DiffUtil.DiffResult diff,
+                              @Nullable FileNameIndex index) {
+            this.files = files;
+            this.oldFiles = oldFiles;
+            this.diff = diff;
+            this.index = index;
+        }
+    }
 
+    /**
+     * Makes the shown files the base of the search filter.
+     *
+     * @param index name index of the files, if already built
+     */
+    private void updateAllFiles(@Nullable FileNameIndex index) {
+        // replaced instead of modified, the filter reads it from its own thread
+        mFilesAll = new ArrayList<>(mFiles);
+        fileNameIndex = index;
+        invalidatePositions();
+    }
 
     public void setData(List<Object> objects,
                         ExtendedListFragment.SearchType searchType,
                         FileDataStorageManager storageManager,
                         @Nullable OCFile folder,
                         boolean clear) {
+        // search results replace the shown folder, its pending load must not overwrite them
+        cancelLoading();
+
         if (storageManager != null && mStorageManager == null) {
             mStorageManager = storageManager;
             showShareAvatar = mStorageManager.getCapability(user.getAccountName()).getVersion().isShareesOnDavSupported();
@@ -1003,8 +1365,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             mFiles = FileStorageUtils.sortOcFolderDescDateModifiedWithoutFavoritesFirst(mFiles);
         }
 
-        mFilesAll.clear();
-        mFilesAll.addAll(mFiles);
+        updateAllFiles(null);
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
@@ -1081,60 +1442,71 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                 break;
         }
 
-        List<ContentValues> contentValues = new ArrayList<>();
-
+        List<OCFile> files = new ArrayList<>(objects.size());
         for (Object remoteFile : objects) {
             OCFile ocFile = FileStorageUtils.fillOCFile((RemoteFile) remoteFile);
             FileStorageUtils.searchForLocalFileInDefaultPath(ocFile, user.toPlatformAccount());
+            files.add(ocFile);
+        }
 
-            try {
-                if (ExtendedListFragment.SearchType.PHOTO_SEARCH == searchType) {
-                    mStorageManager.saveFile(ocFile);
-                } else {
-
-                    ocFile = mStorageManager.saveFileWithParent(ocFile, activity);
-
-                    // also sync folder content
-                    if (ocFile.isFolder()) {
-                        long currentSyncTime = System.currentTimeMillis();
-                        RemoteOperation refreshFolderOperation = new RefreshFolderOperation(ocFile,
-                                                                                            currentSyncTime,
-                                                                                            true,
-                                                                                            false,
-                                                                                            mStorageManager,
-                                                                                            user.toPlatformAccount(),
-                                                                                            activity);
-                        refreshFolderOperation.execute(user.toPlatformAccount(), activity);
-                    }
-                }
+        boolean withParents = ExtendedListFragment.SearchType.PHOTO_SEARCH != searchType;
+        List<OCFile> savedFiles = mStorageManager.saveSearchResults(files, type, withParents, activity);
 
-                if (!onlyImages || MimeTypeUtil.isImage(ocFile)) {
-                    mFiles.add(ocFile);
-                }
-
-                ContentValues cv = new ContentValues();
-                cv.put(ProviderMeta.ProviderTableMeta.VIRTUAL_TYPE, type.toString());
-                cv.put(ProviderMeta.ProviderTableMeta.VIRTUAL_OCFILE_ID, ocFile.getFileId());
+        List<OCFile> folders = new ArrayList<>();
+        for (OCFile ocFile : savedFiles) {
+            if (!onlyImages || MimeTypeUtil.isImage(ocFile)) {
+                mFiles.add(ocFile);
+            }
 
-                contentValues.add(cv);
-            } catch (RemoteOperationFailedException e) {
-                Log_OC.e(TAG, "Error saving file with parent" + e.getMessage(), e);
+            // also sync folder content
+            if (withParents && ocFile.isFolder()) {
+                folders.add(ocFile);
             }
         }
+        refreshFolders(folders);
 
         preferences.setPhotoSearchTimestamp(System.currentTimeMillis());
-        mStorageManager.saveVirtuals(contentValues);
+    }
+
+    /**
+     * Refreshes the content of the given folders in background, at most {@link #FOLDER_REFRESH_THREADS} at a time.
+     * Folders which are still waiting for their refresh are not queued again.
+     */
+    private void refreshFolders(List<OCFile> folders) {
+        final Account account = user.toPlatformAccount();
+        final Context context = activity.getApplicationContext();
+        final FileDataStorageManager storageManager = mStorageManager;
+
+        for (OCFile folder : folders) {
+            final String key = account.name + folder.getRemotePath();
+            if (!pendingFolderRefreshes.add(key)) {
+                continue;
+            }
+
+            folderRefreshExecutor.execute(() -> {
+                pendingFolderRefreshes.remove(key);
+
+                RemoteOperation refreshFolderOperation = new RefreshFolderOperation(folder,
+                                                                                    System.currentTimeMillis(),
+                                                                                    true,
+                                                                                    false,
+                                                                                    storageManager,
+                                                                                    account,
+                                                                                    context);
+                refreshFolderOperation.execute(account, context);
+            });
+        }
     }
 
     public void showVirtuals(VirtualFolderType type, boolean onlyImages, FileDataStorageManager storageManager) {
+        cancelLoading();
         mFiles = storageManager.getVirtualFolderContent(type, onlyImages);
 
         if (VirtualFolderType.PHOTOS == type) {
             mFiles = FileStorageUtils.sortOcFolderDescDateModifiedWithoutFavoritesFirst(mFiles);
         }
 
-        mFilesAll.clear();
-        mFilesAll.addAll(mFiles);
+        updateAllFiles(null);
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
@@ -1143,6 +1515,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     public void setSortOrder(@Nullable OCFile folder, FileSortOrder sortOrder) {
         preferences.setSortOrder(folder, sortOrder);
         mFiles = sortOrder.sortCloudFiles(mFiles);
+        invalidatePositions();
         notifyDataSetChanged();
     }
 
@@ -1193,20 +1566,20 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     }
 
     private class FilesFilter extends Filter {
+        /**
+         * only used on the filter thread
+         */
+        private FileNameIndex.Matches lastMatches;
+
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             FilterResults results = new FilterResults();
-            Vector<OCFile> filteredFiles = new Vector<>();
-
-            if (!TextUtils.isEmpty(constraint)) {
-                for (OCFile file : mFilesAll) {
-                    if (file.getParentRemotePath().equals(currentDirectory.getRemotePath()) &&
-                        file.getFileName().toLowerCase(Locale.getDefault()).contains(
-                            constraint.toString().toLowerCase(Locale.getDefault())) &&
-                        !filteredFiles.contains(file)) {
-                        filteredFiles.add(file);
-                    }
-                }
+            List<OCFile> filteredFiles = new ArrayList<>();
+            OCFile directory = currentDirectory;
+
+            if (!TextUtils.isEmpty(constraint) && directory != null) {
+                lastMatches = getFileNameIndex(directory).search(constraint.toString(), lastMatches);
+                filteredFiles = lastMatches.getFiles();
             }
 
             results.values = filteredFiles;
@@ -1215,20 +1588,25 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             return results;
         }
 
+        private FileNameIndex getFileNameIndex(OCFile directory) {
+            boolean showHiddenFiles = preferences.isShowHiddenFilesEnabled();
+            FileSortOrder sortOrder = preferences.getSortOrderByFolder(directory);
+
+            FileNameIndex index = fileNameIndex;
+            if (index == null || !index.isValidFor(directory.getRemotePath(), showHiddenFiles, sortOrder)) {
+                index = new FileNameIndex(mFilesAll, directory.getRemotePath(), showHiddenFiles, sortOrder);
+                fileNameIndex = index;
+            }
+            return index;
+        }
+
         @SuppressWarnings("unchecked")
         @Override
         protected void publishResults(CharSequence constraint, Filter.FilterResults results) {
-
-            Vector<OCFile> ocFiles = (Vector<OCFile>) results.values;
-            mFiles.clear();
-            if (ocFiles != null && ocFiles.size() > 0) {
-                mFiles.addAll(ocFiles);
-                if (!preferences.isShowHiddenFilesEnabled()) {
-                    mFiles = filterHiddenFiles(mFiles);
-                }
-                FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
-                mFiles = sortOrder.sortCloudFiles(mFiles);
-            }
+            // already filtered and sorted by the index
+            List<OCFile> ocFiles = (List<OCFile>) results.values;
+            mFiles = ocFiles != null ? ocFiles : new ArrayList<>();
+            invalidatePositions();
 
             notifyDataSetChanged();
         }
@@ -1240,11 +1618,12 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
      * @param files Collection of files to filter
      * @return Non-hidden files
      */
-    private List<OCFile> filterHiddenFiles(List<OCFile> files) {
+    private static List<OCFile> filterHiddenFiles(List<OCFile> files) {
         List<OCFile> ret = new ArrayList<>();
+        Set<OCFile> added = new HashSet<>();
 
         for (OCFile file : files) {
-            if (!file.isHidden() && !ret.contains(file)) {
+            if (!file.isHidden() && added.add(file)) {
                 ret.add(file);
             }
         }
@@ -1252,7 +1631,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return ret;
     }
 
-    private List<OCFile> filterByMimeType(List<OCFile> files, String mimeType) {
+    private static List<OCFile> filterByMimeType(List<OCFile> files, String mimeType) {
         List<OCFile> ret = new ArrayList<>();
 
         for (OCFile file : files) {
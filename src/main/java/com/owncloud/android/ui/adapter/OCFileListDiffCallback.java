@@ -0,0 +1,79 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import android.text.TextUtils;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.List;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Compares two listings of {@link OCFileListAdapter}. Files are the same item if they have the same id, their content
+ * is compared by the attributes shown in the list.
+ */
+class OCFileListDiffCallback extends DiffUtil.Callback {
+    private final List<OCFile> oldFiles;
+    private final List<OCFile> newFiles;
+
+    OCFileListDiffCallback(List<OCFile> oldFiles, List<OCFile> newFiles) {
+        this.oldFiles = oldFiles;
+        this.newFiles = newFiles;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldFiles.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newFiles.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldFiles.get(oldItemPosition).getFileId() == newFiles.get(newItemPosition).getFileId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        OCFile oldFile = oldFiles.get(oldItemPosition);
+        OCFile newFile = newFiles.get(newItemPosition);
+
+        return TextUtils.equals(oldFile.getRemotePath(), newFile.getRemotePath()) &&
+            TextUtils.equals(oldFile.getEtag(), newFile.getEtag()) &&
+            TextUtils.equals(oldFile.getStoragePath(), newFile.getStoragePath()) &&
+            TextUtils.equals(oldFile.getEtagInConflict(), newFile.getEtagInConflict()) &&
+            TextUtils.equals(oldFile.getNote(), newFile.getNote()) &&
+            oldFile.getModificationTimestamp() == newFile.getModificationTimestamp() &&
+            oldFile.getFileLength() == newFile.getFileLength() &&
+            oldFile.isFavorite() == newFile.isFavorite() &&
+            oldFile.isEncrypted() == newFile.isEncrypted() &&
+            oldFile.isSharedViaLink() == newFile.isSharedViaLink() &&
+            oldFile.isSharedWithSharee() == newFile.isSharedWithSharee() &&
+            oldFile.isSharedWithMe() == newFile.isSharedWithMe() &&
+            oldFile.getUnreadCommentsCount() == newFile.getUnreadCommentsCount() &&
+            oldFile.isUpdateThumbnailNeeded() == newFile.isUpdateThumbnailNeeded();
+    }
+}
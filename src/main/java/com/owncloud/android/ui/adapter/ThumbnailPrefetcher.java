@@ -0,0 +1,227 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import android.os.AsyncTask;
+
+import com.nextcloud.client.network.Connectivity;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.ThumbnailsCacheManager;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Loads the thumbnails of the rows following the visible ones, in scroll direction, so they are cached when the rows
+ * are bound.
+ *
+ * Prefetches of rows that are neither visible nor ahead anymore are cancelled. On metered networks nothing is
+ * downloaded ahead; only thumbnails of downloaded files are prepared from the local files then.
+ */
+public class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+    private static final String TAG = ThumbnailPrefetcher.class.getSimpleName();
+
+    private final OCFileListAdapter adapter;
+    private final ConnectivityService connectivityService;
+    private final int rows;
+
+    /**
+     * Started prefetches by remote id, nearest row first
+     */
+    private final Map<String, ThumbnailsCacheManager.ThumbnailGenerationTask> prefetches = new LinkedHashMap<>();
+    private int firstVisible = RecyclerView.NO_POSITION;
+    private int lastVisible = RecyclerView.NO_POSITION;
+    private boolean scrollingUp;
+    private boolean paused;
+    private RecyclerView.AdapterDataObserver dataObserver;
+
+    /**
+     * @param rows number of rows to prefetch ahead of the visible ones
+     */
+    public ThumbnailPrefetcher(OCFileListAdapter adapter, ConnectivityService connectivityService, int rows) {
+        this.adapter = adapter;
+        this.connectivityService = connectivityService;
+        this.rows = rows;
+    }
+
+    /**
+     * Starts prefetching for the given list; it has to show the adapter of this prefetcher.
+     */
+    public void attach(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(this);
+        dataObserver = new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                refresh(recyclerView);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                refresh(recyclerView);
+            }
+        };
+        adapter.registerAdapterDataObserver(dataObserver);
+    }
+
+    /**
+     * Cancels all running prefetches and stops listening to the given list and the adapter, e.g. when the view of
+     * the list is destroyed.
+     */
+    public void detach(RecyclerView recyclerView) {
+        pause();
+        recyclerView.removeOnScrollListener(this);
+        if (dataObserver != null) {
+            adapter.unregisterAdapterDataObserver(dataObserver);
+            dataObserver = null;
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy != 0) {
+            scrollingUp = dy < 0;
+        }
+        update(recyclerView, false);
+    }
+
+    /**
+     * Cancels all running prefetches and stops prefetching until {@link #resume()}, e.g. while the list is not shown.
+     */
+    public void pause() {
+        paused = true;
+        for (ThumbnailsCacheManager.ThumbnailGenerationTask task : prefetches.values()) {
+            cancel(task);
+        }
+        prefetches.clear();
+        firstVisible = RecyclerView.NO_POSITION;
+        lastVisible = RecyclerView.NO_POSITION;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    private void refresh(RecyclerView recyclerView) {
+        // wait for the layout of the new content
+        recyclerView.post(() -> update(recyclerView, true));
+    }
+
+    private void update(RecyclerView recyclerView, boolean contentChanged) {
+        if (paused || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+
+        if (first == RecyclerView.NO_POSITION || !contentChanged && first == firstVisible && last == lastVisible) {
+            return;
+        }
+        firstVisible = first;
+        lastVisible = last;
+
+        int spanCount = 1;
+        if (layoutManager instanceof GridLayoutManager) {
+            spanCount = ((GridLayoutManager) layoutManager).getSpanCount();
+        }
+        int ahead = rows * spanCount;
+
+        // visible rows stay in range, so rows waiting for their prefetched thumbnail are not cancelled
+        int rangeStart = scrollingUp ? Math.max(0, first - ahead) : first;
+        int rangeEnd = scrollingUp ? last : Math.min(adapter.getItemCount() - 1, last + ahead);
+
+        Set<String> inRange = new HashSet<>();
+        for (int position = rangeStart; position <= rangeEnd; position++) {
+            OCFile file = adapter.getFileAtPosition(position);
+            if (file != null && file.getRemoteId() != null) {
+                inRange.add(file.getRemoteId());
+            }
+        }
+
+        Iterator<Map.Entry<String, ThumbnailsCacheManager.ThumbnailGenerationTask>> iterator =
+            prefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ThumbnailsCacheManager.ThumbnailGenerationTask> entry = iterator.next();
+            ThumbnailsCacheManager.ThumbnailGenerationTask task = entry.getValue();
+
+            if (task.getStatus() == AsyncTask.Status.FINISHED) {
+                iterator.remove();
+            } else if (!inRange.contains(entry.getKey())) {
+                cancel(task);
+                iterator.remove();
+            }
+        }
+
+        Connectivity connectivity = connectivityService.getConnectivity();
+        boolean download = connectivity.isConnected() && !connectivity.isMetered();
+
+        // nearest row first
+        for (int i = 1; i <= ahead; i++) {
+            int position = scrollingUp ? first - i : last + i;
+            if (position < rangeStart || position > rangeEnd) {
+                break;
+            }
+            prefetch(adapter.getFileAtPosition(position), download);
+        }
+    }
+
+    private void prefetch(OCFile file, boolean download) {
+        if (file == null || file.getRemoteId() == null || prefetches.containsKey(file.getRemoteId()) ||
+            !download && !file.isDown()) {
+            return;
+        }
+
+        if (isThumbnailCached(file) && !file.isUpdateThumbnailNeeded()) {
+            return;
+        }
+
+        ThumbnailsCacheManager.ThumbnailGenerationTask task = adapter.prefetchThumbnail(file, download);
+        if (task != null) {
+            prefetches.put(file.getRemoteId(), task);
+        }
+    }
+
+    @VisibleForTesting
+    boolean isThumbnailCached(OCFile file) {
+        return ThumbnailsCacheManager.getBitmapFromMemoryCache(ThumbnailsCacheManager.PREFIX_THUMBNAIL +
+                                                                   file.getRemoteId()) != null;
+    }
+
+    private void cancel(ThumbnailsCacheManager.ThumbnailGenerationTask task) {
+        task.cancel(true);
+        if (task.getGetMethod() != null) {
+            Log_OC.d(TAG, "cancel: abort get method directly");
+            task.getGetMethod().abort();
+        }
+    }
+}
@@ -31,6 +31,8 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -57,6 +59,7 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
 import com.owncloud.android.datamodel.UploadsStorageManager;
 import com.owncloud.android.datamodel.UploadsStorageManager.UploadStatus;
+import com.owncloud.android.datamodel.UploadsStorageManager.UploadsFilter;
 import com.owncloud.android.db.OCUpload;
 import com.owncloud.android.db.OCUploadComparator;
 import com.owncloud.android.db.UploadResult;
@@ -71,7 +74,14 @@ import com.owncloud.android.utils.MimeTypeUtil;
 import com.owncloud.android.utils.ThemeUtils;
 
 import java.io.File;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Set;
 
 import androidx.annotation.NonNull;
 import butterknife.BindView;
@@ -79,10 +89,20 @@ import butterknife.ButterKnife;
 
 /**
  * This Adapter populates a ListView with following types of uploads: pending, active, completed. Filtering possible.
+ *
+ * Uploads are loaded page by page while scrolling. As {@link Observer} of {@link UploadsStorageManager} the adapter
+ * only reloads the uploads which changed.
  */
-public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedViewHolder> {
+public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedViewHolder> implements Observer {
     private static final String TAG = UploadListAdapter.class.getSimpleName();
 
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * more changed uploads than this are applied with a reload of all groups
+     */
+    private static final int MAX_SINGLE_UPDATES = PAGE_SIZE;
+
     private ProgressListener progressListener;
     private FileActivity parentActivity;
     private UploadsStorageManager uploadsStorageManager;
@@ -93,6 +113,13 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     private Clock clock;
     private UploadGroup[] uploadGroups;
     private boolean showUser;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final OCUploadComparator comparator = new OCUploadComparator();
+
+    // changes reported by the storage manager, guarded by changedUploadIds
+    private final Set<Long> changedUploadIds = new LinkedHashSet<>();
+    private boolean reloadPending;
+    private boolean changesPosted;
 
     @Override
     public int getSectionCount() {
@@ -101,7 +128,7 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
 
     @Override
     public int getItemCount(int section) {
-        return uploadGroups[section].getItems().length;
+        return uploadGroups[section].getItems().size();
     }
 
     @Override
@@ -134,7 +161,8 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                     FileUploader.FileUploaderBinder uploaderBinder = parentActivity.getFileUploaderBinder();
 
                     if (uploaderBinder != null) {
-                        for (OCUpload upload : group.getItems()) {
+                        // also cancel uploads not loaded yet
+                        for (OCUpload upload : uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount()) {
                             uploaderBinder.cancel(upload);
                         }
                     }
@@ -188,28 +216,16 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         shouldShowHeadersForEmptySections(false);
 
         uploadGroups[0] = new UploadGroup(Type.CURRENT,
-                                          parentActivity.getString(R.string.uploads_view_group_current_uploads)) {
-            @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount());
-            }
-        };
+                                          UploadsFilter.CURRENT_AND_PENDING,
+                                          parentActivity.getString(R.string.uploads_view_group_current_uploads));
 
         uploadGroups[1] = new UploadGroup(Type.FAILED,
-                                          parentActivity.getString(R.string.uploads_view_group_failed_uploads)) {
-            @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount());
-            }
-        };
+                                          UploadsFilter.FAILED_BUT_NOT_DELAYED,
+                                          parentActivity.getString(R.string.uploads_view_group_failed_uploads));
 
         uploadGroups[2] = new UploadGroup(Type.FINISHED,
-                                          parentActivity.getString(R.string.uploads_view_group_finished_uploads)) {
-            @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFinishedUploadsForCurrentAccount());
-            }
-        };
+                                          UploadsFilter.FINISHED,
+                                          parentActivity.getString(R.string.uploads_view_group_finished_uploads));
 
         showUser = accountManager.getAccounts().length > 1;
 
@@ -220,7 +236,12 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     public void onBindViewHolder(SectionedViewHolder holder, int section, int relativePosition, int absolutePosition) {
         ItemViewHolder itemViewHolder = (ItemViewHolder) holder;
 
-        OCUpload item = uploadGroups[section].getItem(relativePosition);
+        UploadGroup group = uploadGroups[section];
+        OCUpload item = group.getItem(relativePosition);
+
+        if (relativePosition >= group.getItems().size() - PAGE_SIZE / 4) {
+            group.loadNextPageLater();
+        }
 
         itemViewHolder.name.setText(item.getLocalPath());
 
@@ -432,7 +453,9 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                                 task
                             );
                     itemViewHolder.thumbnail.setImageDrawable(asyncDrawable);
-                    task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
+                    ThumbnailsCacheManager.executeThumbnailTask(
+                        task,
+                        new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
                             fakeFileToCheatThumbnailsCacheManagerInterface, null));
                 }
             }
@@ -467,7 +490,9 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                                                                           task);
 
                     itemViewHolder.thumbnail.setImageDrawable(asyncDrawable);
-                    task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, null));
+                    ThumbnailsCacheManager.executeThumbnailTask(
+                        task,
+                        new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, null));
                     Log_OC.v(TAG, "Executing task to generate a new thumbnail");
                 }
             }
@@ -714,18 +739,137 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     }
 
     /**
-     * Load upload items from {@link UploadsStorageManager}.
+     * Load upload items from {@link UploadsStorageManager}, as many as currently loaded but at least one page per
+     * group.
      */
     public void loadUploadItemsFromDb() {
         Log_OC.d(TAG, "loadUploadItemsFromDb");
 
         for (UploadGroup group : uploadGroups) {
-            group.refresh();
+            group.reload();
         }
 
         notifyDataSetChanged();
     }
 
+    /**
+     * Called by {@link UploadsStorageManager} on any thread. Changes are collected and applied together on the main
+     * thread.
+     *
+     * @param observable storage manager
+     * @param arg        id of the changed upload, null if any upload may have changed
+     */
+    @Override
+    public void update(Observable observable, Object arg) {
+        synchronized (changedUploadIds) {
+            if (arg instanceof Long) {
+                changedUploadIds.add((Long) arg);
+            } else {
+                reloadPending = true;
+            }
+
+            if (changesPosted) {
+                return;
+            }
+            changesPosted = true;
+        }
+
+        mainHandler.post(this::applyChanges);
+    }
+
+    private void applyChanges() {
+        List<Long> uploadIds;
+        boolean reload;
+        synchronized (changedUploadIds) {
+            uploadIds = new ArrayList<>(changedUploadIds);
+            reload = reloadPending || uploadIds.size() > MAX_SINGLE_UPDATES;
+            changedUploadIds.clear();
+            reloadPending = false;
+            changesPosted = false;
+        }
+
+        if (reload) {
+            loadUploadItemsFromDb();
+            return;
+        }
+
+        boolean moved = false;
+        for (Long uploadId : uploadIds) {
+            moved |= updateUpload(uploadId);
+        }
+
+        if (moved) {
+            for (UploadGroup group : uploadGroups) {
+                group.updateCount();
+            }
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Reloads a single upload and replaces it in its group, or moves it to its new group.
+     *
+     * @return true if the upload was added, removed or moved; only changes in place are notified already
+     */
+    private boolean updateUpload(long uploadId) {
+        OCUpload upload = uploadsStorageManager.getUploadById(uploadId);
+        if (upload != null) {
+            upload.setDataFixed(parentActivity.getFileUploaderBinder());
+        }
+
+        int oldSection = -1;
+        int oldPosition = -1;
+        for (int section = 0; section < uploadGroups.length && oldPosition < 0; section++) {
+            oldPosition = uploadGroups[section].indexOf(uploadId);
+            oldSection = section;
+        }
+
+        int newSection = -1;
+        for (int section = 0; section < uploadGroups.length && upload != null; section++) {
+            if (uploadsStorageManager.isInGroup(uploadGroups[section].filter, upload)) {
+                newSection = section;
+                break;
+            }
+        }
+
+        if (oldPosition >= 0 && oldSection == newSection &&
+            uploadGroups[oldSection].replaceInPlace(oldPosition, upload)) {
+            if (isSectionExpanded(oldSection)) {
+                notifyItemChanged(getAbsolutePosition(oldSection, oldPosition));
+            }
+            return false;
+        }
+
+        if (oldPosition >= 0) {
+            uploadGroups[oldSection].getItems().remove(oldPosition);
+        }
+        if (newSection >= 0) {
+            uploadGroups[newSection].insert(upload);
+        }
+        return true;
+    }
+
+    /**
+     * Rebinds an upload, e.g. when it really starts or stops uploading.
+     *
+     * @param accountName account of the upload
+     * @param remotePath  remote path of the upload
+     */
+    public void notifyUploadChanged(String accountName, String remotePath) {
+        for (int section = 0; section < uploadGroups.length; section++) {
+            List<OCUpload> items = uploadGroups[section].getItems();
+            for (int position = 0; position < items.size(); position++) {
+                OCUpload upload = items.get(position);
+                if (accountName.equals(upload.getAccountName()) && remotePath.equals(upload.getRemotePath())) {
+                    if (isSectionExpanded(section)) {
+                        notifyItemChanged(getAbsolutePosition(section, position));
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
     private void onUploadItemClick(OCUpload file) {
         File f = new File(file.getLocalPath());
         if (!f.exists()) {
@@ -805,54 +949,160 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         }
     }
 
-    interface Refresh {
-        void refresh();
-    }
-
     enum Type {
         CURRENT, FINISHED, FAILED
     }
 
-    abstract class UploadGroup implements Refresh {
+    /**
+     * Uploads of one group loaded so far, sorted by {@link OCUploadComparator}. Pages are read in the order of
+     * {@link UploadsStorageManager#getUploadsPage(UploadsFilter, OCUpload, int)} and continue after the last upload
+     * read from the database. Uploads being uploaded now are sorted first, so they are loaded on their own.
+     */
+    class UploadGroup {
         private Type type;
-        private OCUpload[] items;
+        private UploadsFilter filter;
+        private List<OCUpload> items;
         private String name;
+        private int totalCount;
+        private boolean hasMore;
+        private OCUpload pageEnd;
+        private boolean nextPagePosted;
 
-        UploadGroup(Type type, String groupName) {
+        UploadGroup(Type type, UploadsFilter filter, String groupName) {
             this.type = type;
+            this.filter = filter;
             this.name = groupName;
-            items = new OCUpload[0];
+            items = new ArrayList<>();
         }
 
         private String getGroupName() {
             return name;
         }
 
-        public OCUpload[] getItems() {
+        public List<OCUpload> getItems() {
             return items;
         }
 
         public OCUpload getItem(int position) {
-            return items[position];
+            return items.get(position);
+        }
+
+        /**
+         * Loads the group again from the start, with at least as many uploads as loaded before.
+         */
+        void reload() {
+            int size = Math.max(PAGE_SIZE, items.size());
+            items = new ArrayList<>();
+            pageEnd = null;
+            loadUploadingNow();
+            loadPage(size);
+            updateCount();
+        }
+
+        void updateCount() {
+            totalCount = uploadsStorageManager.countUploads(filter);
+        }
+
+        /**
+         * Loads the next page after the current layout pass, if there is one.
+         */
+        void loadNextPageLater() {
+            if (!hasMore || nextPagePosted) {
+                return;
+            }
+            nextPagePosted = true;
+
+            mainHandler.post(() -> {
+                nextPagePosted = false;
+                if (hasMore) {
+                    loadPage(PAGE_SIZE);
+                    notifyDataSetChanged();
+                }
+            });
         }
 
-        public void setItems(OCUpload... items) {
-            this.items = items;
+        /**
+         * Loads the uploads of this group being uploaded now, they are sorted before the uploads of the first page.
+         */
+        private void loadUploadingNow() {
+            FileUploader.FileUploaderBinder binder = parentActivity.getFileUploaderBinder();
+            if (binder == null) {
+                return;
+            }
+
+            for (long uploadId : binder.getUploadingNowIds()) {
+                OCUpload upload = uploadsStorageManager.getUploadById(uploadId);
+                if (upload != null && uploadsStorageManager.isInGroup(filter, upload)) {
+                    upload.setDataFixed(binder);
+                    items.add(upload);
+                }
+            }
         }
 
-        void fixAndSortItems(OCUpload... array) {
+        private void loadPage(int size) {
+            OCUpload[] page = uploadsStorageManager.getUploadsPage(filter, pageEnd, size);
+            hasMore = page.length == size;
+
+            if (page.length > 0) {
+                pageEnd = page[page.length - 1];
+            }
+
+            // uploads inserted by single updates or loaded as being uploaded now may be read again
+            Set<Long> loadedIds = new HashSet<>();
+            for (OCUpload upload : items) {
+                loadedIds.add(upload.getUploadId());
+            }
+
             FileUploader.FileUploaderBinder binder = parentActivity.getFileUploaderBinder();
+            for (OCUpload upload : page) {
+                if (loadedIds.add(upload.getUploadId())) {
+                    upload.setDataFixed(binder);
+                    items.add(upload);
+                }
+            }
+            Collections.sort(items, comparator);
+        }
 
-            for (OCUpload upload : array) {
-                upload.setDataFixed(binder);
+        int indexOf(long uploadId) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getUploadId() == uploadId) {
+                    return i;
+                }
             }
-            Arrays.sort(array, new OCUploadComparator());
+            return -1;
+        }
 
-            setItems(array);
+        /**
+         * Replaces an upload if the new version keeps its position in the sort order.
+         *
+         * @return true if the upload was replaced
+         */
+        boolean replaceInPlace(int position, OCUpload upload) {
+            if (position > 0 && comparator.compare(items.get(position - 1), upload) > 0 ||
+                position < items.size() - 1 && comparator.compare(upload, items.get(position + 1)) > 0) {
+                return false;
+            }
+            items.set(position, upload);
+            return true;
+        }
+
+        /**
+         * Inserts an upload at its sorted position. Uploads sorted behind all loaded uploads are left to the next
+         * page.
+         */
+        void insert(OCUpload upload) {
+            int position = Collections.binarySearch(items, upload, comparator);
+            if (position < 0) {
+                position = -(position + 1);
+            }
+
+            if (position < items.size() || !hasMore) {
+                items.add(position, upload);
+            }
         }
 
         private int getGroupItemCount() {
-            return items == null ? 0 : items.length;
+            return totalCount;
         }
     }
 }
@@ -130,7 +130,9 @@ public class UploaderAdapter extends SimpleAdapter {
                                 task
                         );
                         fileIcon.setImageDrawable(asyncDrawable);
-                        task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
+                        ThumbnailsCacheManager.executeThumbnailTask(
+                            task,
+                            new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, file.getRemoteId()));
                     }
                 }
             } else {
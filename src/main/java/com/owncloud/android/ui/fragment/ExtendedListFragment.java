@@ -485,6 +485,18 @@ public class ExtendedListFragment extends Fragment implements
      * Restore index and position
      */
     protected void restoreIndexAndTopPosition() {
+        int firstPosition = removeIndexAndTopPosition();
+        if (firstPosition != RecyclerView.NO_POSITION) {
+            scrollToPosition(firstPosition);
+        }
+    }
+
+    /**
+     * Removes the position saved by the last browse down, to restore it once the content is shown.
+     *
+     * @return first visible position before browsing down, {@link RecyclerView#NO_POSITION} if none is saved
+     */
+    protected int removeIndexAndTopPosition() {
         if (mIndexes.size() > 0) {
             // needs to be checked; not every browse-up had a browse-down before
 
@@ -495,11 +507,12 @@ public class ExtendedListFragment extends Fragment implements
             Log_OC.v(TAG, "Setting selection to position: " + firstPosition + "; top: "
                 + top + "; index: " + index);
 
-            scrollToPosition(firstPosition);
+            return firstPosition;
         }
+        return RecyclerView.NO_POSITION;
     }
 
-    private void scrollToPosition(int position) {
+    protected void scrollToPosition(int position) {
         LinearLayoutManager linearLayoutManager = (LinearLayoutManager) mRecyclerView.getLayoutManager();
 
         if (mRecyclerView != null) {
@@ -51,9 +51,11 @@ import com.google.android.material.snackbar.Snackbar;
 import com.nextcloud.android.lib.richWorkspace.RichWorkspaceDirectEditingRemoteOperation;
 import com.nextcloud.client.account.User;
 import com.nextcloud.client.account.UserAccountManager;
+import com.nextcloud.client.core.AsyncRunner;
 import com.nextcloud.client.device.DeviceInfo;
 import com.nextcloud.client.di.Injectable;
 import com.nextcloud.client.network.ClientFactory;
+import com.nextcloud.client.network.ConnectivityService;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.R;
@@ -79,6 +81,7 @@ import com.owncloud.android.ui.activity.OnEnforceableRefreshListener;
 import com.owncloud.android.ui.activity.ToolbarActivity;
 import com.owncloud.android.ui.activity.UploadFilesActivity;
 import com.owncloud.android.ui.adapter.OCFileListAdapter;
+import com.owncloud.android.ui.adapter.ThumbnailPrefetcher;
 import com.owncloud.android.ui.dialog.ChooseRichDocumentsTemplateDialogFragment;
 import com.owncloud.android.ui.dialog.ChooseTemplateDialogFragment;
 import com.owncloud.android.ui.dialog.ConfirmationDialogFragment;
@@ -173,14 +176,21 @@ public class OCFileListFragment extends ExtendedListFragment implements
 
     private static final int SINGLE_SELECTION = 1;
     private static final int NOT_ENOUGH_SPACE_FRAG_REQUEST_CODE = 2;
+    private static final int THUMBNAIL_PREFETCH_ROWS = 2;
 
     @Inject AppPreferences preferences;
     @Inject UserAccountManager accountManager;
     @Inject ClientFactory clientFactory;
+    @Inject ConnectivityService connectivityService;
     protected FileFragment.ContainerActivity mContainerActivity;
 
     protected OCFile mFile;
     protected OCFileListAdapter mAdapter;
+    private ThumbnailPrefetcher thumbnailPrefetcher;
+    /**
+     * Callback of the directory listing still being loaded, kept for refreshes of the same directory
+     */
+    @Nullable private Runnable pendingOnListed;
     protected boolean mOnlyFoldersClickable;
     protected boolean mFileSelectable;
 
@@ -197,6 +207,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
     private FloatingActionButton mFabMain;
 
     @Inject DeviceInfo deviceInfo;
+    @Inject AsyncRunner asyncRunner;
 
     protected enum MenuItemAddRemove {
         DO_NOTHING,
@@ -238,6 +249,10 @@ public class OCFileListFragment extends ExtendedListFragment implements
         }
 
         super.onResume();
+
+        if (thumbnailPrefetcher != null) {
+            thumbnailPrefetcher.resume();
+        }
     }
 
 
@@ -306,6 +321,9 @@ public class OCFileListFragment extends ExtendedListFragment implements
         if (remoteOperationAsyncTask != null) {
             remoteOperationAsyncTask.cancel(true);
         }
+        if (mAdapter != null) {
+            mAdapter.cancelLoading();
+        }
         super.onDetach();
     }
 
@@ -313,6 +331,9 @@ public class OCFileListFragment extends ExtendedListFragment implements
     public void onPause() {
         super.onPause();
         mAdapter.cancelAllPendingTasks();
+        if (thumbnailPrefetcher != null) {
+            thumbnailPrefetcher.pause();
+        }
 
         if (getActivity() != null) {
             getActivity().getIntent().removeExtra(OCFileListFragment.SEARCH_EVENT);
@@ -320,6 +341,15 @@ public class OCFileListFragment extends ExtendedListFragment implements
     }
 
 
+    @Override
+    public void onDestroyView() {
+        if (thumbnailPrefetcher != null) {
+            thumbnailPrefetcher.detach(getRecyclerView());
+            thumbnailPrefetcher = null;
+        }
+        super.onDestroyView();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -347,10 +377,14 @@ public class OCFileListFragment extends ExtendedListFragment implements
             mContainerActivity,
             this,
             hideItemOptions,
-            isGridViewPreferred(mFile)
+            isGridViewPreferred(mFile),
+            asyncRunner
         );
         setRecyclerViewAdapter(mAdapter);
 
+        thumbnailPrefetcher = new ThumbnailPrefetcher(mAdapter, connectivityService, getThumbnailPrefetchRows());
+        thumbnailPrefetcher.attach(getRecyclerView());
+
         mHideFab = args != null && args.getBoolean(ARG_HIDE_FAB, false);
 
         if (mHideFab) {
@@ -386,6 +420,13 @@ public class OCFileListFragment extends ExtendedListFragment implements
         }
     }
 
+    /**
+     * @return number of rows whose thumbnails are loaded ahead while scrolling
+     */
+    protected int getThumbnailPrefetchRows() {
+        return THUMBNAIL_PREFETCH_ROWS;
+    }
+
     protected void prepareCurrentSearch(SearchEvent event) {
         if (isSearchEventSet(event)) {
 
@@ -840,13 +881,16 @@ public class OCFileListFragment extends ExtendedListFragment implements
             }   // exit is granted because storageManager.getFileByPath("/") never returns null
             mFile = parentDir;
 
-            listDirectory(mFile, MainApp.isOnlyOnDevice(), false);
+            // restore index and top position once the parent folder is shown
+            final int firstPosition = removeIndexAndTopPosition();
+            listDirectory(mFile, null, MainApp.isOnlyOnDevice(), false, () -> {
+                if (firstPosition != RecyclerView.NO_POSITION) {
+                    scrollToPosition(firstPosition);
+                }
+            });
 
             onRefresh(false);
 
-            // restore index and top position
-            restoreIndexAndTopPosition();
-
         }   // else - should never happen now
 
         return moveCount;
@@ -1236,6 +1280,18 @@ public class OCFileListFragment extends ExtendedListFragment implements
      * @param directory File to be listed
      */
     public void listDirectory(OCFile directory, OCFile file, boolean onlyOnDevice, boolean fromSearch) {
+        listDirectory(directory, file, onlyOnDevice, fromSearch, null);
+    }
+
+    /**
+     * @param onListed called once the content of the directory is shown; a pending callback of the same directory is
+     *                 kept if none is given, so a refresh does not drop it
+     */
+    private void listDirectory(OCFile directory,
+                               OCFile file,
+                               boolean onlyOnDevice,
+                               boolean fromSearch,
+                               @Nullable Runnable onListed) {
         if (!searchFragment) {
             FileDataStorageManager storageManager = mContainerActivity.getStorageManager();
             if (storageManager != null) {
@@ -1272,28 +1328,41 @@ public class OCFileListFragment extends ExtendedListFragment implements
                     });
                 }
 
+                final OCFile previousDirectory = mFile;
+                final OCFile listedDirectory = directory;
+
+                if (onListed != null || !listedDirectory.equals(previousDirectory)) {
+                    pendingOnListed = onListed;
+                }
+                final Runnable listedCallback = pendingOnListed;
+
                 mAdapter.swapDirectory(
                     accountManager.getUser(),
                     directory,
                     storageManager,
                     onlyOnDevice,
-                    mLimitToMimeType
+                    mLimitToMimeType,
+                    () -> {
+                        if (file != null) {
+                            mAdapter.setHighlightedItem(file);
+                            int position = mAdapter.getItemPosition(file);
+                            if (position != -1) {
+                                getRecyclerView().scrollToPosition(position);
+                            }
+                        } else if (previousDirectory == null || !previousDirectory.equals(listedDirectory)) {
+                            getRecyclerView().scrollToPosition(0);
+                        }
+
+                        pendingOnListed = null;
+                        if (listedCallback != null) {
+                            listedCallback.run();
+                        }
+                    }
                 );
 
-                OCFile previousDirectory = mFile;
                 mFile = directory;
 
                 updateLayout();
-
-                if (file != null) {
-                    mAdapter.setHighlightedItem(file);
-                    int position = mAdapter.getItemPosition(file);
-                    if (position != -1) {
-                        getRecyclerView().scrollToPosition(position);
-                    }
-                } else if (previousDirectory == null || !previousDirectory.equals(directory)) {
-                    getRecyclerView().scrollToPosition(0);
-                }
             }
         }
     }
@@ -46,6 +46,7 @@ import androidx.recyclerview.widget.RecyclerView;
  */
 public class PhotoFragment extends OCFileListFragment {
     private static final int MAX_ITEMS_PER_ROW = 10;
+    private static final int THUMBNAIL_PREFETCH_ROWS = 4;
     private boolean photoSearchQueryRunning = false;
     private boolean photoSearchNoNew = false;
     private SearchRemoteOperation searchRemoteOperation;
@@ -99,6 +100,12 @@ public class PhotoFragment extends OCFileListFragment {
         return v;
     }
 
+    @Override
+    protected int getThumbnailPrefetchRows() {
+        // the grid only shows thumbnails, load more of them ahead
+        return THUMBNAIL_PREFETCH_ROWS;
+    }
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
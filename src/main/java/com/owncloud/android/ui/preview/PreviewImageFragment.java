@@ -71,7 +71,6 @@ import com.owncloud.android.ui.dialog.RemoveFilesDialogFragment;
 import com.owncloud.android.ui.fragment.FileFragment;
 import com.owncloud.android.utils.BitmapUtils;
 import com.owncloud.android.utils.DisplayUtils;
-import com.owncloud.android.utils.MimeType;
 import com.owncloud.android.utils.MimeTypeUtil;
 
 import java.io.FileInputStream;
@@ -457,7 +456,7 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
     @Override
     public void onDestroy() {
         if (mBitmap != null) {
-            mBitmap.recycle();
+            BitmapUtils.releaseBitmap(mBitmap);
             // putting this in onStop() is just the same; the fragment is always destroyed by
             // {@link FragmentStatePagerAdapter} when the fragment in swiped further than the
             // valid offscreen distance, and onStop() is never called before than that
@@ -556,11 +555,6 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
                                 mErrorMessageId = R.string.preview_image_error_unknown_format;
                                 Log_OC.e(TAG, "File could not be loaded as a bitmap: " + storagePath);
                                 break;
-                            } else {
-                                if (MimeType.JPEG.equalsIgnoreCase(ocFile.getMimeType())) {
-                                    // Rotate image, obeying exif tag.
-                                    bitmapResult = BitmapUtils.rotateImage(bitmapResult, storagePath);
-                                }
                             }
 
                         } catch (OutOfMemoryError e) {
@@ -573,9 +567,7 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
                             } else {
                                 Log_OC.w(TAG, "Out of memory rendering file " + storagePath + " ; failing");
                             }
-                            if (bitmapResult != null) {
-                                bitmapResult.recycle();
-                            }
+                            BitmapUtils.releaseBitmap(bitmapResult);
                             bitmapResult = null;
                         }
                     }
@@ -597,8 +589,8 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
 
         @Override
         protected void onCancelled(LoadImage result) {
-            if (result != null && result.bitmap != null) {
-                result.bitmap.recycle();
+            if (result != null) {
+                BitmapUtils.releaseBitmap(result.bitmap);
             }
         }
 
@@ -611,7 +603,7 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
             }
             if (result.bitmap != null && mBitmap != result.bitmap) {
                 // unused bitmap, release it! (just in case)
-                result.bitmap.recycle();
+                BitmapUtils.releaseBitmap(result.bitmap);
             }
         }
 
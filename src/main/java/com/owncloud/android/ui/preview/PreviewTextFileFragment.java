@@ -62,6 +62,8 @@ import javax.inject.Inject;
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.SearchView;
 import androidx.core.view.MenuItemCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 public class PreviewTextFileFragment extends PreviewTextFragment {
     private static final String EXTRA_FILE = "FILE";
@@ -69,6 +71,8 @@ public class PreviewTextFileFragment extends PreviewTextFragment {
     private static final String TAG = PreviewTextFileFragment.class.getSimpleName();
 
     private TextLoadAsyncTask textLoadAsyncTask;
+    private PagesLoadAsyncTask pagesLoadAsyncTask;
+    private TextFilePagesAdapter pagesAdapter;
     private Account account;
 
     @Inject UserAccountManager accountManager;
@@ -140,8 +144,122 @@ public class PreviewTextFileFragment extends PreviewTextFragment {
 
     @Override
     void loadAndShowTextPreview() {
-        textLoadAsyncTask = new TextLoadAsyncTask(new WeakReference<>(mTextPreview));
-        textLoadAsyncTask.execute(getFile().getStoragePath());
+        if (getFile().getFileLength() > getMaxRenderedTextLength(mTextPreview)) {
+            // too large to be shown at once
+            pagesLoadAsyncTask = new PagesLoadAsyncTask(new WeakReference<>(mTextPreviewPages));
+            pagesLoadAsyncTask.execute(getFile().getStoragePath());
+        } else {
+            textLoadAsyncTask = new TextLoadAsyncTask(new WeakReference<>(mTextPreview));
+            textLoadAsyncTask.execute(getFile().getStoragePath());
+        }
+    }
+
+    @Override
+    public boolean onQueryTextSubmit(String query) {
+        if (pagesAdapter == null) {
+            return super.onQueryTextSubmit(query);
+        }
+
+        searchPages(query);
+        if (mSearchView != null) {
+            mSearchView.clearFocus();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onQueryTextChange(String newText) {
+        if (pagesAdapter == null) {
+            return super.onQueryTextChange(newText);
+        }
+
+        searchPages(newText);
+        return true;
+    }
+
+    /**
+     * Highlights the query on the shown pages; a large file is not searched as a whole.
+     */
+    private void searchPages(String query) {
+        if (getActivity() instanceof FileDisplayActivity) {
+            ((FileDisplayActivity) getActivity()).setSearchQuery(query);
+        }
+        pagesAdapter.setSearchQuery(query);
+    }
+
+    private void showPages(TextFilePages pages) {
+        pagesAdapter = new TextFilePagesAdapter(pages, getResources().getColor(R.color.primary));
+        mTextPreviewPages.setLayoutManager(new LinearLayoutManager(requireContext()));
+        mTextPreviewPages.setAdapter(pagesAdapter);
+        mTextPreviewPages.setVisibility(View.VISIBLE);
+
+        if (mSearchView != null) {
+            mSearchView.setOnQueryTextListener(this);
+
+            if (mSearchOpen) {
+                mSearchView.setQuery(mSearchQuery, true);
+            }
+        }
+
+        if (mMultiListContainer != null) {
+            mMultiListContainer.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Opens the file to preview page by page and indexes its first pages.
+     */
+    private class PagesLoadAsyncTask extends AsyncTask<Object, Void, TextFilePages> {
+        private final WeakReference<RecyclerView> mPagesViewReference;
+
+        private PagesLoadAsyncTask(WeakReference<RecyclerView> pagesView) {
+            mPagesViewReference = pagesView;
+        }
+
+        @Override
+        protected TextFilePages doInBackground(Object... params) {
+            String location = (String) params[0];
+            TextFilePages pages = null;
+
+            try {
+                pages = TextFilePages.open(new File(location));
+                pages.indexPages(TextFilePagesAdapter.INDEX_STEP_PAGES);
+                return pages;
+            } catch (IOException e) {
+                Log_OC.e(TAG, e.getMessage(), e);
+                close(pages);
+                finish();
+                return null;
+            }
+        }
+
+        @Override
+        protected void onCancelled(TextFilePages pages) {
+            close(pages);
+        }
+
+        @Override
+        protected void onPostExecute(TextFilePages pages) {
+            if (pages == null) {
+                return;
+            }
+
+            if (mPagesViewReference.get() == null) {
+                close(pages);
+            } else {
+                showPages(pages);
+            }
+        }
+
+        private void close(TextFilePages pages) {
+            if (pages != null) {
+                try {
+                    pages.close();
+                } catch (IOException e) {
+                    Log_OC.e(TAG, e.getMessage(), e);
+                }
+            }
+        }
     }
 
     /**
@@ -390,6 +508,16 @@ public class PreviewTextFileFragment extends PreviewTextFragment {
         if (textLoadAsyncTask != null) {
             textLoadAsyncTask.cancel(true);
         }
+
+        if (pagesLoadAsyncTask != null) {
+            pagesLoadAsyncTask.cancel(true);
+        }
+
+        if (pagesAdapter != null) {
+            pagesAdapter.close();
+            pagesAdapter = null;
+            mTextPreviewPages.setAdapter(null);
+        }
     }
 
 }
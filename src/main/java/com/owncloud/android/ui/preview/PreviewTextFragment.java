@@ -54,6 +54,7 @@ import javax.inject.Inject;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.RecyclerView;
 import io.noties.markwon.AbstractMarkwonPlugin;
 import io.noties.markwon.Markwon;
 import io.noties.markwon.MarkwonConfiguration;
@@ -84,6 +85,7 @@ public abstract class PreviewTextFragment extends FileFragment implements Search
     protected String mSearchQuery = "";
     protected boolean mSearchOpen;
     protected TextView mTextPreview;
+    protected RecyclerView mTextPreviewPages;
     protected Handler mHandler;
     protected String mOriginalText;
     protected View mMultiListContainer;
@@ -107,6 +109,7 @@ public abstract class PreviewTextFragment extends FileFragment implements Search
 
         View ret = inflater.inflate(R.layout.text_file_preview, container, false);
         mTextPreview = ret.findViewById(R.id.text_preview);
+        mTextPreviewPages = ret.findViewById(R.id.text_preview_pages);
 
         setupMultiView(ret);
         setMultiListLoadingMessage();
@@ -213,6 +216,13 @@ public abstract class PreviewTextFragment extends FileFragment implements Search
         return markwon.toMarkdown(markdown);
     }
 
+    /**
+     * @return maximum length of texts that are rendered as markdown; longer texts are shown as they are
+     */
+    protected static int getMaxRenderedTextLength(View view) {
+        return view.getResources().getInteger(R.integer.text_preview_max_rendered_length);
+    }
+
     /**
      * Finishes the preview
      */
@@ -235,7 +245,7 @@ public abstract class PreviewTextFragment extends FileFragment implements Search
         }
 
         if ((ignoreMimetype || file != null && MimeTypeUtil.MIMETYPE_TEXT_MARKDOWN.equals(file.getMimeType()))
-            && activity != null) {
+            && activity != null && text.length() <= getMaxRenderedTextLength(textView)) {
             if (!preview) {
                 // clickable links prevent to open full view of rich workspace
                 textView.setMovementMethod(LinkMovementMethod.getInstance());
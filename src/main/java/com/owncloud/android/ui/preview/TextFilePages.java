@@ -0,0 +1,237 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.preview;
+
+import org.mozilla.universalchardet.UniversalDetector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * A text file split into pages of at most {@link #PAGE_LINES} lines, decoded one page at a time, so that files of
+ * any size can be previewed.
+ *
+ * The byte offsets of the pages are indexed incrementally with {@link #indexPages(int)}, only as far as the file is
+ * read. Pages end after a line break, unless a single line is longer than {@link #MAX_PAGE_CHARS}.
+ */
+class TextFilePages implements Closeable {
+    static final int PAGE_LINES = 100;
+    static final int MAX_PAGE_CHARS = 16 * 1024;
+
+    /**
+     * Leading bytes used to detect the charset, like {@link org.mozilla.universalchardet.ReaderFactory} does with
+     * the whole file
+     */
+    private static final int DETECTION_BYTES = 64 * 1024;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final Charset charset;
+
+    /**
+     * Start offsets of the indexed pages, followed by the end offset of the last indexed page
+     */
+    private long[] offsets = new long[64];
+    private int pageCount;
+
+    TextFilePages(File file, Charset charset) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.length = channel.size();
+        this.charset = charset;
+    }
+
+    /**
+     * Opens the given file with the charset detected from its beginning.
+     */
+    static TextFilePages open(File file) throws IOException {
+        return new TextFilePages(file, detectCharset(file));
+    }
+
+    static Charset detectCharset(File file) throws IOException {
+        UniversalDetector detector = new UniversalDetector(null);
+        byte[] buffer = new byte[DETECTION_BYTES];
+        int read;
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            read = input.read(buffer);
+        }
+        if (read > 0) {
+            detector.handleData(buffer, 0, read);
+        }
+        detector.dataEnd();
+
+        String detected = detector.getDetectedCharset();
+        if (detected == null || "US-ASCII".equals(detected)) {
+            // later parts of the file may use more than ASCII; fall back like ReaderFactory
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(detected);
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return number of pages indexed so far
+     */
+    synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return true if the whole file is indexed
+     */
+    synchronized boolean isComplete() {
+        return offsets[pageCount] == length;
+    }
+
+    /**
+     * Indexes the next pages of the file.
+     *
+     * @param pages maximum number of pages to add
+     * @return number of pages added, 0 if the whole file is indexed
+     */
+    synchronized int indexPages(int pages) throws IOException {
+        int added = 0;
+
+        while (added < pages && offsets[pageCount] < length) {
+            long start = offsets[pageCount];
+            long end = findPageEnd(start);
+
+            if (pageCount + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            pageCount++;
+            offsets[pageCount] = end;
+            added++;
+        }
+
+        return added;
+    }
+
+    /**
+     * Decodes the given page; its final line break is left out, pages are shown one below the other anyway.
+     */
+    String readPage(int page) throws IOException {
+        long start;
+        long end;
+        synchronized (this) {
+            if (page < 0 || page >= pageCount) {
+                throw new IndexOutOfBoundsException("Page " + page + " is not indexed");
+            }
+            start = offsets[page];
+            end = offsets[page + 1];
+        }
+
+        ByteBuffer bytes = read(start, (int) (end - start));
+        CharBuffer chars = newDecoder().decode(bytes);
+
+        int from = page == 0 && chars.length() > 0 && chars.charAt(0) == BYTE_ORDER_MARK ? 1 : 0;
+        int to = chars.length();
+        if (to > from && chars.charAt(to - 1) == '\n') {
+            to--;
+            if (to > from && chars.charAt(to - 1) == '\r') {
+                to--;
+            }
+        }
+
+        return chars.subSequence(from, to).toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * @return byte offset after the {@link #PAGE_LINES}th line break or {@link #MAX_PAGE_CHARS}th character following
+     * the given offset, or the end of the file
+     */
+    private long findPageEnd(long start) throws IOException {
+        int size = (int) Math.min(length - start, (long) MAX_PAGE_CHARS * MAX_BYTES_PER_CHAR);
+        boolean endOfInput = start + size == length;
+        ByteBuffer bytes = read(start, size);
+
+        CharBuffer chars = CharBuffer.allocate(MAX_PAGE_CHARS);
+        CharsetDecoder decoder = newDecoder();
+        decoder.decode(bytes, chars, endOfInput);
+        if (endOfInput && !bytes.hasRemaining()) {
+            decoder.flush(chars);
+        }
+
+        int decoded = chars.position();
+        int cut = decoded;
+        int lines = 0;
+        for (int i = 0; i < decoded; i++) {
+            if (chars.get(i) == '\n' && ++lines == PAGE_LINES) {
+                cut = i + 1;
+                break;
+            }
+        }
+
+        if (cut < decoded) {
+            // decode again, up to the cut, to learn where its bytes end
+            bytes.rewind();
+            newDecoder().decode(bytes, CharBuffer.allocate(cut), endOfInput);
+        }
+
+        if (bytes.position() == 0) {
+            // nothing could be decoded, skip what was read instead of getting stuck
+            return start + size;
+        }
+        return start + bytes.position();
+    }
+
+    private ByteBuffer read(long start, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private CharsetDecoder newDecoder() {
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.preview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Html;
+import android.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.owncloud.android.R;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.StringUtils;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows the pages of a {@link TextFilePages}, one item per page. Only pages near the shown ones are decoded and kept
+ * in memory; the page index is extended in the background when the end of the indexed pages comes into view.
+ */
+class TextFilePagesAdapter extends RecyclerView.Adapter<TextFilePagesAdapter.PageViewHolder> {
+    private static final String TAG = TextFilePagesAdapter.class.getSimpleName();
+
+    static final int INDEX_STEP_PAGES = 50;
+    private static final int CACHED_PAGES = 8;
+
+    private final TextFilePages pages;
+    @ColorInt private final int searchColor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                                                                       new LinkedBlockingQueue<>());
+    private final LruCache<Integer, String> pageTexts = new LruCache<>(CACHED_PAGES);
+    private final Set<Integer> loadingPages = new HashSet<>();
+
+    private int pageCount;
+    private boolean indexing;
+    private boolean closed;
+    private String searchQuery;
+
+    /**
+     * @param pages pages to show, with the first pages already indexed; closed together with this adapter
+     */
+    TextFilePagesAdapter(TextFilePages pages, @ColorInt int searchColor) {
+        this.pages = pages;
+        this.searchColor = searchColor;
+        pageCount = pages.getPageCount();
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    static class PageViewHolder extends RecyclerView.ViewHolder {
+        private final TextView text;
+
+        PageViewHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+
+    @NonNull
+    @Override
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        TextView text = (TextView) LayoutInflater.from(parent.getContext())
+            .inflate(R.layout.text_file_preview_page, parent, false);
+        return new PageViewHolder(text);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        String text = pageTexts.get(position);
+
+        if (text == null) {
+            holder.text.setText("");
+            loadPage(position);
+        } else if (searchQuery == null || searchQuery.isEmpty()) {
+            holder.text.setText(text);
+        } else {
+            String coloredText = StringUtils.searchAndColor(text, searchQuery, searchColor);
+            holder.text.setText(Html.fromHtml(coloredText.replace("\n", "<br \\>")));
+        }
+
+        if (position >= pageCount - 2) {
+            indexMorePages();
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return pageCount;
+    }
+
+    /**
+     * Highlights the given text on all pages, null or empty to remove highlighting.
+     */
+    void setSearchQuery(String query) {
+        searchQuery = query;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Stops loading pages and closes the file.
+     */
+    void close() {
+        closed = true;
+        handler.removeCallbacksAndMessages(null);
+        executor.shutdownNow();
+        try {
+            pages.close();
+        } catch (IOException e) {
+            Log_OC.e(TAG, "Error closing previewed file", e);
+        }
+    }
+
+    private void loadPage(int page) {
+        if (closed || !loadingPages.add(page)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            String text;
+            try {
+                text = pages.readPage(page);
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Error reading page " + page, e);
+                text = "";
+            }
+
+            String pageText = text;
+            handler.post(() -> {
+                loadingPages.remove(page);
+                if (!closed) {
+                    pageTexts.put(page, pageText);
+                    notifyItemChanged(page);
+                }
+            });
+        });
+    }
+
+    private void indexMorePages() {
+        if (closed || indexing || pages.isComplete()) {
+            return;
+        }
+        indexing = true;
+
+        executor.execute(() -> {
+            try {
+                pages.indexPages(INDEX_STEP_PAGES);
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Error indexing previewed file", e);
+            }
+
+            handler.post(() -> {
+                if (closed) {
+                    return;
+                }
+                int oldCount = pageCount;
+                pageCount = pages.getPageCount();
+                indexing = false;
+                if (pageCount > oldCount) {
+                    notifyItemRangeInserted(oldCount, pageCount - oldCount);
+                }
+            });
+        });
+    }
+}
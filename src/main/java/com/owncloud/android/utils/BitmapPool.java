@@ -0,0 +1,111 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Unused mutable bitmaps, to be decoded into again via {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * instead of allocating a new buffer for every decode.
+ *
+ * Only bitmaps that nobody references anymore may be put into the pool. If the pool is full, the least recently
+ * added bitmaps are dropped.
+ */
+@RequiresApi(Build.VERSION_CODES.KITKAT)
+public class BitmapPool {
+    private final long maxSize;
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private long size;
+
+    /**
+     * @param maxSize maximum size of all pooled bitmaps, in bytes; a single bitmap may use at most half of it
+     */
+    public BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Takes the smallest pooled bitmap that can hold an image of the given size.
+     *
+     * @return bitmap to decode into, null if none fits
+     */
+    @Nullable
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long required = (long) width * height * getBytesPerPixel(config);
+
+        Bitmap best = null;
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap.getConfig() == config && bitmap.getAllocationByteCount() >= required &&
+                (best == null || bitmap.getAllocationByteCount() < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+
+        if (best != null) {
+            bitmaps.remove(best);
+            size -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /**
+     * Adds a bitmap that is not used anymore; immutable, recycled and too big bitmaps are ignored.
+     *
+     * @return true if the bitmap was added
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() ||
+            bitmap.getAllocationByteCount() > maxSize / 2 || bitmaps.contains(bitmap)) {
+            return false;
+        }
+
+        bitmaps.addLast(bitmap);
+        size += bitmap.getAllocationByteCount();
+
+        Iterator<Bitmap> oldest = bitmaps.iterator();
+        while (size > maxSize && oldest.hasNext()) {
+            size -= oldest.next().getAllocationByteCount();
+            oldest.remove();
+        }
+        return true;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.widget.ImageView;
 
 import com.owncloud.android.MainApp;
@@ -33,7 +34,10 @@ import com.owncloud.android.R;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -56,13 +60,31 @@ public final class BitmapUtils {
     private static final int INDEX_SATURATION = 1;
     private static final int INDEX_LUMINATION = 2;
 
+    /**
+     * Bitmaps decoded into are taken from here, intermediate bitmaps are given back; null before KitKat, as
+     * {@link Options#inBitmap} only works with bitmaps of exactly the same size there.
+     */
+    private static final BitmapPool bitmapPool = createBitmapPool();
+
+    private interface Decoder {
+        Bitmap decode(Options options);
+    }
+
     private BitmapUtils() {
         // utility class -> private constructor
     }
 
+    private static BitmapPool createBitmapPool() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return null;
+    }
+
     /**
      * Decodes a bitmap from a file containing it minimizing the memory use, known that the bitmap
-     * will be drawn in a surface of reqWidth x reqHeight
+     * will be drawn in a surface of reqWidth x reqHeight. The bitmap is rotated according to the
+     * EXIF orientation of the file.
      *
      * @param srcPath       Absolute path to the file containing the image.
      * @param reqWidth      Width of the surface where the Bitmap will be drawn on, in pixels.
@@ -70,25 +92,117 @@ public final class BitmapUtils {
      * @return decoded bitmap
      */
     public static Bitmap decodeSampledBitmapFromFile(String srcPath, int reqWidth, int reqHeight) {
+        int orientation = getExifOrientation(srcPath);
 
         // set desired options that will affect the size of the bitmap
         final Options options = new Options();
         options.inScaled = true;
         options.inPurgeable = true;
         options.inPreferQualityOverSpeed = false;
-        options.inMutable = false;
 
         // make a false load of the bitmap to get its dimensions
         options.inJustDecodeBounds = true;
 
         BitmapFactory.decodeFile(srcPath, options);
 
-        // calculate factor to subsample the bitmap
-        options.inSampleSize = calculateSampleFactor(options, reqWidth, reqHeight);
+        // calculate factor to subsample the bitmap, as it will be after rotation
+        if (isRotatedSideways(orientation)) {
+            options.inSampleSize = calculateSampleFactor(options, reqHeight, reqWidth);
+        } else {
+            options.inSampleSize = calculateSampleFactor(options, reqWidth, reqHeight);
+        }
+        options.inSampleSize = limitSampleFactorToMemory(options, options.inSampleSize);
 
         // decode bitmap with inSampleSize set
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(srcPath, options);
+        Bitmap bitmap = decodePooled(options, decodeOptions -> BitmapFactory.decodeFile(srcPath, decodeOptions));
+
+        return applyOrientation(bitmap, orientation);
+    }
+
+    /**
+     * Decodes a bitmap from a stream, e.g. a server response, minimizing the memory use, known that the bitmap
+     * will be drawn in a surface of reqWidth x reqHeight.
+     *
+     * @param inputStream   Stream containing the image, read completely.
+     * @param reqWidth      Width of the surface where the Bitmap will be drawn on, in pixels.
+     * @param reqHeight     Height of the surface where the Bitmap will be drawn on, in pixels.
+     * @return decoded bitmap
+     */
+    public static Bitmap decodeSampledBitmapFromStream(InputStream inputStream, int reqWidth, int reqHeight)
+        throws IOException {
+        // encoded images are small compared to the decoded ones, keep it to decode twice
+        final byte[] data = IOUtils.toByteArray(inputStream);
+
+        final Options options = new Options();
+        options.inPreferQualityOverSpeed = false;
+        options.inJustDecodeBounds = true;
+
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        options.inSampleSize = limitSampleFactorToMemory(options,
+                                                         calculateSampleFactor(options, reqWidth, reqHeight));
+
+        options.inJustDecodeBounds = false;
+        return decodePooled(options,
+                            decodeOptions -> BitmapFactory.decodeByteArray(data, 0, data.length, decodeOptions));
+    }
+
+    /**
+     * Decodes into a pooled bitmap, if one fits the sampled size given in the options.
+     */
+    private static Bitmap decodePooled(Options options, Decoder decoder) {
+        options.inMutable = true;
+        if (bitmapPool != null && options.outWidth > 0 && options.outHeight > 0) {
+            int sampleSize = Math.max(1, options.inSampleSize);
+            options.inBitmap = bitmapPool.get((options.outWidth + sampleSize - 1) / sampleSize,
+                                              (options.outHeight + sampleSize - 1) / sampleSize,
+                                              Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap bitmap;
+        try {
+            bitmap = decoder.decode(options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null) {
+                throw e;
+            }
+            bitmap = null;
+        }
+
+        if (bitmap == null && options.inBitmap != null) {
+            // the pooled bitmap does not fit the image after all; decodeFile reports that by returning null
+            bitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = decoder.decode(options);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Increases the sample factor until the decoded bitmap takes at most half of the free heap.
+     */
+    private static int limitSampleFactorToMemory(Options options, int inSampleSize) {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        int sampleSize = Math.max(1, inSampleSize);
+        while ((long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize) * 4 > available / 2) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Gives a bitmap back that is not referenced anymore, so that its memory is used for the next decode.
+     */
+    public static void releaseBitmap(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (bitmapPool == null || !bitmapPool.put(bitmap)) {
+            bitmap.recycle();
+        }
     }
 
 
@@ -149,15 +263,38 @@ public final class BitmapUtils {
      * @return correctly EXIF-rotated bitmap
      */
     public static Bitmap rotateImage(Bitmap bitmap, String storagePath) {
-        Bitmap resultBitmap = bitmap;
+        return applyOrientation(bitmap, getExifOrientation(storagePath));
+    }
 
+    private static int getExifOrientation(String storagePath) {
         try {
             ExifInterface exifInterface = new ExifInterface(storagePath);
-            int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, 1);
+            return exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (Exception exception) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
 
-            Matrix matrix = new Matrix();
+    private static boolean isRotatedSideways(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_TRANSPOSE ||
+            orientation == ExifInterface.ORIENTATION_ROTATE_90 ||
+            orientation == ExifInterface.ORIENTATION_TRANSVERSE ||
+            orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * Rotates the bitmap according to the given EXIF orientation; the given bitmap is released if a rotated copy is
+     * returned.
+     */
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        if (bitmap == null || orientation == ExifInterface.ORIENTATION_NORMAL ||
+            orientation == ExifInterface.ORIENTATION_UNDEFINED) {
+            return bitmap;
+        }
 
-            // 1: nothing to do
+        Bitmap resultBitmap = bitmap;
+        try {
+            Matrix matrix = new Matrix();
 
             // 2
             if (orientation == ExifInterface.ORIENTATION_FLIP_HORIZONTAL) {
@@ -192,11 +329,11 @@ public final class BitmapUtils {
 
             // Rotate the bitmap
             resultBitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-            if (!resultBitmap.equals(bitmap)) {
-                bitmap.recycle();
+            if (resultBitmap != bitmap) {
+                releaseBitmap(bitmap);
             }
         } catch (Exception exception) {
-            Log_OC.e("BitmapUtil", "Could not rotate the image: " + storagePath);
+            Log_OC.e("BitmapUtil", "Could not rotate the image with orientation " + orientation);
         }
         return resultBitmap;
     }
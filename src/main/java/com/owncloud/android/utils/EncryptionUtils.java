@@ -46,6 +46,12 @@ import com.owncloud.android.operations.UploadException;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.httpclient.HttpStatus;
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.AEADBlockCipher;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -54,6 +60,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
@@ -112,6 +119,8 @@ public final class EncryptionUtils {
     private static final int keyStrength = 256;
     private static final String AES_CIPHER = "AES/GCM/NoPadding";
     private static final String AES = "AES";
+    private static final int AES_GCM_TAG_LENGTH = 128;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
     private static final String RSA_CIPHER = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
     private static final String RSA = "RSA";
 
@@ -284,92 +293,111 @@ public final class EncryptionUtils {
 
     /**
      * @param ocFile             file do crypt
+     * @param encryptedFile      target of the encrypted content
      * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
      * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
+     * @return authenticationTag, base64 encoded
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static EncryptedFile encryptFile(OCFile ocFile, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
+    public static String encryptFile(OCFile ocFile, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+            throws IOException, InvalidCipherTextException {
         File file = new File(ocFile.getStoragePath());
 
-        return encryptFile(file, encryptionKeyBytes, iv);
+        return encryptFile(file, encryptedFile, encryptionKeyBytes, iv);
     }
 
     /**
+     * Encrypts a file with AES/GCM, streaming it in chunks, so memory usage does not depend on the file size. The
+     * encrypted file consists of the cipher text followed by the authentication tag.
+     *
      * @param file               file do crypt
+     * @param encryptedFile      target of the encrypted content
      * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
      * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
+     * @return authenticationTag, base64 encoded
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static EncryptedFile encryptFile(File file, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
-
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
-
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
+    public static String encryptFile(File file, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+            throws IOException, InvalidCipherTextException {
+        AEADBlockCipher cipher = createFileCipher(true, encryptionKeyBytes, iv);
 
-        byte[] cryptedBytes = cipher.doFinal(fileBytes);
-        String authenticationTag = encodeBytesToBase64String(Arrays.copyOfRange(cryptedBytes,
-                cryptedBytes.length - (128 / 8), cryptedBytes.length));
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new FileOutputStream(encryptedFile)) {
+            cryptStream(cipher, inputStream, outputStream);
+        }
 
-        return new EncryptedFile(cryptedBytes, authenticationTag);
+        return encodeBytesToBase64String(cipher.getMac());
     }
 
     /**
+     * Decrypts a file encrypted with {@link #encryptFile(File, File, byte[], byte[])}, streaming it in chunks. If the
+     * authentication fails, the decrypted file is deleted.
+     *
      * @param file               encrypted file
+     * @param decryptedFile      target of the decrypted content
      * @param encryptionKeyBytes key from metadata
      * @param iv                 initialization vector from metadata
      * @param authenticationTag  authenticationTag from metadata
-     * @return decrypted byte[]
      */
-    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
-    public static byte[] decryptFile(File file, byte[] encryptionKeyBytes, byte[] iv, byte[] authenticationTag)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-
-
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
-
+    public static void decryptFile(File file,
+                                   File decryptedFile,
+                                   byte[] encryptionKeyBytes,
+                                   byte[] iv,
+                                   byte[] authenticationTag) throws IOException, InvalidCipherTextException {
         // check authentication tag
-        byte[] extractedAuthenticationTag = Arrays.copyOfRange(fileBytes,
-                fileBytes.length - (128 / 8), fileBytes.length);
+        byte[] extractedAuthenticationTag = new byte[AES_GCM_TAG_LENGTH / 8];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            if (randomAccessFile.length() < extractedAuthenticationTag.length) {
+                throw new SecurityException("Tag not correct");
+            }
+            randomAccessFile.seek(randomAccessFile.length() - extractedAuthenticationTag.length);
+            randomAccessFile.readFully(extractedAuthenticationTag);
+        }
 
         if (!Arrays.equals(extractedAuthenticationTag, authenticationTag)) {
             throw new SecurityException("Tag not correct");
         }
 
-        return cipher.doFinal(fileBytes);
+        AEADBlockCipher cipher = createFileCipher(false, encryptionKeyBytes, iv);
+
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new FileOutputStream(decryptedFile)) {
+            cryptStream(cipher, inputStream, outputStream);
+        } catch (IOException | InvalidCipherTextException e) {
+            if (!decryptedFile.delete()) {
+                Log_OC.w(TAG, "Could not delete " + decryptedFile.getAbsolutePath());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Uses the lightweight API of Bouncy Castle, as JCE providers buffer the whole input for AES/GCM until
+     * {@link Cipher#doFinal()}.
+     */
+    private static AEADBlockCipher createFileCipher(boolean forEncryption, byte[] encryptionKeyBytes, byte[] iv) {
+        AEADBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(forEncryption, new AEADParameters(new KeyParameter(encryptionKeyBytes), AES_GCM_TAG_LENGTH, iv));
+
+        return cipher;
     }
 
-    public static class EncryptedFile {
-        public byte[] encryptedBytes;
-        public String authenticationTag;
+    private static void cryptStream(AEADBlockCipher cipher, InputStream inputStream, OutputStream outputStream)
+            throws IOException, InvalidCipherTextException {
+        byte[] buffer = new byte[FILE_BUFFER_SIZE];
+        byte[] output = new byte[cipher.getUpdateOutputSize(buffer.length)];
+        int read;
 
-        public EncryptedFile(byte[] encryptedBytes, String authenticationTag) {
-            this.encryptedBytes = encryptedBytes;
-            this.authenticationTag = authenticationTag;
+        while ((read = inputStream.read(buffer)) != -1) {
+            int outputSize = cipher.getUpdateOutputSize(read);
+            if (outputSize > output.length) {
+                output = new byte[outputSize];
+            }
+            int written = cipher.processBytes(buffer, 0, read, output, 0);
+            outputStream.write(output, 0, written);
         }
+
+        byte[] finalOutput = new byte[cipher.getOutputSize(0)];
+        int written = cipher.doFinal(finalOutput, 0);
+        outputStream.write(finalOutput, 0, written);
     }
 
     /**
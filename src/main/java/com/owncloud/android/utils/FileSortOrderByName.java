@@ -24,12 +24,13 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
+import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import third_parties.daveKoeller.AlphanumComparator;
+import third_parties.daveKoeller.AlphanumSortKey;
 
 /**
  * Created by srkunze on 28.08.17.
@@ -45,20 +46,14 @@ public class FileSortOrderByName extends FileSortOrder {
      *
      * @param files files to sort
      */
-    @SuppressFBWarnings("Bx")
     public List<OCFile> sortCloudFiles(List<OCFile> files) {
-        final int multiplier = isAscending ? 1 : -1;
-
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
-            } else if (o1.isFolder()) {
-                return -1;
-            } else if (o2.isFolder()) {
-                return 1;
-            }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
-        });
+        Collator collator = Collator.getInstance();
+        List<SortEntry<OCFile>> entries = new ArrayList<>(files.size());
+        for (OCFile file : files) {
+            String name = file.getFileName();
+            entries.add(new SortEntry<>(file, file.isFolder(), name, new AlphanumSortKey(name, collator)));
+        }
+        sortByKey(files, entries);
 
         return super.sortCloudFiles(files);
     }
@@ -68,21 +63,15 @@ public class FileSortOrderByName extends FileSortOrder {
      *
      * @param files files to sort
      */
-    @SuppressFBWarnings("Bx")
     @Override
     public List<TrashbinFile> sortTrashbinFiles(List<TrashbinFile> files) {
-        final int multiplier = isAscending ? 1 : -1;
-
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
-            } else if (o1.isFolder()) {
-                return -1;
-            } else if (o2.isFolder()) {
-                return 1;
-            }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
-        });
+        Collator collator = Collator.getInstance();
+        List<SortEntry<TrashbinFile>> entries = new ArrayList<>(files.size());
+        for (TrashbinFile file : files) {
+            String name = file.getFileName();
+            entries.add(new SortEntry<>(file, file.isFolder(), name, new AlphanumSortKey(name, collator)));
+        }
+        sortByKey(files, entries);
 
         return super.sortTrashbinFiles(files);
     }
@@ -96,20 +85,68 @@ public class FileSortOrderByName extends FileSortOrder {
     public List<File> sortLocalFiles(List<File> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isDirectory() && o2.isDirectory()) {
-                return multiplier * o1.getPath().toLowerCase(Locale.getDefault())
-                        .compareTo(o2.getPath().toLowerCase(Locale.getDefault()));
-            } else if (o1.isDirectory()) {
+        Collator collator = Collator.getInstance();
+        List<SortEntry<File>> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            String path = file.getPath().toLowerCase(Locale.getDefault());
+            boolean directory = file.isDirectory();
+            // directories are compared by their plain path, no key needed
+            AlphanumSortKey key = directory ? null : new AlphanumSortKey(path, collator);
+            entries.add(new SortEntry<>(file, directory, path, key));
+        }
+
+        Collections.sort(entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.name.compareTo(o2.name);
+            } else if (o1.folder) {
                 return -1;
-            } else if (o2.isDirectory()) {
+            } else if (o2.folder) {
                 return 1;
             }
-            return multiplier * new AlphanumComparator().compare(o1.getPath()
-                            .toLowerCase(Locale.getDefault()),
-                    o2.getPath().toLowerCase(Locale.getDefault()));
+            return multiplier * o1.key.compareTo(o2.key);
         });
+        copyBack(files, entries);
 
         return files;
     }
+
+    /**
+     * Sorts by precomputed keys, folders first, and writes the result back to files. Computing the keys once per file
+     * instead of once per comparison keeps sorting large folders fast.
+     */
+    private <T> void sortByKey(List<T> files, List<SortEntry<T>> entries) {
+        final int multiplier = isAscending ? 1 : -1;
+
+        Collections.sort(entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.key.compareTo(o2.key);
+            } else if (o1.folder) {
+                return -1;
+            } else if (o2.folder) {
+                return 1;
+            }
+            return multiplier * o1.key.compareTo(o2.key);
+        });
+        copyBack(files, entries);
+    }
+
+    private static <T> void copyBack(List<T> files, List<SortEntry<T>> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            files.set(i, entries.get(i).item);
+        }
+    }
+
+    private static final class SortEntry<T> {
+        private final T item;
+        private final boolean folder;
+        private final String name;
+        private final AlphanumSortKey key;
+
+        private SortEntry(T item, boolean folder, String name, AlphanumSortKey key) {
+            this.item = item;
+            this.folder = folder;
+            this.name = name;
+            this.key = key;
+        }
+    }
 }
@@ -38,6 +38,7 @@ import com.nextcloud.client.jobs.BackgroundJobManager;
 import com.nextcloud.client.network.ConnectivityService;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.MainApp;
+import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.FilesystemDataProvider;
 import com.owncloud.android.datamodel.MediaFolderType;
 import com.owncloud.android.datamodel.SyncedFolder;
@@ -56,6 +57,7 @@ import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import static com.owncloud.android.datamodel.OCFile.PATH_SEPARATOR;
 
@@ -69,31 +71,50 @@ public final class FilesSyncHelper {
 
     public static final int ContentSyncJobId = 315;
 
+    /**
+     * Even if only changed media is requested, all entries of a synced folder are checked after this interval, e.g.
+     * to find media files modified without their modification date being updated.
+     */
+    private static final long FULL_SCAN_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String KEY_LAST_FULL_SCAN = "auto_upload_last_full_scan_";
+    private static final String KEY_MEDIA_ID = "auto_upload_media_id_";
+    private static final String KEY_MEDIA_SCAN = "auto_upload_media_scan_";
+    private static final String[] MEDIA_VOLUMES = {"internal", "external"};
+
     private FilesSyncHelper() {
         // utility class -> private constructor
     }
 
-    private static void insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder) {
+    private static void insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder,
+                                                          Clock clock,
+                                                          boolean changedMediaOnly) {
         final Context context = MainApp.getAppContext();
         final ContentResolver contentResolver = context.getContentResolver();
 
         final long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
 
         if (syncedFolder.isEnabled() && (syncedFolder.isExisting() || enabledTimestampMs >= 0)) {
+            FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
+            final FilesystemDataProvider.BulkIndexer indexer = filesystemDataProvider.createBulkIndexer(syncedFolder);
+
+            ArbitraryDataProvider arbitraryDataProvider = new ArbitraryDataProvider(contentResolver);
+            long lastFullScan = arbitraryDataProvider.getLongValue(GLOBAL, KEY_LAST_FULL_SCAN + syncedFolder.getId());
+            long now = clock.getCurrentTime();
+            boolean fullScan = !changedMediaOnly || lastFullScan == -1 || now - lastFullScan > FULL_SCAN_INTERVAL_MS;
+
             MediaFolderType mediaType = syncedFolder.getType();
-            if (mediaType == MediaFolderType.IMAGE) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI
-                    , syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-            } else if (mediaType == MediaFolderType.VIDEO) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-            } else {
-                try {
-                    FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
+            try {
+                if (mediaType == MediaFolderType.IMAGE) {
+                    FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI,
+                                                        syncedFolder, indexer, arbitraryDataProvider, fullScan, now);
+                    FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                                                        syncedFolder, indexer, arbitraryDataProvider, fullScan, now);
+                } else if (mediaType == MediaFolderType.VIDEO) {
+                    FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI,
+                                                        syncedFolder, indexer, arbitraryDataProvider, fullScan, now);
+                    FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                                                        syncedFolder, indexer, arbitraryDataProvider, fullScan, now);
+                } else {
                     Path path = Paths.get(syncedFolder.getLocalPath());
 
                     Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
@@ -101,9 +122,10 @@ public final class FilesSyncHelper {
                         public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
                             File file = path.toFile();
                             if (syncedFolder.isExisting() || attrs.lastModifiedTime().toMillis() >= enabledTimestampMs) {
-                                filesystemDataProvider.storeOrUpdateFileValue(path.toAbsolutePath().toString(),
-                                                                              attrs.lastModifiedTime().toMillis(),
-                                                                              file.isDirectory(), syncedFolder);
+                                indexer.add(path.toAbsolutePath().toString(),
+                                            attrs.lastModifiedTime().toMillis(),
+                                            attrs.size(),
+                                            file.isDirectory());
                             }
 
                             return FileVisitResult.CONTINUE;
@@ -114,41 +136,78 @@ public final class FilesSyncHelper {
                             return FileVisitResult.CONTINUE;
                         }
                     });
-                } catch (IOException e) {
-                    Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
                 }
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
+            } finally {
+                indexer.flush();
             }
+
+            if (fullScan) {
+                arbitraryDataProvider.storeOrUpdateKeyValue(GLOBAL, KEY_LAST_FULL_SCAN + syncedFolder.getId(), now);
+            }
+        }
+    }
+
+    /**
+     * Removes the state of previous media scans, so the next scan of the synced folder checks all its entries.
+     *
+     * @param arbitraryDataProvider provider storing the scan state
+     * @param syncedFolderId        id of the synced folder
+     */
+    public static void resetMediaScan(ArbitraryDataProvider arbitraryDataProvider, long syncedFolderId) {
+        arbitraryDataProvider.deleteKeyForAccount(GLOBAL, KEY_LAST_FULL_SCAN + syncedFolderId);
+        for (String volume : MEDIA_VOLUMES) {
+            arbitraryDataProvider.deleteKeyForAccount(GLOBAL, KEY_MEDIA_ID + syncedFolderId + "_" + volume);
+            arbitraryDataProvider.deleteKeyForAccount(GLOBAL, KEY_MEDIA_SCAN + syncedFolderId + "_" + volume);
         }
     }
 
+    /**
+     * Stores files of all enabled synced folders for auto upload.
+     *
+     * @param skipCustom       skip synced folders not backed by the media store
+     * @param changedMediaOnly only check media store entries added or modified since the last scan of a synced
+     *                         folder; all entries are still checked once per day
+     */
     public static void insertAllDBEntries(AppPreferences preferences,
                                           Clock clock,
-                                          boolean skipCustom) {
+                                          boolean skipCustom,
+                                          boolean changedMediaOnly) {
         final Context context = MainApp.getAppContext();
         final ContentResolver contentResolver = context.getContentResolver();
         SyncedFolderProvider syncedFolderProvider = new SyncedFolderProvider(contentResolver, preferences, clock);
 
         for (SyncedFolder syncedFolder : syncedFolderProvider.getSyncedFolders()) {
             if (syncedFolder.isEnabled() && (!skipCustom || syncedFolder.getType() != MediaFolderType.CUSTOM)) {
-                insertAllDBEntriesForSyncedFolder(syncedFolder);
+                insertAllDBEntriesForSyncedFolder(syncedFolder, clock, changedMediaOnly);
             }
         }
     }
 
-    private static void insertContentIntoDB(Uri uri, SyncedFolder syncedFolder) {
+    /**
+     * Stores media of a synced folder. Unless a full scan is requested, only entries added (by id) or modified (by
+     * date) since the last scan are queried.
+     */
+    private static void insertContentIntoDB(Uri uri,
+                                            SyncedFolder syncedFolder,
+                                            FilesystemDataProvider.BulkIndexer indexer,
+                                            ArbitraryDataProvider arbitraryDataProvider,
+                                            boolean fullScan,
+                                            long now) {
         final Context context = MainApp.getAppContext();
-        final ContentResolver contentResolver = context.getContentResolver();
 
         Cursor cursor;
+        int column_index_id;
         int column_index_data;
         int column_index_date_modified;
-
-        final FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
+        int column_index_size;
 
         String contentPath;
         boolean isFolder;
 
-        String[] projection = {MediaStore.MediaColumns.DATA, MediaStore.MediaColumns.DATE_MODIFIED};
+        String[] projection = {MediaStore.MediaColumns._ID, MediaStore.MediaColumns.DATA,
+            MediaStore.MediaColumns.DATE_MODIFIED, MediaStore.MediaColumns.SIZE};
 
         String path = syncedFolder.getLocalPath();
         if (!path.endsWith(PATH_SEPARATOR)) {
@@ -158,22 +217,49 @@ public final class FilesSyncHelper {
 
         long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
 
-        cursor = context.getContentResolver().query(uri, projection, MediaStore.MediaColumns.DATA + " LIKE ?",
-                                                    new String[]{path}, null);
+        String volume = uri.getPathSegments().get(0);
+        String mediaIdKey = KEY_MEDIA_ID + syncedFolder.getId() + "_" + volume;
+        String mediaScanKey = KEY_MEDIA_SCAN + syncedFolder.getId() + "_" + volume;
+        long lastMediaId = fullScan ? -1 : arbitraryDataProvider.getLongValue(GLOBAL, mediaIdKey);
+        long lastMediaScan = fullScan ? -1 : arbitraryDataProvider.getLongValue(GLOBAL, mediaScanKey);
+
+        String selection = MediaStore.MediaColumns.DATA + " LIKE ?";
+        String[] selectionArgs;
+        if (lastMediaId == -1 || lastMediaScan == -1) {
+            selectionArgs = new String[]{path};
+        } else {
+            // date modified is in seconds
+            selection += " AND (" + MediaStore.MediaColumns._ID + " > ? OR " +
+                MediaStore.MediaColumns.DATE_MODIFIED + " >= ?)";
+            selectionArgs = new String[]{path, String.valueOf(lastMediaId), String.valueOf(lastMediaScan / 1000)};
+        }
+
+        cursor = context.getContentResolver().query(uri, projection, selection, selectionArgs, null);
 
         if (cursor != null) {
+            long maxMediaId = lastMediaId;
+
+            column_index_id = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns._ID);
             column_index_data = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
             column_index_date_modified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+            column_index_size = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.SIZE);
             while (cursor.moveToNext()) {
+                maxMediaId = Math.max(maxMediaId, cursor.getLong(column_index_id));
                 contentPath = cursor.getString(column_index_data);
                 isFolder = new File(contentPath).isDirectory();
                 if (syncedFolder.isExisting() || cursor.getLong(column_index_date_modified) >= enabledTimestampMs / 1000.0) {
-                    filesystemDataProvider.storeOrUpdateFileValue(contentPath,
-                                                                  cursor.getLong(column_index_date_modified), isFolder,
-                                                                  syncedFolder);
+                    indexer.add(contentPath,
+                                cursor.getLong(column_index_date_modified),
+                                cursor.getLong(column_index_size),
+                                isFolder);
                 }
             }
             cursor.close();
+
+            // only move the marks after everything found is stored
+            indexer.flush();
+            arbitraryDataProvider.storeOrUpdateKeyValue(GLOBAL, mediaIdKey, maxMediaId);
+            arbitraryDataProvider.storeOrUpdateKeyValue(GLOBAL, mediaScanKey, now);
         }
     }
 
@@ -74,8 +74,15 @@ public class FileCursor extends MatrixCursor {
             return;
         }
 
-        OCFile file = document.getFile();
+        addFile(document, document.getFile());
+    }
 
+    /**
+     * Adds a row for the given document without reading its file again.
+     *
+     * @param file file of the document, e.g. read together with its siblings
+     */
+    public void addFile(DocumentsStorageProvider.Document document, OCFile file) {
         final int iconRes = MimeTypeUtil.getFileTypeIconId(file.getMimeType(), file.getFileName());
         final String mimeType = file.isFolder() ? Document.MIME_TYPE_DIR : file.getMimeType();
         int flags = Document.FLAG_SUPPORTS_DELETE |
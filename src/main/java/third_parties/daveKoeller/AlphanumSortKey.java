@@ -0,0 +1,181 @@
+/*
+ * The Alphanum Algorithm is an improved sorting algorithm for strings
+ * containing numbers.  Instead of sorting numbers in ASCII order like
+ * a standard sort, this algorithm sorts numbers in numeric order.
+ *
+ * The Alphanum Algorithm is discussed at http://www.DaveKoelle.com
+ *
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ */
+
+package third_parties.daveKoeller;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precomputed form of a string for {@link AlphanumComparator}.
+ *
+ * The string is split into chunks once, numbers are reduced to their significant digits and leading zero count, and
+ * collation keys are created at most once per chunk. Comparing two keys gives the same order as
+ * {@link AlphanumComparator#compare(String, String)}, without allocating anything per comparison. Keys are only
+ * comparable if they were created with the same {@link Collator}.
+ */
+public final class AlphanumSortKey implements Comparable<AlphanumSortKey> {
+    private static final int TEXT = 0;
+    private static final int DIGITS = 1;
+    private static final int SPECIAL = 2;
+
+    private final Collator collator;
+    private final int length;
+    private final Chunk[] chunks;
+
+    private static final class Chunk {
+        private final int type;
+        private final String value;
+
+        /**
+         * digits without leading zeros, only for {@link #DIGITS}
+         */
+        private final String significantDigits;
+        private final int leadingZeros;
+        private CollationKey collationKey;
+
+        private Chunk(int type, String value) {
+            this.type = type;
+            this.value = value;
+
+            if (type == DIGITS) {
+                int zeros = 0;
+                while (zeros < value.length() && value.charAt(zeros) == '0') {
+                    zeros++;
+                }
+                leadingZeros = zeros;
+                significantDigits = value.substring(zeros);
+            } else {
+                leadingZeros = 0;
+                significantDigits = null;
+            }
+        }
+
+        private CollationKey getCollationKey(Collator collator) {
+            if (collationKey == null) {
+                collationKey = collator.getCollationKey(value);
+            }
+            return collationKey;
+        }
+    }
+
+    public AlphanumSortKey(String string, Collator collator) {
+        this.collator = collator;
+        length = string.length();
+
+        List<Chunk> list = new ArrayList<>();
+        int marker = 0;
+        while (marker < length) {
+            int end = getChunkEnd(string, marker);
+            char c = string.charAt(marker);
+            int type = isDigit(c) ? DIGITS : isSpecialChar(c) ? SPECIAL : TEXT;
+            list.add(new Chunk(type, string.substring(marker, end)));
+            marker = end;
+        }
+        chunks = list.toArray(new Chunk[0]);
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= 48 && ch <= 57;
+    }
+
+    private static boolean isSpecialChar(char ch) {
+        return ch <= 47 || ch >= 58 && ch <= 64 || ch >= 91 && ch <= 96 || ch >= 123 && ch <= 126;
+    }
+
+    /**
+     * Same chunking as {@link AlphanumComparator}: a run of digits, a run of text or a single special char.
+     */
+    private static int getChunkEnd(String string, int marker) {
+        char c = string.charAt(marker);
+        marker++;
+        if (isDigit(c)) {
+            while (marker < string.length() && isDigit(string.charAt(marker))) {
+                marker++;
+            }
+        } else if (!isSpecialChar(c)) {
+            while (marker < string.length()) {
+                c = string.charAt(marker);
+                if (isDigit(c) || isSpecialChar(c)) {
+                    break;
+                }
+                marker++;
+            }
+        }
+        return marker;
+    }
+
+    @Override
+    public int compareTo(AlphanumSortKey other) {
+        int count = Math.min(chunks.length, other.chunks.length);
+
+        for (int i = 0; i < count; i++) {
+            Chunk thisChunk = chunks[i];
+            Chunk thatChunk = other.chunks[i];
+            int result;
+
+            if (thisChunk.type == DIGITS && thatChunk.type == DIGITS) {
+                result = compareNumbers(thisChunk, thatChunk);
+            } else if (thisChunk.type == SPECIAL && thatChunk.type == SPECIAL) {
+                char thisChar = thisChunk.value.charAt(0);
+                char thatChar = thatChunk.value.charAt(0);
+                if (thisChar == '.' && thatChar != '.') {
+                    result = -1;
+                } else if (thatChar == '.' && thisChar != '.') {
+                    result = 1;
+                } else {
+                    result = thisChar - thatChar;
+                }
+            } else if (thisChunk.type == SPECIAL) {
+                result = -1;
+            } else if (thatChunk.type == SPECIAL) {
+                result = 1;
+            } else {
+                result = thisChunk.getCollationKey(collator).compareTo(thatChunk.getCollationKey(other.collator));
+            }
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return length - other.length;
+    }
+
+    private static int compareNumbers(Chunk thisChunk, Chunk thatChunk) {
+        // numeric value: more significant digits is bigger, same count compares digit by digit
+        int result = Integer.compare(thisChunk.significantDigits.length(), thatChunk.significantDigits.length());
+        if (result == 0) {
+            result = thisChunk.significantDigits.compareTo(thatChunk.significantDigits);
+        }
+
+        if (result == 0) {
+            // value is equal, compare leading zeros
+            result = Integer.compare(thisChunk.leadingZeros, thatChunk.leadingZeros);
+        }
+        return result;
+    }
+}
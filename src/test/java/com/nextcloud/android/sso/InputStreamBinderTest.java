@@ -0,0 +1,190 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.android.sso;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+
+import com.nextcloud.android.sso.aidl.NextcloudRequest;
+import com.nextcloud.client.account.UserAccountManager;
+import com.owncloud.android.lib.common.OwnCloudAccount;
+import com.owncloud.android.utils.EncryptionUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import static com.nextcloud.android.sso.Constants.DELIMITER;
+import static com.nextcloud.android.sso.Constants.SSO_SHARED_PREFERENCE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validates the accounts and tokens of SSO requests, like the binder does for every request of a calling app.
+ */
+public class InputStreamBinderTest {
+    private static final String PACKAGE_NAME = "it.niedermann.owncloud.notes";
+    private static final String ACCOUNT = "user@nextcloud.example.com";
+    private static final String TOKEN = "8f2b4c1e9d7a4b3c8e6f1a2b3c4d5e6f";
+    private static final String SALT = "c2FsdA==";
+    private static final int REQUESTS = 2000;
+
+    private MockedStatic<AccountManager> accountManagerStatic;
+    private SharedPreferences preferences;
+    private UserAccountManager accountManager;
+    private SharedPreferences.OnSharedPreferenceChangeListener grantListener;
+    private int createdAccounts;
+
+    private InputStreamBinder sut;
+
+    @Before
+    public void setUp() {
+        accountManagerStatic = mockStatic(AccountManager.class);
+        accountManagerStatic.when(() -> AccountManager.get(any(Context.class))).thenReturn(mock(AccountManager.class));
+
+        preferences = mock(SharedPreferences.class);
+        when(preferences.getString(PACKAGE_NAME + DELIMITER + ACCOUNT, ""))
+            .thenReturn(EncryptionUtils.generateSHA512(TOKEN, SALT));
+
+        PackageManager packageManager = mock(PackageManager.class);
+        when(packageManager.getNameForUid(anyInt())).thenReturn(PACKAGE_NAME);
+
+        Context context = mock(Context.class);
+        when(context.getSharedPreferences(SSO_SHARED_PREFERENCE, Context.MODE_PRIVATE)).thenReturn(preferences);
+        when(context.getPackageManager()).thenReturn(packageManager);
+
+        accountManager = mock(UserAccountManager.class);
+        when(accountManager.getAccountByName(ACCOUNT)).thenReturn(mock(Account.class));
+
+        sut = new InputStreamBinder(context, accountManager) {
+            @Override
+            OwnCloudAccount createOwnCloudAccount(Account account) {
+                createdAccounts++;
+                return mock(OwnCloudAccount.class);
+            }
+        };
+
+        ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listener =
+            ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+        verify(preferences).registerOnSharedPreferenceChangeListener(listener.capture());
+        grantListener = listener.getValue();
+    }
+
+    @After
+    public void tearDown() {
+        sut.release();
+        accountManagerStatic.close();
+    }
+
+    @Test
+    public void tokenIsValidatedOnce() throws Exception {
+        NextcloudRequest request = createRequest(TOKEN);
+
+        OwnCloudAccount account = sut.getValidatedAccount(request);
+        for (int i = 0; i < 10; i++) {
+            assertSame(account, sut.getValidatedAccount(request));
+        }
+
+        verify(preferences, times(1)).getString(anyString(), anyString());
+        verify(accountManager, times(1)).getAccountByName(ACCOUNT);
+        assertEquals(1, createdAccounts);
+    }
+
+    @Test
+    public void tokenIsValidatedAgainAfterGrantChange() throws Exception {
+        NextcloudRequest request = createRequest(TOKEN);
+        sut.getValidatedAccount(request);
+
+        grantListener.onSharedPreferenceChanged(preferences, PACKAGE_NAME + DELIMITER + ACCOUNT);
+        sut.getValidatedAccount(request);
+
+        verify(preferences, times(2)).getString(anyString(), anyString());
+        assertEquals(2, createdAccounts);
+    }
+
+    @Test
+    public void invalidTokenIsNotCached() throws Exception {
+        NextcloudRequest request = createRequest("invalid token");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                sut.getValidatedAccount(request);
+                fail("Invalid token was accepted");
+            } catch (IllegalStateException e) {
+                assertEquals(Constants.EXCEPTION_INVALID_TOKEN, e.getMessage());
+            }
+        }
+
+        verify(preferences, times(2)).getString(anyString(), anyString());
+        assertEquals(0, createdAccounts);
+    }
+
+    /**
+     * Benchmark of validating every request against using the cache of validated tokens; timings are only printed as
+     * they depend on the machine.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        NextcloudRequest request = createRequest(TOKEN);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            // previous behaviour, no request is served from the cache
+            grantListener.onSharedPreferenceChanged(preferences, PACKAGE_NAME + DELIMITER + ACCOUNT);
+            sut.getValidatedAccount(request);
+        }
+        long validationTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            sut.getValidatedAccount(request);
+        }
+        long cacheTime = System.nanoTime() - start;
+
+        System.out.println("Validating " + REQUESTS + " requests: every request " + validationTime / 1000 +
+                               "µs, cached " + cacheTime / 1000 + "µs");
+
+        assertEquals(REQUESTS, createdAccounts);
+    }
+
+    private static NextcloudRequest createRequest(String token) {
+        return new NextcloudRequest.Builder()
+            .setMethod("GET")
+            .setUrl("/ocs/v2.php/cloud/user")
+            .setAccountName(ACCOUNT)
+            .setToken(token)
+            .build();
+    }
+}
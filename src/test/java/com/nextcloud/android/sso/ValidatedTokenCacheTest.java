@@ -0,0 +1,78 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.android.sso;
+
+import com.owncloud.android.lib.common.OwnCloudAccount;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class ValidatedTokenCacheTest {
+    private static final int UID = 10123;
+    private static final String ACCOUNT = "user@nextcloud.example.com";
+    private static final String TOKEN = "8f2b4c1e9d7a4b3c8e6f1a2b3c4d5e6f";
+
+    private ValidatedTokenCache sut;
+    private OwnCloudAccount account;
+
+    @Before
+    public void setUp() {
+        sut = new ValidatedTokenCache();
+        account = mock(OwnCloudAccount.class);
+    }
+
+    @Test
+    public void validatedToken() {
+        assertNull(sut.get(UID, ACCOUNT, TOKEN));
+
+        sut.put(UID, ACCOUNT, TOKEN, account, sut.getGeneration());
+
+        assertSame(account, sut.get(UID, ACCOUNT, TOKEN));
+        assertNull(sut.get(UID, ACCOUNT, "other token"));
+        assertNull(sut.get(UID, ACCOUNT, null));
+        assertNull(sut.get(UID + 1, ACCOUNT, TOKEN));
+        assertNull(sut.get(UID, "other@nextcloud.example.com", TOKEN));
+    }
+
+    @Test
+    public void clear() {
+        sut.put(UID, ACCOUNT, TOKEN, account, sut.getGeneration());
+
+        sut.clear();
+
+        assertNull(sut.get(UID, ACCOUNT, TOKEN));
+    }
+
+    @Test
+    public void tokenValidatedBeforeClearIsNotAdded() {
+        long generation = sut.getGeneration();
+        // grant revoked while the token was validated
+        sut.clear();
+
+        sut.put(UID, ACCOUNT, TOKEN, account, generation);
+
+        assertNull(sut.get(UID, ACCOUNT, TOKEN));
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.android.sso.aidl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Transfers responses to the output stream handed to the calling app, like it is done for the response streams of
+ * SSO requests.
+ */
+public class ParcelFileDescriptorUtilTest {
+    private static final int RESPONSE_SIZE = 8 * 1024 * 1024 + 123;
+    private static final long TIMEOUT = 10;
+    private static final int BENCHMARK_RESPONSES = 1000;
+    private static final int BENCHMARK_RESPONSE_SIZE = 32 * 1024;
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    @Test
+    public void transfer() {
+        AtomicBoolean finished = new AtomicBoolean();
+        ResponseStream response = new ResponseStream(RESPONSE_SIZE, false);
+        VerifyingOutputStream output = new VerifyingOutputStream();
+
+        new ParcelFileDescriptorUtil.Transfer(response, output, thread -> finished.set(true), null).run();
+
+        assertEquals(RESPONSE_SIZE, output.count);
+        assertTrue(output.closed);
+        assertTrue(response.closed);
+        assertTrue(finished.get());
+    }
+
+    @Test
+    public void transferOfShortReads() {
+        // network streams return less than requested
+        ResponseStream response = new ResponseStream(RESPONSE_SIZE, true);
+        VerifyingOutputStream output = new VerifyingOutputStream();
+
+        new ParcelFileDescriptorUtil.Transfer(response, output, null, null).run();
+
+        assertEquals(RESPONSE_SIZE, output.count);
+        assertTrue(output.closed);
+    }
+
+    @Test
+    public void transfersBeyondPoolDoNotWait() throws Exception {
+        int transfers = ParcelFileDescriptorUtil.MAX_POOLED_TRANSFERS + 2;
+        CountDownLatch started = new CountDownLatch(transfers);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(transfers);
+
+        List<VerifyingOutputStream> outputs = new ArrayList<>();
+        for (int i = 0; i < transfers; i++) {
+            VerifyingOutputStream output = new VerifyingOutputStream();
+            outputs.add(output);
+            ResponseStream response = new ResponseStream(RESPONSE_SIZE / 8, false) {
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    started.countDown();
+                    try {
+                        // long download, keeps its thread busy
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.read(b, off, len);
+                }
+            };
+            ParcelFileDescriptorUtil.transfer(response, output, thread -> finished.countDown(), null);
+        }
+
+        // all transfers run at once, none waits for a pooled thread
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        for (VerifyingOutputStream output : outputs) {
+            assertEquals(RESPONSE_SIZE / 8, output.count);
+            assertTrue(output.closed);
+        }
+    }
+
+    /**
+     * Benchmark of pumping many small responses, as made by apps syncing via SSO, through a pipe: with a new thread
+     * and a 1KB buffer per response, as before, and with {@link ParcelFileDescriptorUtil#transfer}. Timings are only
+     * printed as they depend on the machine.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        // warm up
+        pumpResponses(BENCHMARK_RESPONSES / 10, true);
+        pumpResponses(BENCHMARK_RESPONSES / 10, false);
+
+        long start = System.nanoTime();
+        pumpResponses(BENCHMARK_RESPONSES, true);
+        long threadTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        pumpResponses(BENCHMARK_RESPONSES, false);
+        long pooledTime = System.nanoTime() - start;
+
+        System.out.println("Pumping " + BENCHMARK_RESPONSES + " responses of " + BENCHMARK_RESPONSE_SIZE / 1024 +
+                               "KB: thread per response " + threadTime / 1000000 + "ms, pooled " +
+                               pooledTime / 1000000 + "ms");
+    }
+
+    /**
+     * @param threadPerResponse true to pump like before, on a new thread with a 1KB buffer
+     */
+    private void pumpResponses(int responses, boolean threadPerResponse) throws Exception {
+        byte[] buffer = new byte[PIPE_SIZE];
+        for (int i = 0; i < responses; i++) {
+            PipedInputStream readSide = new PipedInputStream(PIPE_SIZE);
+            PipedOutputStream writeSide = new PipedOutputStream(readSide);
+            InputStream response = new ResponseStream(BENCHMARK_RESPONSE_SIZE, false);
+
+            if (threadPerResponse) {
+                new Thread(() -> {
+                    byte[] buf = new byte[1024];
+                    int len;
+                    try {
+                        while ((len = response.read(buf)) > 0) {
+                            writeSide.write(buf, 0, len);
+                        }
+                        writeSide.close();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }).start();
+            } else {
+                ParcelFileDescriptorUtil.transfer(response, writeSide, null, null);
+            }
+
+            long total = 0;
+            int read;
+            while ((read = readSide.read(buffer)) != -1) {
+                total += read;
+            }
+            assertEquals(BENCHMARK_RESPONSE_SIZE, total);
+        }
+    }
+
+    private static byte contentAt(long position) {
+        return (byte) (position % 251);
+    }
+
+    private static class ResponseStream extends InputStream {
+        private final Random random = new Random(42);
+        private final boolean shortReads;
+        private final int size;
+        private int position;
+        private boolean closed;
+
+        ResponseStream(int size, boolean shortReads) {
+            this.size = size;
+            this.shortReads = shortReads;
+        }
+
+        @Override
+        public int read() {
+            if (position == size) {
+                return -1;
+            }
+            return contentAt(position++) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == size) {
+                return -1;
+            }
+            int count = Math.min(len, size - position);
+            if (shortReads) {
+                count = random.nextInt(count) + 1;
+            }
+            for (int i = 0; i < count; i++) {
+                b[off + i] = contentAt(position++);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Checks that the written bytes are the content of {@link ResponseStream}, in order.
+     */
+    private static class VerifyingOutputStream extends OutputStream {
+        private long count;
+        private boolean closed;
+
+        @Override
+        public void write(int b) {
+            assertEquals(contentAt(count), (byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = 0; i < len; i++) {
+                write(b[off + i]);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
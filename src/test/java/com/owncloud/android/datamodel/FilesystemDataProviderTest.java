@@ -0,0 +1,120 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the block based checksum against reading the file byte by byte, on a generated directory tree.
+ */
+public class FilesystemDataProviderTest {
+    private static final int FOLDERS = 4;
+    private static final int FILES_PER_FOLDER = 10;
+    private static final int MAX_FILE_SIZE = 512 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<File> files = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+
+        for (int i = 0; i < FOLDERS; i++) {
+            File folder = temporaryFolder.newFolder("DCIM", "folder" + i);
+            for (int j = 0; j < FILES_PER_FOLDER; j++) {
+                // odd sizes, so the last block is not full
+                byte[] content = new byte[random.nextInt(MAX_FILE_SIZE) + 1];
+                random.nextBytes(content);
+
+                File file = new File(folder, "IMG_" + j + ".jpg");
+                try (OutputStream outputStream = new FileOutputStream(file)) {
+                    outputStream.write(content);
+                }
+                files.add(file);
+            }
+        }
+
+        // empty file
+        files.add(temporaryFolder.newFile("empty.jpg"));
+    }
+
+    @Test
+    public void sameChecksum() throws IOException {
+        for (File file : files) {
+            assertEquals(file.getName(),
+                         getChecksumPerByte(file),
+                         FilesystemDataProvider.getFileChecksum(file.getAbsolutePath()));
+        }
+    }
+
+    @Test
+    public void missingFile() {
+        assertEquals(-1, FilesystemDataProvider.getFileChecksum(new File(temporaryFolder.getRoot(), "missing.jpg")
+                                                                    .getAbsolutePath()));
+    }
+
+    @Test
+    public void knownChecksum() throws IOException {
+        File file = temporaryFolder.newFile("check.txt");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write("123456789".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        // check value of CRC-32
+        assertEquals(0xCBF43926L, FilesystemDataProvider.getFileChecksum(file.getAbsolutePath()));
+        assertEquals(0, FilesystemDataProvider.getFileChecksum(new File(temporaryFolder.getRoot(), "empty.jpg")
+                                                                   .getAbsolutePath()));
+    }
+
+    /**
+     * previous implementation
+     */
+    private long getChecksumPerByte(File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            CRC32 crc = new CRC32();
+            int cnt;
+            while ((cnt = inputStream.read()) != -1) {
+                crc.update(cnt);
+            }
+            return crc.getValue();
+        }
+    }
+}
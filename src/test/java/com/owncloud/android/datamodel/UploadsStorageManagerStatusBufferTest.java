@@ -0,0 +1,93 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+
+import com.owncloud.android.MainApp;
+import com.owncloud.android.files.services.FileUploader;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.operations.UploadFileOperation;
+
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the provider calls of the status changes of an auto upload run.
+ */
+public class UploadsStorageManagerStatusBufferTest {
+    private static final int UPLOADS = 1000;
+
+    @Test
+    public void autoUploadProviderCalls() throws Exception {
+        ContentResolver contentResolver = mock(ContentResolver.class);
+        when(contentResolver.applyBatch(anyString(), any())).thenReturn(new ContentProviderResult[0]);
+        Mockito.clearInvocations(contentResolver);
+
+        try (MockedStatic<MainApp> mainApp = mockStatic(MainApp.class);
+             MockedStatic<ContentProviderOperation> operations = mockStatic(ContentProviderOperation.class)) {
+            mainApp.when(MainApp::getAuthority).thenReturn("org.nextcloud");
+            operations.when(() -> ContentProviderOperation.newUpdate(any()))
+                .thenAnswer(invocation -> mock(ContentProviderOperation.Builder.class, RETURNS_SELF));
+
+            UploadsStorageManager sut = new UploadsStorageManager(() -> null, contentResolver);
+
+            RemoteOperationResult success = mock(RemoteOperationResult.class);
+            when(success.isSuccess()).thenReturn(true);
+
+            // mocked in advance, so that the run does not take long enough for time based flushes
+            UploadFileOperation[] uploads = new UploadFileOperation[UPLOADS];
+            for (int i = 0; i < UPLOADS; i++) {
+                uploads[i] = mock(UploadFileOperation.class);
+                when(uploads[i].getOCUploadId()).thenReturn((long) i);
+                when(uploads[i].getLocalBehaviour()).thenReturn(FileUploader.LOCAL_BEHAVIOUR_FORGET);
+                when(uploads[i].getRemotePath()).thenReturn("/InstantUpload/IMG_" + i + ".jpg");
+            }
+
+            for (UploadFileOperation upload : uploads) {
+                sut.updateDatabaseUploadStart(upload);
+                sut.updateDatabaseUploadResult(success, upload);
+            }
+            sut.flushStatusUpdates();
+
+            Collection<Invocation> calls = Mockito.mockingDetails(contentResolver).getInvocations();
+            for (Invocation call : calls) {
+                assertEquals("applyBatch", call.getMethod().getName());
+            }
+            // one batch per full buffer, before buffering every status change queried the upload and updated it
+            assertEquals(UPLOADS / UploadsStorageManager.STATUS_BUFFER_SIZE, calls.size());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadSchedulerTest {
+    private static final String ACCOUNT_A = "a@server";
+    private static final String ACCOUNT_B = "b@server";
+    private static final long TIMEOUT = 5;
+
+    private ExecutorService executor;
+
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger lastStartId = new AtomicInteger();
+    private CountDownLatch release = new CountDownLatch(0);
+    private CountDownLatch idle = new CountDownLatch(1);
+
+    private final UploadScheduler.Callback callback = new UploadScheduler.Callback() {
+        @Override
+        public void upload(String uploadKey) {
+            started.add(uploadKey);
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onIdle(int startId) {
+            lastStartId.set(startId);
+            idle.countDown();
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrencyIsBounded() throws InterruptedException {
+        UploadScheduler sut = createScheduler(3);
+        release = new CountDownLatch(1);
+
+        for (int i = 0; i < 10; i++) {
+            enqueue(sut, ACCOUNT_A, "/folder" + i + "/file.jpg");
+        }
+        sut.schedule(7);
+
+        waitFor(() -> sut.getRunningCount() == 3 && started.size() == 3);
+        assertEquals(7, sut.getQueuedCount());
+
+        release.countDown();
+
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(10, started.size());
+        assertEquals(3, maxRunning.get());
+        assertEquals(7, lastStartId.get());
+    }
+
+    @Test
+    public void firstUploadIntoFolderRunsAlone() throws InterruptedException {
+        UploadScheduler sut = createScheduler(3);
+        release = new CountDownLatch(1);
+
+        enqueue(sut, ACCOUNT_A, "/folder/1.jpg");
+        enqueue(sut, ACCOUNT_A, "/folder/2.jpg");
+        enqueue(sut, ACCOUNT_A, "/folder/3.jpg");
+        enqueue(sut, ACCOUNT_A, "/other/1.jpg");
+        sut.schedule(1);
+
+        // first upload into /folder/ blocks the others of the same folder, but not /other/
+        waitFor(() -> started.size() == 2);
+        assertEquals(new HashSet<>(Arrays.asList(ACCOUNT_A + "/folder/1.jpg", ACCOUNT_A + "/other/1.jpg")),
+                     new HashSet<>(started));
+        assertEquals(2, sut.getQueuedCount());
+
+        release.countDown();
+
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(4, started.size());
+    }
+
+    @Test
+    public void firstUploadBelowMissingParentRunsAlone() throws InterruptedException {
+        UploadScheduler sut = createScheduler(3);
+        release = new CountDownLatch(1);
+
+        enqueue(sut, ACCOUNT_A, "/parent/folder/1.jpg");
+        enqueue(sut, ACCOUNT_A, "/parent/sibling/1.jpg");
+        enqueue(sut, ACCOUNT_A, "/other/1.jpg");
+        sut.schedule(1);
+
+        // both uploads could create /parent/, the second waits for the first
+        waitFor(() -> started.size() == 2);
+        assertEquals(new HashSet<>(Arrays.asList(ACCOUNT_A + "/parent/folder/1.jpg", ACCOUNT_A + "/other/1.jpg")),
+                     new HashSet<>(started));
+        assertEquals(1, sut.getQueuedCount());
+
+        release.countDown();
+
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(3, started.size());
+    }
+
+    @Test
+    public void orderIsKeptAndAccountsAreServedRoundRobin() throws InterruptedException {
+        UploadScheduler sut = createScheduler(1);
+
+        enqueue(sut, ACCOUNT_A, "/folder/1.jpg");
+        enqueue(sut, ACCOUNT_A, "/folder/2.jpg");
+        enqueue(sut, ACCOUNT_A, "/folder/3.jpg");
+        enqueue(sut, ACCOUNT_B, "/folder/1.jpg");
+        enqueue(sut, ACCOUNT_B, "/folder/2.jpg");
+        sut.schedule(1);
+
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(ACCOUNT_A + "/folder/1.jpg",
+                                   ACCOUNT_B + "/folder/1.jpg",
+                                   ACCOUNT_A + "/folder/2.jpg",
+                                   ACCOUNT_B + "/folder/2.jpg",
+                                   ACCOUNT_A + "/folder/3.jpg"),
+                     started);
+    }
+
+    @Test
+    public void shutdownDropsQueuedUploads() throws InterruptedException {
+        UploadScheduler sut = createScheduler(1);
+        release = new CountDownLatch(1);
+
+        enqueue(sut, ACCOUNT_A, "/folder/1.jpg");
+        enqueue(sut, ACCOUNT_A, "/folder/2.jpg");
+        sut.schedule(1);
+
+        waitFor(() -> started.size() == 1);
+        sut.shutdown();
+        enqueue(sut, ACCOUNT_A, "/folder/3.jpg");
+        release.countDown();
+
+        assertTrue(idle.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, started.size());
+        assertEquals(0, sut.getQueuedCount());
+    }
+
+    private UploadScheduler createScheduler(int workers) {
+        executor = Executors.newFixedThreadPool(workers);
+        return new UploadScheduler(workers, executor, callback);
+    }
+
+    private void enqueue(UploadScheduler scheduler, String accountName, String remotePath) {
+        scheduler.enqueue(accountName, remotePath, accountName + remotePath);
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private void waitFor(Condition condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (!condition.isMet()) {
+            assertTrue("Timeout", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+}
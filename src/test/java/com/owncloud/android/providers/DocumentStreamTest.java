@@ -0,0 +1,227 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import android.os.HandlerThread;
+import android.system.ErrnoException;
+
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.OwnCloudClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reads through the seekable descriptor callback, with the download and ranged GETs simulated.
+ */
+public class DocumentStreamTest {
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final long TIMEOUT = 5;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger rangeReads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private File tmpFile;
+    private OutputStream download;
+    private RandomAccessFile reader;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpFile = folder.newFile();
+        download = new FileOutputStream(tmpFile);
+        reader = new RandomAccessFile(tmpFile, "r");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        download.close();
+        reader.close();
+    }
+
+    @Test
+    public void readDownloadedData() throws Exception {
+        DocumentStream sut = createStream(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, 1000);
+
+        byte[] data = new byte[100];
+        assertEquals(100, callback.onRead(200, 100, data));
+        assertContent(200, data, 100);
+
+        assertEquals(100, callback.onRead(900, 100, data));
+        assertContent(900, data, 100);
+        assertEquals(0, rangeReads.get());
+    }
+
+    @Test
+    public void readAheadWaitsForDownload() throws Exception {
+        DocumentStream sut = createStream(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, 1000);
+
+        byte[] data = new byte[1000];
+        Future<Integer> read = executor.submit(() -> callback.onRead(5000, 1000, data));
+
+        download(sut, 1000, 3000);
+        assertFalse(read.isDone());
+        download(sut, 4000, 3000);
+
+        assertEquals(1000, (int) read.get(TIMEOUT, TimeUnit.SECONDS));
+        assertContent(5000, data, 1000);
+        assertEquals(0, rangeReads.get());
+    }
+
+    @Test
+    public void readFarAheadUsesRanges() throws Exception {
+        DocumentStream sut = createStream(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, 1000);
+
+        byte[] data = new byte[1000];
+        int offset = 3 * 1024 * 1024;
+        assertEquals(1000, callback.onRead(offset, 1000, data));
+        assertContent(offset, data, 1000);
+
+        // served from the buffer of the previous ranged read
+        assertEquals(1000, callback.onRead(offset + 5000, 1000, data));
+        assertContent(offset + 5000, data, 1000);
+        assertEquals(1, rangeReads.get());
+
+        // end of file
+        assertEquals(24, callback.onRead(FILE_SIZE - 24, 1000, data));
+        assertContent(FILE_SIZE - 24, data, 24);
+        assertEquals(2, rangeReads.get());
+    }
+
+    @Test
+    public void readAfterCompleteDownload() throws Exception {
+        DocumentStream sut = createStream(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, FILE_SIZE);
+        sut.onDownloadFinished(true);
+
+        byte[] data = new byte[1000];
+        assertEquals(1000, callback.onRead(FILE_SIZE - 1000, 1000, data));
+        assertContent(FILE_SIZE - 1000, data, 1000);
+        assertEquals(0, callback.onRead(FILE_SIZE, 1000, data));
+        assertEquals(0, rangeReads.get());
+    }
+
+    @Test
+    public void readAfterFailedDownloadUsesRanges() throws Exception {
+        DocumentStream sut = createStream(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, 1000);
+        sut.onDownloadFinished(false);
+
+        byte[] data = new byte[1000];
+        assertEquals(1000, callback.onRead(2000, 1000, data));
+        assertContent(2000, data, 1000);
+        assertEquals(1, rangeReads.get());
+    }
+
+    @Test
+    public void stalledDownloadFailsRead() throws Exception {
+        DocumentStream sut = createStream(100);
+        DocumentStream.ProxyCallback callback = createCallback(sut);
+        download(sut, 0, 1000);
+
+        try {
+            callback.onRead(1000, 1000, new byte[1000]);
+            fail("Read of stalled download did not fail");
+        } catch (ErrnoException e) {
+            // expected
+        }
+    }
+
+    private DocumentStream createStream(long readTimeout) {
+        OCFile file = new OCFile("/file.bin");
+        file.setFileLength(FILE_SIZE);
+
+        return new DocumentStream(mock(OwnCloudClient.class),
+                                  mock(FileDataStorageManager.class),
+                                  file,
+                                  tmpFile,
+                                  readTimeout) {
+            @Override
+            int readRange(long offset, byte[] data, int size) {
+                rangeReads.incrementAndGet();
+                if (offset >= FILE_SIZE) {
+                    return -1;
+                }
+                int count = (int) Math.min(size, FILE_SIZE - offset);
+                for (int i = 0; i < count; i++) {
+                    data[i] = contentAt(offset + i);
+                }
+                return count;
+            }
+        };
+    }
+
+    private DocumentStream.ProxyCallback createCallback(DocumentStream stream) {
+        return stream.new ProxyCallback(reader, mock(HandlerThread.class));
+    }
+
+    private void download(DocumentStream stream, long offset, int count) throws IOException {
+        byte[] data = new byte[count];
+        for (int i = 0; i < count; i++) {
+            data[i] = contentAt(offset + i);
+        }
+        download.write(data);
+        download.flush();
+        stream.onDownloaded(count);
+    }
+
+    private static byte contentAt(long position) {
+        return (byte) (position % 251);
+    }
+
+    private static void assertContent(long offset, byte[] data, int count) {
+        for (int i = 0; i < count; i++) {
+            if (contentAt(offset + i) != data[i]) {
+                fail("Wrong content at " + (offset + i));
+            }
+        }
+    }
+}
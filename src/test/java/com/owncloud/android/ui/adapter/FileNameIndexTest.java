@@ -0,0 +1,108 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.utils.FileSortOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileNameIndexTest {
+    private static final String FOLDER = "/folder/";
+
+    private final List<OCFile> files = new ArrayList<>();
+    private long nextId = 1;
+
+    @Before
+    public void setUp() {
+        add(FOLDER + "photo 2.jpg");
+        add(FOLDER + "photo 10.jpg");
+        add(FOLDER + "Document.pdf");
+        add(FOLDER + ".hidden photo.jpg");
+        add("/other/photo.jpg");
+        // same file twice
+        files.add(files.get(0));
+    }
+
+    @Test
+    public void searchIgnoresCase() {
+        FileNameIndex sut = new FileNameIndex(files, FOLDER, false, FileSortOrder.sort_a_to_z);
+
+        assertEquals(Arrays.asList("photo 2.jpg", "photo 10.jpg"), names(sut.search("PHOTO", null)));
+        assertEquals(Arrays.asList("Document.pdf"), names(sut.search("doc", null)));
+        assertTrue(names(sut.search("missing", null)).isEmpty());
+    }
+
+    @Test
+    public void hiddenFiles() {
+        FileNameIndex sut = new FileNameIndex(files, FOLDER, true, FileSortOrder.sort_a_to_z);
+
+        assertEquals(Arrays.asList(".hidden photo.jpg", "photo 2.jpg", "photo 10.jpg"),
+                     names(sut.search("photo", null)));
+    }
+
+    @Test
+    public void narrowingGivesSameResultAsFullSearch() {
+        for (int i = 0; i < 500; i++) {
+            add(FOLDER + "file " + i + ".txt");
+        }
+        FileNameIndex sut = new FileNameIndex(files, FOLDER, false, FileSortOrder.sort_z_to_a);
+
+        FileNameIndex.Matches matches = null;
+        for (String query : Arrays.asList("f", "fi", "file 1", "file 12", "FILE 123", "file 2", "e 2")) {
+            matches = sut.search(query, matches);
+            assertEquals(query, names(sut.search(query, null)), names(matches));
+        }
+    }
+
+    @Test
+    public void validity() {
+        FileNameIndex sut = new FileNameIndex(files, FOLDER, false, FileSortOrder.sort_a_to_z);
+
+        assertTrue(sut.isValidFor(FOLDER, false, FileSortOrder.sort_a_to_z));
+        assertFalse(sut.isValidFor("/other/", false, FileSortOrder.sort_a_to_z));
+        assertFalse(sut.isValidFor(FOLDER, true, FileSortOrder.sort_a_to_z));
+        assertFalse(sut.isValidFor(FOLDER, false, FileSortOrder.sort_z_to_a));
+    }
+
+    private void add(String path) {
+        OCFile file = new OCFile(path);
+        file.setFileId(nextId++);
+        files.add(file);
+    }
+
+    private List<String> names(FileNameIndex.Matches matches) {
+        List<String> names = new ArrayList<>();
+        for (OCFile file : matches.getFiles()) {
+            names.add(file.getFileName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.nextcloud.client.network.Connectivity;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.ThumbnailsCacheManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThumbnailPrefetcherTest {
+    private static final int FILES = 100;
+    private static final int ROWS = 2;
+
+    private final Connectivity unmetered = new Connectivity(true, false, true, true);
+    private final Connectivity metered = new Connectivity(true, true, false, true);
+
+    private OCFileListAdapter adapter;
+    private ConnectivityService connectivityService;
+    private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
+    private final OCFile[] files = new OCFile[FILES];
+    private final Map<OCFile, ThumbnailsCacheManager.ThumbnailGenerationTask> tasks = new HashMap<>();
+
+    private ThumbnailPrefetcher sut;
+
+    @Before
+    public void setUp() {
+        adapter = mock(OCFileListAdapter.class);
+        when(adapter.getItemCount()).thenReturn(FILES);
+        for (int i = 0; i < FILES; i++) {
+            OCFile file = mock(OCFile.class);
+            when(file.getRemoteId()).thenReturn("remoteId" + i);
+            when(file.isDown()).thenReturn(i % 2 == 0);
+            files[i] = file;
+
+            when(adapter.getFileAtPosition(i)).thenReturn(file);
+
+            ThumbnailsCacheManager.ThumbnailGenerationTask task =
+                mock(ThumbnailsCacheManager.ThumbnailGenerationTask.class);
+            tasks.put(file, task);
+            when(adapter.prefetchThumbnail(file, true)).thenReturn(task);
+            when(adapter.prefetchThumbnail(file, false)).thenReturn(task);
+        }
+
+        connectivityService = mock(ConnectivityService.class);
+        when(connectivityService.getConnectivity()).thenReturn(unmetered);
+
+        layoutManager = mock(LinearLayoutManager.class);
+        recyclerView = mock(RecyclerView.class);
+        when(recyclerView.getLayoutManager()).thenReturn(layoutManager);
+
+        sut = new ThumbnailPrefetcher(adapter, connectivityService, ROWS) {
+            @Override
+            boolean isThumbnailCached(OCFile file) {
+                return false;
+            }
+        };
+    }
+
+    @Test
+    public void rowsBelowArePrefetchedWhenScrollingDown() {
+        scroll(10, 19, 10);
+
+        verify(adapter).prefetchThumbnail(files[20], true);
+        verify(adapter).prefetchThumbnail(files[21], true);
+        verify(adapter, times(2)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void rowsAboveArePrefetchedWhenScrollingUp() {
+        scroll(10, 19, -10);
+
+        verify(adapter).prefetchThumbnail(files[9], true);
+        verify(adapter).prefetchThumbnail(files[8], true);
+        verify(adapter, times(2)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void rowsOfGridArePrefetched() {
+        GridLayoutManager gridLayoutManager = mock(GridLayoutManager.class);
+        when(gridLayoutManager.getSpanCount()).thenReturn(3);
+        layoutManager = gridLayoutManager;
+        when(recyclerView.getLayoutManager()).thenReturn(gridLayoutManager);
+
+        scroll(12, 23, 10);
+
+        for (int position = 24; position < 30; position++) {
+            verify(adapter).prefetchThumbnail(files[position], true);
+        }
+        verify(adapter, times(6)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void rangeEndsAtLastFile() {
+        scroll(90, 98, 10);
+
+        verify(adapter).prefetchThumbnail(files[99], true);
+        verify(adapter, times(1)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void unchangedRangeIsNotPrefetchedAgain() {
+        scroll(10, 19, 10);
+        scroll(10, 19, 10);
+
+        verify(adapter, times(2)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void prefetchesOutOfRangeAreCancelled() {
+        scroll(10, 19, 10);
+        scroll(30, 39, 10);
+
+        verify(tasks.get(files[20])).cancel(true);
+        verify(tasks.get(files[21])).cancel(true);
+        verify(adapter).prefetchThumbnail(files[40], true);
+        verify(adapter).prefetchThumbnail(files[41], true);
+    }
+
+    @Test
+    public void prefetchesOfVisibleRowsAreNotCancelled() {
+        scroll(10, 19, 10);
+        // prefetched rows became visible
+        scroll(12, 21, 10);
+
+        verify(tasks.get(files[20]), never()).cancel(true);
+        verify(tasks.get(files[21]), never()).cancel(true);
+        verify(adapter).prefetchThumbnail(files[22], true);
+        verify(adapter).prefetchThumbnail(files[23], true);
+    }
+
+    @Test
+    public void onlyDownloadedFilesArePrefetchedOnMeteredNetwork() {
+        when(connectivityService.getConnectivity()).thenReturn(metered);
+
+        scroll(10, 19, 10);
+
+        verify(adapter).prefetchThumbnail(files[20], false);
+        verify(adapter, never()).prefetchThumbnail(files[21], false);
+        verify(adapter, times(1)).prefetchThumbnail(any(), anyBoolean());
+    }
+
+    @Test
+    public void pauseCancelsAllPrefetches() {
+        scroll(10, 19, 10);
+
+        sut.pause();
+        scroll(30, 39, 10);
+
+        verify(tasks.get(files[20])).cancel(true);
+        verify(tasks.get(files[21])).cancel(true);
+        verify(adapter, times(2)).prefetchThumbnail(any(), anyBoolean());
+
+        sut.resume();
+        scroll(30, 39, 10);
+
+        verify(adapter).prefetchThumbnail(files[40], true);
+        verify(adapter).prefetchThumbnail(files[41], true);
+    }
+
+    @Test
+    public void detachStopsListening() {
+        sut.attach(recyclerView);
+        ArgumentCaptor<RecyclerView.AdapterDataObserver> observer =
+            ArgumentCaptor.forClass(RecyclerView.AdapterDataObserver.class);
+        verify(adapter).registerAdapterDataObserver(observer.capture());
+        scroll(10, 19, 10);
+
+        sut.detach(recyclerView);
+
+        verify(recyclerView).removeOnScrollListener(sut);
+        verify(adapter).unregisterAdapterDataObserver(observer.getValue());
+        verify(tasks.get(files[20])).cancel(true);
+        verify(tasks.get(files[21])).cancel(true);
+    }
+
+    private void scroll(int firstVisible, int lastVisible, int dy) {
+        when(layoutManager.findFirstVisibleItemPosition()).thenReturn(firstVisible);
+        when(layoutManager.findLastVisibleItemPosition()).thenReturn(lastVisible);
+        sut.onScrolled(recyclerView, 0, dy);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.preview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextFilePagesTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pagesOfLines() throws IOException {
+        String text = lines(1050);
+        File file = write(text.getBytes(StandardCharsets.UTF_8));
+
+        try (TextFilePages sut = new TextFilePages(file, StandardCharsets.UTF_8)) {
+            assertEquals(11, sut.indexPages(100));
+            assertTrue(sut.isComplete());
+            assertEquals(0, sut.indexPages(100));
+
+            assertEquals(text, readAll(sut));
+            assertTrue(sut.readPage(1).startsWith("line 100 äöü€\n"));
+        }
+    }
+
+    @Test
+    public void incrementalIndex() throws IOException {
+        File file = write(lines(1050).getBytes(StandardCharsets.UTF_8));
+
+        try (TextFilePages sut = new TextFilePages(file, StandardCharsets.UTF_8)) {
+            assertEquals(2, sut.indexPages(2));
+            assertFalse(sut.isComplete());
+            assertEquals(2, sut.getPageCount());
+            assertTrue(sut.readPage(1).endsWith("line 199 äöü€"));
+
+            assertEquals(9, sut.indexPages(100));
+            assertTrue(sut.isComplete());
+        }
+    }
+
+    @Test
+    public void longLineIsSplit() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            // two and four bytes, the latter as surrogate pair
+            builder.append("ä\uD83D\uDE00");
+        }
+        String text = builder.toString();
+        File file = write(text.getBytes(StandardCharsets.UTF_8));
+
+        try (TextFilePages sut = new TextFilePages(file, StandardCharsets.UTF_8)) {
+            sut.indexPages(100);
+
+            assertTrue(sut.getPageCount() > 1);
+            StringBuilder pages = new StringBuilder();
+            for (int page = 0; page < sut.getPageCount(); page++) {
+                String pageText = sut.readPage(page);
+                assertTrue(pageText.length() <= TextFilePages.MAX_PAGE_CHARS);
+                pages.append(pageText);
+            }
+            assertEquals(text, pages.toString());
+        }
+    }
+
+    @Test
+    public void multiByteCharset() throws IOException {
+        Charset charset = StandardCharsets.UTF_16LE;
+        String text = lines(250);
+        File file = write(text.getBytes(charset));
+
+        try (TextFilePages sut = new TextFilePages(file, charset)) {
+            assertEquals(3, sut.indexPages(100));
+            assertEquals(text, readAll(sut));
+        }
+    }
+
+    @Test
+    public void byteOrderMarkIsSkipped() throws IOException {
+        File file = write(("\uFEFFfirst\nsecond\n").getBytes(StandardCharsets.UTF_8));
+
+        try (TextFilePages sut = new TextFilePages(file, StandardCharsets.UTF_8)) {
+            sut.indexPages(1);
+
+            assertEquals("first\nsecond", sut.readPage(0));
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        File file = write(new byte[0]);
+
+        try (TextFilePages sut = new TextFilePages(file, StandardCharsets.UTF_8)) {
+            assertEquals(0, sut.indexPages(1));
+            assertTrue(sut.isComplete());
+        }
+    }
+
+    private static String lines(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append("line ").append(i).append(" äöü€");
+            if (i < count - 1) {
+                builder.append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String readAll(TextFilePages pages) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int page = 0; page < pages.getPageCount(); page++) {
+            if (page > 0) {
+                builder.append('\n');
+            }
+            builder.append(pages.readPage(page));
+        }
+        return builder.toString();
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.utils;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BitmapPoolTest {
+    private static final int THUMBNAIL_BYTES = 256 * 256 * 4;
+
+    private BitmapPool sut;
+
+    @Before
+    public void setUp() {
+        sut = new BitmapPool(4 * THUMBNAIL_BYTES);
+    }
+
+    @Test
+    public void smallestFittingBitmap() {
+        Bitmap large = mockBitmap(2 * THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true);
+        Bitmap fitting = mockBitmap(THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true);
+        Bitmap small = mockBitmap(THUMBNAIL_BYTES / 4, Bitmap.Config.ARGB_8888, true);
+        sut.put(large);
+        sut.put(fitting);
+        sut.put(small);
+
+        assertSame(fitting, sut.get(256, 256, Bitmap.Config.ARGB_8888));
+        assertSame(large, sut.get(256, 256, Bitmap.Config.ARGB_8888));
+        assertNull(sut.get(256, 256, Bitmap.Config.ARGB_8888));
+        assertEquals(THUMBNAIL_BYTES / 4, sut.getSize());
+    }
+
+    @Test
+    public void otherConfig() {
+        sut.put(mockBitmap(THUMBNAIL_BYTES, Bitmap.Config.RGB_565, true));
+
+        assertNull(sut.get(256, 256, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void immutableBitmap() {
+        assertFalse(sut.put(mockBitmap(THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, false)));
+        assertEquals(0, sut.getSize());
+    }
+
+    @Test
+    public void tooLargeBitmap() {
+        assertFalse(sut.put(mockBitmap(3 * THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true)));
+    }
+
+    @Test
+    public void oldestBitmapEvicted() {
+        Bitmap oldest = mockBitmap(2 * THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true);
+        Bitmap newer = mockBitmap(2 * THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true);
+        Bitmap newest = mockBitmap(THUMBNAIL_BYTES, Bitmap.Config.ARGB_8888, true);
+
+        assertTrue(sut.put(oldest));
+        assertTrue(sut.put(newer));
+        assertTrue(sut.put(newest));
+
+        assertEquals(3 * THUMBNAIL_BYTES, sut.getSize());
+        assertSame(newest, sut.get(256, 256, Bitmap.Config.ARGB_8888));
+        assertSame(newer, sut.get(256, 256, Bitmap.Config.ARGB_8888));
+        assertNull(sut.get(256, 256, Bitmap.Config.ARGB_8888));
+    }
+
+    private Bitmap mockBitmap(int bytes, Bitmap.Config config, boolean mutable) {
+        Bitmap bitmap = mock(Bitmap.class);
+        when(bitmap.getAllocationByteCount()).thenReturn(bytes);
+        when(bitmap.getConfig()).thenReturn(config);
+        when(bitmap.isMutable()).thenReturn(mutable);
+        when(bitmap.isRecycled()).thenReturn(false);
+        return bitmap;
+    }
+}
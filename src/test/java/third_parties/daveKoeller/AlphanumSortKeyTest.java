@@ -0,0 +1,166 @@
+/*
+ *
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2020 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package third_parties.daveKoeller;
+
+import org.junit.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link AlphanumSortKey} orders exactly like {@link AlphanumComparator} and compares the speed of both.
+ */
+public class AlphanumSortKeyTest {
+    private static final String CHARS = "aAbBzZ0123456789 .-_[]()äÄöÖüÜß";
+    private static final int BENCHMARK_SIZE = 20000;
+    private static final String[] BENCHMARK_PATTERNS = {
+        "IMG_2020%02d%02d_%06d.jpg", "Scan %d.pdf", "Document (%d) - Copy %d.docx", "Meeting notes %d-%d-%d.md",
+        "Übersicht %d.%d.%d.ods", "track %02d - part %d of %d.mp3"
+    };
+
+    /**
+     * sorted lists of https://github.com/nextcloud/server/blob/master/tests/lib/NaturalSortTest.php
+     */
+    private static final List<List<String>> SERVER_SORTED = Arrays.asList(
+        Arrays.asList("[Test] Folder", "01 - January", "11 - November", "Ôle", "Test 1", "Test 01", "Test 04", "Üüü",
+                      "z.[Test], z. Test"),
+        Arrays.asList("aaa", "AAA", "bbb", "BBB"),
+        Arrays.asList("2012-09-15 22.50.37.jpg", "2012-Card.jpg", "1584164_460s_v1.jpg", "08082008.jpg",
+                      "02122011150.jpg", "03122011151.jpg", "9999999999999999999999999999991.jpg",
+                      "9999999999999999999999999999992.jpg", "T 0 abc", "T 00 abc", "T 000 abc", "T 1 abc",
+                      "T 01 abc", "T 001 abc", "T 2 abc", "T 02 abc", "T 3 abc", "T 03 abc"),
+        Arrays.asList("A", "T", "T 01", "T 2", "T 003", "Zeros", "Zeros 2"));
+
+    @Test
+    public void serverOrder() {
+        Collator collator = Collator.getInstance();
+
+        for (List<String> sorted : SERVER_SORTED) {
+            List<String> shuffled = new ArrayList<>(sorted);
+            Collections.shuffle(shuffled, new Random(42));
+
+            assertEquals(sorted, sortByKey(shuffled, collator));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sameOrderAsComparator() {
+        List<String> names = createNames(2000, new Random(42));
+        Collator collator = Collator.getInstance();
+        AlphanumComparator comparator = new AlphanumComparator();
+
+        List<AlphanumSortKey> keys = new ArrayList<>();
+        for (String name : names) {
+            keys.add(new AlphanumSortKey(name, collator));
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = 0; j < names.size(); j += 7) {
+                assertEquals(names.get(i) + " <> " + names.get(j),
+                             Integer.signum(comparator.compare(names.get(i), names.get(j))),
+                             Integer.signum(keys.get(i).compareTo(keys.get(j))));
+            }
+        }
+    }
+
+    /**
+     * Benchmark of sorting a large folder of typical file names, timings are only printed as they depend on the
+     * machine.
+     */
+    @Test
+    public void benchmark() {
+        List<String> names = createFileNames(BENCHMARK_SIZE, new Random(42));
+
+        // warm up
+        sortByComparator(new ArrayList<>(names));
+        sortByKey(new ArrayList<>(names), Collator.getInstance());
+
+        long start = System.nanoTime();
+        List<String> byComparator = sortByComparator(new ArrayList<>(names));
+        long comparatorTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<String> byKey = sortByKey(new ArrayList<>(names), Collator.getInstance());
+        long keyTime = System.nanoTime() - start;
+
+        System.out.println("Sorting " + names.size() + " names: comparator " + comparatorTime / 1000000 +
+                               "ms, sort keys " + keyTime / 1000000 + "ms");
+
+        assertEquals(byComparator, byKey);
+    }
+
+    /**
+     * previous implementation, one comparator per comparison
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> sortByComparator(List<String> names) {
+        Collections.sort(names, (o1, o2) -> new AlphanumComparator().compare(o1, o2));
+        return names;
+    }
+
+    private List<String> sortByKey(List<String> names, Collator collator) {
+        List<AlphanumSortKey> keys = new ArrayList<>();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            keys.add(new AlphanumSortKey(names.get(i), collator));
+            order.add(i);
+        }
+
+        Collections.sort(order, (o1, o2) -> keys.get(o1).compareTo(keys.get(o2)));
+
+        List<String> sorted = new ArrayList<>();
+        for (Integer index : order) {
+            sorted.add(names.get(index));
+        }
+        return sorted;
+    }
+
+    private List<String> createFileNames(int count, Random random) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String pattern = BENCHMARK_PATTERNS[random.nextInt(BENCHMARK_PATTERNS.length)];
+            names.add(String.format(Locale.US, pattern, random.nextInt(12) + 1, random.nextInt(28) + 1,
+                                    random.nextInt(1000000)));
+        }
+        return names;
+    }
+
+    private List<String> createNames(int count, Random random) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int length = random.nextInt(20) + 1;
+            StringBuilder name = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                name.append(CHARS.charAt(random.nextInt(CHARS.length())));
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+}